@@ -4,6 +4,14 @@ plugins {
     id("io.freefair.lombok") version "8.6"
     id("com.diffplug.spotless") version "6.25.0"
     jacoco
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    toolchain {
+        // Virtual threads are used for asynchronous event processing.
+        languageVersion = JavaLanguageVersion.of(21)
+    }
 }
 
 repositories {
@@ -44,9 +52,20 @@ dependencyLocking {
     lockAllConfigurations()
 }
 
+// JMH benchmarks live in src/jmh/java; run them with ./gradlew :lib:jmh
+jmh {
+    jmhVersion.set("1.37")
+    // Run a subset with -PjmhIncludes=<regex>
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.set(listOf(it)) }
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+}
+
 // Add this to your existing build.gradle.kts
 tasks.test {
     useJUnitPlatform()
+    // Verify every class, including the dispatchers generated by DispatcherCompiler
+    jvmArgs("-Xverify:all")
     // Enable JaCoCo for tests
     finalizedBy(tasks.jacocoTestReport)
 }
@@ -0,0 +1,86 @@
+package jared.stemen.fsm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.FsmRegistry;
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.benchmark.Graphs.StateType;
+import jared.stemen.fsm.benchmark.Graphs.Step;
+import jared.stemen.fsm.impl.ConcurrentFiniteStateMachine;
+import jared.stemen.fsm.impl.FsmRegistryImpl;
+
+/**
+ * Event throughput when several threads process events concurrently.
+ *
+ * <p>The shared-machine benchmarks measure contention on a single machine, while the registry
+ * benchmarks compare every thread hitting one key against every thread owning its own key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ContentionBenchmark {
+  private FiniteStateMachine<Object, Step> concurrentMachine;
+  private FiniteStateMachine<Object, Step> synchronizedMachine;
+  private FsmRegistry<Integer, Object, Step> registry;
+
+  /** The registry key owned by each benchmark thread. */
+  @State(Scope.Thread)
+  public static class ThreadKey {
+    private int key;
+
+    @Setup
+    public void setUp(ThreadParams threadParams) {
+      key = threadParams.getThreadIndex() + 1;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    StateMachineDefinition<Object, Step> definition =
+        Graphs.definition(StateType.ENUM, 8, 0, () -> {});
+    Object initialState = Graphs.states(StateType.ENUM, 8).get(0);
+    concurrentMachine = new ConcurrentFiniteStateMachine<>(definition, initialState);
+    synchronizedMachine = definition.newInstance(initialState);
+    registry = new FsmRegistryImpl<>(definition, initialState);
+  }
+
+  @Benchmark
+  public boolean concurrentSharedMachine() {
+    return concurrentMachine.tryPerformEvent(Step.NEXT);
+  }
+
+  @Benchmark
+  public boolean synchronizedSharedMachine() {
+    synchronized (synchronizedMachine) {
+      return synchronizedMachine.tryPerformEvent(Step.NEXT);
+    }
+  }
+
+  @Benchmark
+  public Object registrySharedKey() {
+    return registry.performEvent(0, Step.NEXT);
+  }
+
+  @Benchmark
+  public Object registryOwnKey(ThreadKey threadKey) {
+    return registry.performEvent(threadKey.key, Step.NEXT);
+  }
+}
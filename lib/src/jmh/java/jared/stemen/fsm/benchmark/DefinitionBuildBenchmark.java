@@ -0,0 +1,61 @@
+package jared.stemen.fsm.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.benchmark.Graphs.StateType;
+import jared.stemen.fsm.benchmark.Graphs.Step;
+import jared.stemen.fsm.impl.FiniteStateMachineImpl;
+import jared.stemen.fsm.impl.StateMachineDefinitionImpl;
+
+/** Time to register links and compile them, for a standalone machine and for a definition. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefinitionBuildBenchmark {
+  @Param({"8", "1024"})
+  public int states;
+
+  @Param({"ENUM", "STRING", "RECORD"})
+  public StateType stateType;
+
+  private Object initialState;
+  private List<Link<Object, Step>> links;
+
+  @Setup
+  public void setUp() {
+    var graphStates = Graphs.states(stateType, states);
+    initialState = graphStates.get(0);
+    links = Graphs.links(graphStates, 1, () -> {});
+  }
+
+  @Benchmark
+  public StateMachineDefinition<Object, Step> buildDefinition() {
+    return StateMachineDefinitionImpl.<Object, Step>builder().links(links).build();
+  }
+
+  @Benchmark
+  public FiniteStateMachine<Object, Step> linkAndFreeze() {
+    var fsm = new FiniteStateMachineImpl<Object, Step>(initialState);
+    links.forEach(fsm::link);
+    return fsm.freeze();
+  }
+}
@@ -0,0 +1,149 @@
+package jared.stemen.fsm.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.impl.LinkImpl;
+import jared.stemen.fsm.impl.StateMachineDefinitionImpl;
+
+/**
+ * Builds the transition graphs shared by the benchmarks.
+ *
+ * <p>Every graph is a ring in which each state has a {@link Step#NEXT}, {@link Step#SKIP} and
+ * {@link Step#BACK} link, so any sequence of steps is legal from any state.
+ */
+public final class Graphs {
+  /** The type used to represent states. */
+  public enum StateType {
+    ENUM,
+    STRING,
+    RECORD
+  }
+
+  /** The events of every benchmark graph. */
+  public enum Step {
+    NEXT,
+    SKIP,
+    BACK,
+    ILLEGAL
+  }
+
+  /** A state enum small enough to fit in a cache line or two once compiled. */
+  enum SmallState {
+    S0,
+    S1,
+    S2,
+    S3,
+    S4,
+    S5,
+    S6,
+    S7
+  }
+
+  /** A state represented by a record, which falls back to hash-based dispatch. */
+  record StateId(int id) {}
+
+  private static final int SKIP_DISTANCE = 7;
+
+  private Graphs() {}
+
+  /**
+   * Creates the states of a graph.
+   *
+   * @param type The type used to represent states
+   * @param size The number of states, which must be 8 or 1024 for enum states
+   * @return The states, in ring order
+   */
+  static List<Object> states(StateType type, int size) {
+    switch (type) {
+      case ENUM:
+        if (size == SmallState.values().length) {
+          return List.of((Object[]) SmallState.values());
+        }
+        if (size == LargeState.values().length) {
+          return List.of((Object[]) LargeState.values());
+        }
+        throw new IllegalArgumentException("No enum with %d constants".formatted(size));
+      case STRING:
+        var strings = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+          strings.add("S" + i);
+        }
+        return strings;
+      default:
+        var records = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+          records.add(new StateId(i));
+        }
+        return records;
+    }
+  }
+
+  /**
+   * Creates the links of a ring graph over the given states.
+   *
+   * @param states The states of the graph, in ring order
+   * @param actionsPerLink The number of times the action is added to each link
+   * @param action The action to add
+   * @return The links of the graph
+   */
+  static List<Link<Object, Step>> links(List<Object> states, int actionsPerLink, Runnable action) {
+    var links = new ArrayList<Link<Object, Step>>(states.size() * 3);
+    var size = states.size();
+    for (int i = 0; i < size; i++) {
+      var source = states.get(i);
+      var next = states.get((i + 1) % size);
+      var skip = states.get((i + SKIP_DISTANCE) % size);
+      var back = states.get((i - 1 + size) % size);
+      links.add(link(source, Step.NEXT, next, actionsPerLink, action));
+      links.add(link(source, Step.SKIP, skip, actionsPerLink, action));
+      links.add(link(source, Step.BACK, back, actionsPerLink, action));
+    }
+    return links;
+  }
+
+  /**
+   * Creates a definition for a ring graph.
+   *
+   * @param type The type used to represent states
+   * @param size The number of states
+   * @param actionsPerLink The number of times the action is added to each link
+   * @param action The action to add
+   * @return The definition
+   */
+  static StateMachineDefinition<Object, Step> definition(
+      StateType type, int size, int actionsPerLink, Runnable action) {
+    return StateMachineDefinitionImpl.<Object, Step>builder()
+        .links(links(states(type, size), actionsPerLink, action))
+        .build();
+  }
+
+  /**
+   * Creates a random sequence of legal steps.
+   *
+   * @param count The number of steps, which should be a power of two so it can be indexed with a
+   *     mask
+   * @return The steps
+   */
+  static Step[] randomSteps(int count) {
+    var random = new SplittableRandom(42);
+    var steps = new Step[count];
+    for (int i = 0; i < count; i++) {
+      steps[i] = Step.values()[random.nextInt(Step.ILLEGAL.ordinal())];
+    }
+    return steps;
+  }
+
+  private static Link<Object, Step> link(
+      Object source, Step event, Object target, int actionsPerLink, Runnable action) {
+    var builder =
+        LinkImpl.<Object, Step>builder().sourceState(source).event(event).targetState(target);
+    for (int i = 0; i < actionsPerLink; i++) {
+      builder.action(action);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,53 @@
+package jared.stemen.fsm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.benchmark.Graphs.StateType;
+import jared.stemen.fsm.benchmark.Graphs.Step;
+
+/** Cost of rejecting an event that has no transition from the current state. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IllegalEventBenchmark {
+  @Param({"ENUM", "STRING"})
+  public StateType stateType;
+
+  private FiniteStateMachine<Object, Step> fsm;
+
+  @Setup
+  public void setUp() {
+    var definition = Graphs.definition(stateType, 8, 0, () -> {});
+    fsm = definition.newInstance(Graphs.states(stateType, 8).get(0));
+  }
+
+  @Benchmark
+  public Object performEventThrowing() {
+    try {
+      return fsm.performEvent(Step.ILLEGAL);
+    } catch (IllegalStateException e) {
+      return e;
+    }
+  }
+
+  @Benchmark
+  public boolean tryPerformEvent() {
+    return fsm.tryPerformEvent(Step.ILLEGAL);
+  }
+}
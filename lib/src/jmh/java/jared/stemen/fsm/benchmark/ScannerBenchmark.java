@@ -0,0 +1,124 @@
+package jared.stemen.fsm.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.impl.DfaScanner;
+import jared.stemen.fsm.impl.LinkImpl;
+import jared.stemen.fsm.impl.StateMachineDefinitionImpl;
+
+/**
+ * Tokenizing one MiB of words and numbers with boxed {@code Character} events compared to the
+ * scanner. Scores are MiB per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScannerBenchmark {
+  private static final int INPUT_SIZE = 1 << 20;
+
+  public enum Token {
+    START,
+    WORD,
+    NUMBER
+  }
+
+  private StateMachineDefinition<Token, Character> definition;
+  private DfaScanner<Token> scanner;
+  private String text;
+  private ByteBuffer bytes;
+
+  @Setup
+  public void setUp() {
+    var builder = StateMachineDefinitionImpl.<Token, Character>builder();
+    for (char c = 'a'; c <= 'z'; c++) {
+      builder.link(link(Token.START, c, Token.WORD)).link(link(Token.WORD, c, Token.WORD));
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      builder.link(link(Token.START, c, Token.NUMBER)).link(link(Token.NUMBER, c, Token.NUMBER));
+    }
+    definition = builder.build();
+    scanner =
+        DfaScanner.<Token>builder()
+            .definition(definition)
+            .initialState(Token.START)
+            .acceptingState(Token.WORD)
+            .acceptingState(Token.NUMBER)
+            .build();
+
+    var random = new Random(42);
+    var input = new StringBuilder(INPUT_SIZE);
+    while (input.length() < INPUT_SIZE) {
+      var digits = random.nextBoolean();
+      for (int i = 1 + random.nextInt(12); i > 0; i--) {
+        input.append(
+            digits ? (char) ('0' + random.nextInt(10)) : (char) ('a' + random.nextInt(26)));
+      }
+      input.append(' ');
+    }
+    text = input.substring(0, INPUT_SIZE);
+    bytes = ByteBuffer.allocateDirect(INPUT_SIZE).put(text.getBytes(StandardCharsets.ISO_8859_1));
+    bytes.flip();
+  }
+
+  private static LinkImpl<Token, Character> link(Token source, char event, Token target) {
+    return LinkImpl.<Token, Character>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .build();
+  }
+
+  @Benchmark
+  public long boxedEvents() {
+    long tokens = 0;
+    var fsm = definition.newInstance(Token.START);
+    for (int i = 0; i < text.length(); i++) {
+      if (!fsm.tryPerformEvent(text.charAt(i))) {
+        tokens++;
+        fsm = definition.newInstance(Token.START);
+      }
+    }
+    return tokens;
+  }
+
+  @Benchmark
+  public long scanCharSequence() {
+    var counter = new TokenCounter();
+    scanner.tokenize(text, counter);
+    return counter.tokens;
+  }
+
+  @Benchmark
+  public long scanByteBuffer() {
+    var counter = new TokenCounter();
+    scanner.tokenize(bytes, counter);
+    return counter.tokens;
+  }
+
+  private static final class TokenCounter implements DfaScanner.TokenListener<Token> {
+    private long tokens;
+
+    @Override
+    public void onToken(long start, long end, Token state) {
+      tokens++;
+    }
+  }
+}
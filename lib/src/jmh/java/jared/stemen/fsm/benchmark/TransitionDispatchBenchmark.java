@@ -0,0 +1,75 @@
+package jared.stemen.fsm.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jared.stemen.fsm.BatchResult;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.benchmark.Graphs.StateType;
+import jared.stemen.fsm.benchmark.Graphs.Step;
+
+/**
+ * Single-threaded event throughput across graph sizes, state types and action counts.
+ *
+ * <p>Enum states are dispatched through the compiled ordinal table, while string and record states
+ * fall back to hash-based lookup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransitionDispatchBenchmark {
+  private static final int EVENT_COUNT = 4096;
+  private static final int EVENT_MASK = EVENT_COUNT - 1;
+
+  @Param({"8", "1024"})
+  public int states;
+
+  @Param({"ENUM", "STRING", "RECORD"})
+  public StateType stateType;
+
+  @Param({"0", "4"})
+  public int actionsPerLink;
+
+  private FiniteStateMachine<Object, Step> fsm;
+  private Step[] events;
+  private int index;
+  private long actionRuns;
+
+  @Setup
+  public void setUp() {
+    var definition = Graphs.definition(stateType, states, actionsPerLink, () -> actionRuns++);
+    fsm = definition.newInstance(Graphs.states(stateType, states).get(0));
+    events = Graphs.randomSteps(EVENT_COUNT);
+  }
+
+  @Benchmark
+  public Object performEvent() {
+    return fsm.performEvent(events[index++ & EVENT_MASK]);
+  }
+
+  @Benchmark
+  public boolean tryPerformEvent() {
+    return fsm.tryPerformEvent(events[index++ & EVENT_MASK]);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(EVENT_COUNT)
+  public BatchResult<Object> performEvents() {
+    return fsm.performEvents(events);
+  }
+}
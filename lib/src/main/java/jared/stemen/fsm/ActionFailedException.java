@@ -0,0 +1,27 @@
+package jared.stemen.fsm;
+
+import lombok.Getter;
+
+/** Thrown when an {@link ActionFailureHandler} aborts a transition because an action failed. */
+@Getter
+public class ActionFailedException extends RuntimeException {
+  /** The state the aborted transition started from. */
+  private final transient Object state;
+
+  /** The event whose transition was aborted. */
+  private final transient Object event;
+
+  /**
+   * Creates a new exception for an aborted transition.
+   *
+   * @param state The state the transition started from
+   * @param event The event being processed
+   * @param cause The exception thrown by the failing action, or {@code null} if the failures are
+   *     attached as suppressed exceptions
+   */
+  public ActionFailedException(Object state, Object event, Throwable cause) {
+    super("Action failed for event %s in state %s".formatted(event, state), cause);
+    this.state = state;
+    this.event = event;
+  }
+}
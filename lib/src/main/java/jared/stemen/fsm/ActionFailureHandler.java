@@ -0,0 +1,50 @@
+package jared.stemen.fsm;
+
+/**
+ * Decides what happens when an action throws an exception during a transition.
+ *
+ * <p>The handler is called once for every failing action, on the thread performing the event. If
+ * it returns normally, the remaining actions run and the transition completes. If it throws, the
+ * exception propagates to the caller of {@link FiniteStateMachine#performEvent(Object)
+ * performEvent}, the remaining actions are skipped and the FSM stays in its source state.
+ *
+ * <p>Handlers may be shared by many machines and threads, so implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface ActionFailureHandler {
+  /**
+   * Called when an action of a transition throws.
+   *
+   * @param state The state the transition starts from
+   * @param event The event being processed
+   * @param exception The exception thrown by the action
+   */
+  void onActionFailure(Object state, Object event, Exception exception);
+
+  /**
+   * Called after every action of a transition has run, if at least one of them failed and no call
+   * to {@link #onActionFailure(Object, Object, Exception) onActionFailure} aborted the transition.
+   *
+   * <p>Throwing from this method aborts the transition. The default implementation does nothing.
+   *
+   * @param state The state the transition starts from
+   * @param event The event being processed
+   */
+  default void afterFailedActions(Object state, Object event) {}
+
+  /**
+   * Called when an event performed by an action is rejected once the transition that raised it has
+   * committed. The rejection is also reported to the machine's {@link TransitionListener} as an
+   * illegal event.
+   *
+   * <p>Throwing from this method discards the events still queued and propagates the exception to
+   * the caller of the event that started the transition, whose transition is kept. The default
+   * implementation does nothing.
+   *
+   * @param state The state the raised event was rejected in
+   * @param event The rejected event
+   * @param exception The exception {@link FiniteStateMachine#performEvent(Object) performEvent}
+   *     would have thrown for the event
+   */
+  default void onRejectedRaisedEvent(Object state, Object event, IllegalStateException exception) {}
+}
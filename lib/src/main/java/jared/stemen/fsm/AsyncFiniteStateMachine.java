@@ -0,0 +1,27 @@
+package jared.stemen.fsm;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link FiniteStateMachine} that can process events asynchronously.
+ *
+ * <p>Events are appended to a per-machine mailbox and processed one at a time, in the order they
+ * were submitted, on a thread other than the caller's. This lets actions that block, for example
+ * on I/O, run without stalling the threads that submit events.
+ *
+ * @param <STATE> The type representing the states in this FSM
+ * @param <EVENT> The type representing the events that can trigger state transitions
+ */
+public interface AsyncFiniteStateMachine<STATE, EVENT> extends FiniteStateMachine<STATE, EVENT> {
+  /**
+   * Submits an event to be processed after every event submitted before it.
+   *
+   * <p>The returned future completes with the new state once the transition and its actions are
+   * done, or exceptionally with {@link IllegalStateException} if the event is not valid for the
+   * state the machine is in when the event is processed.
+   *
+   * @param event The event to process
+   * @return A future completed with the new state after the transition
+   */
+  CompletableFuture<STATE> performEventAsync(EVENT event);
+}
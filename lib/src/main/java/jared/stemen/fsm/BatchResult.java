@@ -0,0 +1,33 @@
+package jared.stemen.fsm;
+
+import lombok.Value;
+
+/**
+ * The outcome of performing a batch of events with {@link
+ * FiniteStateMachine#performEvents(Iterable)}.
+ *
+ * <p>Processing stops at the first event that is not valid for the state the FSM is in at that
+ * point. That event and every event after it are left unprocessed.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ */
+@Value
+public class BatchResult<STATE> {
+  /** The state of the FSM once the batch stopped. */
+  STATE state;
+
+  /** The number of events that were processed. */
+  long processedEvents;
+
+  /** Whether every event of the batch was processed. */
+  boolean complete;
+
+  /**
+   * Gets the index of the event that stopped the batch.
+   *
+   * @return The index of the rejected event, or -1 if every event was processed
+   */
+  public long getRejectedIndex() {
+    return complete ? -1 : processedEvents;
+  }
+}
@@ -0,0 +1,49 @@
+package jared.stemen.fsm;
+
+import java.util.List;
+import java.util.Set;
+
+import lombok.Value;
+
+/**
+ * The structural problems found in a set of links.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ * @param <EVENT> The type representing the events in the FSM
+ */
+@Value
+public class DefinitionReport<STATE, EVENT> {
+  /** The states mentioned by a link that cannot be reached from the initial state. */
+  Set<STATE> unreachableStates;
+
+  /**
+   * The reachable states a machine can never leave successfully: states without any outgoing link
+   * or, when accepting states are given, states from which no accepting state can be reached.
+   */
+  Set<STATE> deadEndStates;
+
+  /**
+   * The (state, event) pairs linked more than once where a link other than the last has no guard,
+   * so the links after it can never be followed.
+   */
+  List<Conflict<STATE, EVENT>> conflicts;
+
+  /**
+   * Checks whether the links have none of the problems this report looks for.
+   *
+   * @return {@code true} if every list of this report is empty
+   */
+  public boolean isClean() {
+    return unreachableStates.isEmpty() && deadEndStates.isEmpty() && conflicts.isEmpty();
+  }
+
+  /** An event linked more than once from the same state, which makes the machine ambiguous. */
+  @Value
+  public static class Conflict<STATE, EVENT> {
+    STATE state;
+    EVENT event;
+
+    /** The targets of the conflicting links, in link order. */
+    List<STATE> targets;
+  }
+}
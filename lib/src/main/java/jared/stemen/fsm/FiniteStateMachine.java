@@ -1,5 +1,8 @@
 package jared.stemen.fsm;
 
+import java.util.Arrays;
+import java.util.Set;
+
 /**
  * Represents a Finite State Machine (FSM) that manages state transitions based on events.
  *
@@ -19,10 +22,29 @@ public interface FiniteStateMachine<STATE, EVENT> {
    *
    * @param link The link defining the transition to add
    * @return This FSM instance, allowing for method chaining
-   * @throws IllegalStateException If a link with the same source state and event already exists
+   * @throws IllegalStateException If a link with the same source state and event already exists,
+   *     or if this FSM has been frozen or, like the FSMs created from a {@link
+   *     StateMachineDefinition} or generated at compile time, cannot be linked at all
    */
   FiniteStateMachine<STATE, EVENT> link(Link<STATE, EVENT> link);
 
+  /**
+   * Freezes the transition links of this FSM, compiling them into the fastest lookup structure
+   * available for the state and event types.
+   *
+   * <p>When every state and event is a constant of a single enum type, the links are compiled into
+   * a dense table indexed by ordinal. Other types keep using hash-based lookup. Once frozen, no
+   * further links can be added. Freezing an already frozen FSM has no effect.
+   *
+   * <p>The default implementation does nothing, for FSMs that have no faster lookup structure to
+   * compile into.
+   *
+   * @return This FSM instance, allowing for method chaining
+   */
+  default FiniteStateMachine<STATE, EVENT> freeze() {
+    return this;
+  }
+
   /**
    * Performs a state transition in response to the specified event.
    *
@@ -38,6 +60,8 @@ public interface FiniteStateMachine<STATE, EVENT> {
    * execution, that exception will be logged but will not interrupt the transition. The FSM will
    * continue executing any remaining actions and will complete the state transition as defined.
    * This ensures that one failing action does not prevent the entire transition from occurring.
+   * This is the default {@link ActionFailureHandler} policy, and implementations may allow it to
+   * be replaced.
    *
    * @param event The event to process
    * @return The new state after the transition
@@ -45,10 +69,78 @@ public interface FiniteStateMachine<STATE, EVENT> {
    */
   STATE performEvent(EVENT event);
 
+  /**
+   * Performs a state transition in response to the specified event if it is valid for the current
+   * state.
+   *
+   * <p>This behaves like {@link #performEvent(Object) performEvent}, except that an event that is
+   * not valid for the current state is reported by returning {@code false} instead of throwing, and
+   * the FSM is left unchanged. Implementations reject events without allocating, which makes this
+   * the preferred method when illegal events are routine. Use {@link #getLegalEvents()} afterwards
+   * if the reason for a rejection is needed.
+   *
+   * <p>The default implementation checks the event against {@link #getLegalEvents()} before
+   * performing it, so exceptions thrown while the event is performed, including those thrown by
+   * actions or by an {@link ActionFailureHandler}, propagate instead of being taken for a
+   * rejection.
+   *
+   * @param event The event to process
+   * @return {@code true} if the transition was performed, {@code false} if the event was rejected
+   */
+  default boolean tryPerformEvent(EVENT event) {
+    if (event == null || !getLegalEvents().contains(event)) {
+      return false;
+    }
+    performEvent(event);
+    return true;
+  }
+
+  /**
+   * Performs a state transition for each of the specified events, in order.
+   *
+   * <p>Each event is processed exactly as by {@link #performEvent(Object) performEvent}, except
+   * that an event that is not valid for the current state does not throw: processing stops and the
+   * index of that event is reported in the result instead.
+   *
+   * @param events The events to process
+   * @return The final state and the number of events processed
+   */
+  default BatchResult<STATE> performEvents(Iterable<EVENT> events) {
+    long processed = 0;
+    for (EVENT event : events) {
+      if (!tryPerformEvent(event)) {
+        return new BatchResult<>(getState(), processed, false);
+      }
+      processed++;
+    }
+    return new BatchResult<>(getState(), processed, true);
+  }
+
+  /**
+   * Performs a state transition for each of the specified events, in order.
+   *
+   * @param events The events to process
+   * @return The final state and the number of events processed
+   * @see #performEvents(Iterable)
+   */
+  default BatchResult<STATE> performEvents(EVENT[] events) {
+    return performEvents(Arrays.asList(events));
+  }
+
   /**
    * Gets the current state of this FSM.
    *
    * @return The current state
    */
   STATE getState();
+
+  /**
+   * Gets the events that have a transition linked from the current state.
+   *
+   * <p>Unlike event processing, this allocates, so it is meant to be called only when needed, for
+   * example after {@link #tryPerformEvent(Object) tryPerformEvent} rejected an event.
+   *
+   * @return The legal events for the current state
+   */
+  Set<EVENT> getLegalEvents();
 }
@@ -0,0 +1,71 @@
+package jared.stemen.fsm;
+
+import java.util.function.BiConsumer;
+
+/**
+ * A thread-safe collection of machines looked up by a business key, such as an order or session id.
+ *
+ * <p>Machines are created lazily from a shared {@link StateMachineDefinition} the first time an
+ * event is performed for their key. Events for the same key are processed one at a time, in the
+ * order the calling threads acquire the key, while events for different keys can be processed in
+ * parallel.
+ *
+ * @param <K> The type of the keys machines are looked up by
+ * @param <STATE> The type representing the states of the machines
+ * @param <EVENT> The type representing the events that can trigger state transitions
+ */
+public interface FsmRegistry<K, STATE, EVENT> {
+  /**
+   * Performs a state transition for the machine with the given key, creating it in the initial
+   * state if it does not exist yet.
+   *
+   * @param key The key of the machine
+   * @param event The event to process
+   * @return The new state of the machine after the transition
+   * @throws IllegalStateException If the event is not valid for the machine's current state
+   */
+  STATE performEvent(K key, EVENT event);
+
+  /**
+   * Gets the current state of the machine with the given key.
+   *
+   * @param key The key of the machine
+   * @return The current state of the machine, or the initial state if it does not exist yet
+   */
+  STATE getState(K key);
+
+  /**
+   * Removes the machine with the given key. A later event for the key starts a new machine in the
+   * initial state.
+   *
+   * @param key The key of the machine
+   * @return {@code true} if a machine was removed
+   */
+  boolean remove(K key);
+
+  /**
+   * Replaces the machine with the given key by a new machine in the given state, without running
+   * any action. This is how snapshots are restored.
+   *
+   * @param key The key of the machine
+   * @param state The state of the new machine
+   */
+  void setState(K key, STATE state);
+
+  /**
+   * Passes the key and current state of every machine to the given action.
+   *
+   * <p>Each state is read while holding its key, but machines keep processing events during the
+   * iteration, so the states of different keys may be read at different points in time.
+   *
+   * @param action The action receiving every key and state
+   */
+  void forEachState(BiConsumer<? super K, ? super STATE> action);
+
+  /**
+   * Gets the number of machines currently held by this registry.
+   *
+   * @return The number of machines
+   */
+  int size();
+}
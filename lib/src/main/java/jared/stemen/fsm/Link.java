@@ -1,6 +1,8 @@
 package jared.stemen.fsm;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * Represents a transition link in a Finite State Machine (FSM).
@@ -17,7 +19,8 @@ public interface Link<STATE, EVENT> {
    *
    * <p>The source state is the state in which the FSM must be for this link to be applicable.
    *
-   * @return The source state
+   * @return The source state, or {@code null} if the link is {@link #isFromAnyState() from any
+   *     state}
    */
   STATE getSourceState();
 
@@ -47,4 +50,45 @@ public interface Link<STATE, EVENT> {
    * @return The list of actions as Runnable objects
    */
   List<Runnable> getActions();
+
+  /**
+   * Gets the condition under which this link is followed.
+   *
+   * <p>Several links may share a source state and event when all but the last have a guard. Their
+   * guards are evaluated in the order the links were added and the first link whose guard passes
+   * is followed; a link without a guard is followed when no other guard passes. Guards may be
+   * evaluated more than once per event and should not have side effects.
+   *
+   * @return The guard, or {@code null} if the link is always followed
+   */
+  default BooleanSupplier getGuard() {
+    return null;
+  }
+
+  /**
+   * Gets how long a machine may stay in the source state before this link is followed.
+   *
+   * <p>A timeout link is an ordinary link whose event is a synthetic timeout event. A registry with
+   * a timing wheel performs that event once the machine has been in the source state for the
+   * timeout, and every transition, including one back into the same state, restarts the timeout.
+   * The event may also be performed explicitly, like any other.
+   *
+   * @return The timeout, or {@code null} if the link is only followed when its event is performed
+   */
+  default Duration getTimeout() {
+    return null;
+  }
+
+  /**
+   * Checks whether this link is followed from any state.
+   *
+   * <p>A link from any state, such as a global {@code RESET}, is declared once instead of once per
+   * source state. It is a fallback: it is followed when the current state has no link for its
+   * event, or when none of the guards of those links pass. Its source state is {@code null}.
+   *
+   * @return {@code true} if the link has no source state
+   */
+  default boolean isFromAnyState() {
+    return false;
+  }
 }
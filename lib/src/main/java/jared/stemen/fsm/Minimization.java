@@ -0,0 +1,29 @@
+package jared.stemen.fsm;
+
+import java.util.Map;
+
+import lombok.Value;
+
+/**
+ * A minimized definition and how the original states map onto it.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ * @param <EVENT> The type representing the events in the FSM
+ */
+@Value
+public class Minimization<STATE, EVENT> {
+  /** The minimized definition, whose states are representatives of the original states. */
+  StateMachineDefinition<STATE, EVENT> definition;
+
+  /**
+   * The representative of every reachable original state. A machine in an original state behaves
+   * exactly like a machine of the minimized definition in its representative.
+   */
+  Map<STATE, STATE> stateMapping;
+
+  /** The number of reachable states before minimization. */
+  int originalStateCount;
+
+  /** The number of states of the minimized definition. */
+  int minimizedStateCount;
+}
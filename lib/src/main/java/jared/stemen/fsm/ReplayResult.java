@@ -0,0 +1,33 @@
+package jared.stemen.fsm;
+
+import java.time.Duration;
+import java.util.Map;
+
+import lombok.Value;
+
+/**
+ * The outcome of replaying a transition journal.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ */
+@Value
+public class ReplayResult<STATE> {
+  /** The state every journaled machine was rebuilt into, by machine id. */
+  Map<Long, STATE> states;
+
+  /** The number of records replayed. */
+  long records;
+
+  /** How long the replay took. */
+  Duration elapsed;
+
+  /**
+   * Gets the replay throughput.
+   *
+   * @return The number of records replayed per second
+   */
+  public double getRecordsPerSecond() {
+    long nanos = elapsed.toNanos();
+    return nanos == 0 ? records : records * 1e9 / nanos;
+  }
+}
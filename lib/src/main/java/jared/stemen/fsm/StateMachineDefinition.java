@@ -0,0 +1,56 @@
+package jared.stemen.fsm;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable, thread-safe set of transition links that can be shared by many {@link
+ * FiniteStateMachine} instances.
+ *
+ * <p>A definition is built once and compiled into the fastest lookup structure available for its
+ * state and event types. Each machine created from it only holds its current state and a reference
+ * back to the definition, so creating a machine is cheap and the transition graph is never copied.
+ *
+ * @param <STATE> The type representing the states in this definition
+ * @param <EVENT> The type representing the events that can trigger state transitions
+ */
+public interface StateMachineDefinition<STATE, EVENT> {
+  /**
+   * Creates a new FSM that follows the links of this definition.
+   *
+   * <p>The returned FSM is already frozen: calling {@link FiniteStateMachine#link(Link) link} on it
+   * throws {@link IllegalStateException}. Like any other FSM, it is not thread-safe.
+   *
+   * @param initialState The initial state of the new FSM
+   * @return The new FSM
+   * @throws NullPointerException If the initial state is null
+   * @throws IllegalArgumentException If the initial state cannot be represented by this definition
+   */
+  FiniteStateMachine<STATE, EVENT> newInstance(STATE initialState);
+
+  /**
+   * Gets the events that have a transition linked from the given state.
+   *
+   * @param state The state to inspect
+   * @return The legal events for the state
+   */
+  Set<EVENT> getLegalEvents(STATE state);
+
+  /**
+   * Gets the links this definition was built from, in the order they were added.
+   *
+   * @return An unmodifiable list of links
+   */
+  List<Link<STATE, EVENT>> getLinks();
+
+  /**
+   * Gets the parent of every nested state. A nested state inherits the links of its ancestors for
+   * the events it does not link itself.
+   *
+   * @return An unmodifiable map from each nested state to its parent, empty if no state is nested
+   */
+  default Map<STATE, STATE> getParents() {
+    return Map.of();
+  }
+}
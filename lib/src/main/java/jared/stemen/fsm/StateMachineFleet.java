@@ -0,0 +1,53 @@
+package jared.stemen.fsm;
+
+/**
+ * A fixed-capacity store for the states of many machines that share one {@link
+ * StateMachineDefinition}.
+ *
+ * <p>Each machine is addressed by a numeric entity id between zero (inclusive) and the fleet
+ * capacity (exclusive). Every machine starts in the same initial state and follows the same
+ * transition semantics as {@link FiniteStateMachine#performEvent(Object)}, but no object is kept
+ * per machine: states are stored as compact ordinals in primitive arrays.
+ *
+ * @param <STATE> The type representing the states of the machines
+ * @param <EVENT> The type representing the events that can trigger state transitions
+ */
+public interface StateMachineFleet<STATE, EVENT> {
+  /**
+   * Performs a state transition for one machine in response to the specified event.
+   *
+   * @param entityId The id of the machine
+   * @param event The event to process
+   * @return The new state of the machine after the transition
+   * @throws IllegalStateException If the event is not valid for the machine's current state
+   * @throws IndexOutOfBoundsException If the entity id is outside of this fleet's capacity
+   */
+  STATE performEvent(long entityId, EVENT event);
+
+  /**
+   * Gets the current state of one machine.
+   *
+   * @param entityId The id of the machine
+   * @return The current state of the machine
+   * @throws IndexOutOfBoundsException If the entity id is outside of this fleet's capacity
+   */
+  STATE getState(long entityId);
+
+  /**
+   * Overwrites the state of one machine without running any action, for example to restore a
+   * snapshot.
+   *
+   * @param entityId The id of the machine
+   * @param state The new state of the machine
+   * @throws IllegalArgumentException If the state cannot be stored by this fleet
+   * @throws IndexOutOfBoundsException If the entity id is outside of this fleet's capacity
+   */
+  void setState(long entityId, STATE state);
+
+  /**
+   * Gets the number of machines this fleet can hold.
+   *
+   * @return The capacity of this fleet
+   */
+  long getCapacity();
+}
@@ -0,0 +1,21 @@
+package jared.stemen.fsm;
+
+import lombok.Value;
+
+/**
+ * A transition performed by an FSM, as published to downstream subscribers.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ * @param <EVENT> The type representing the events in the FSM
+ */
+@Value
+public class Transition<STATE, EVENT> {
+  /** The state the transition started from. */
+  STATE source;
+
+  /** The event that was performed. */
+  EVENT event;
+
+  /** The state the transition moved to. */
+  STATE target;
+}
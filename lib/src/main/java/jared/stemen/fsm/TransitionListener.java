@@ -0,0 +1,86 @@
+package jared.stemen.fsm;
+
+import java.util.Objects;
+
+/**
+ * Observes the transitions performed by an FSM.
+ *
+ * <p>Listeners are called on the thread performing the event. FSMs without a listener skip the
+ * timing and notification entirely, so attaching one is the only way to pay for it.
+ *
+ * <p>Listeners may be shared by many machines and threads, so implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface TransitionListener {
+  /**
+   * Called once the actions of a transition have run and the FSM has moved to its target state.
+   *
+   * <p>If an {@link ActionFailureHandler} aborts the transition, this method is not called. If this
+   * method throws, the transition is kept and the exception propagates to the caller of the event.
+   *
+   * @param source The state the transition started from
+   * @param event The event that was processed
+   * @param target The state the transition moved to
+   * @param actionNanos The time spent running the actions of the transition, in nanoseconds
+   */
+  void onTransition(Object source, Object event, Object target, long actionNanos);
+
+  /**
+   * Called instead of {@link #onTransition(Object, Object, Object, long) onTransition} by machines
+   * that are identified by a key, such as the machines of an {@link FsmRegistry} or the entities of
+   * a {@link StateMachineFleet}, so that a listener shared by all of them can tell them apart.
+   *
+   * <p>The default implementation ignores the key and calls {@link #onTransition(Object, Object,
+   * Object, long) onTransition}.
+   *
+   * @param key The key of the machine, or the {@code Long} id of the fleet entity
+   * @param source The state the transition started from
+   * @param event The event that was processed
+   * @param target The state the transition moved to
+   * @param actionNanos The time spent running the actions of the transition, in nanoseconds
+   */
+  default void onKeyedTransition(
+      Object key, Object source, Object event, Object target, long actionNanos) {
+    onTransition(source, event, target, actionNanos);
+  }
+
+  /**
+   * Called when an event is rejected because no transition is linked to it from the current
+   * state. The default implementation does nothing.
+   *
+   * @param state The current state
+   * @param event The rejected event
+   */
+  default void onIllegalEvent(Object state, Object event) {}
+
+  /**
+   * Combines this listener with another one, so that several listeners can observe the same
+   * machines.
+   *
+   * @param next The listener notified after this one
+   * @return A listener notifying this listener, then the next one
+   */
+  default TransitionListener andThen(TransitionListener next) {
+    Objects.requireNonNull(next, "next");
+    return new TransitionListener() {
+      @Override
+      public void onTransition(Object source, Object event, Object target, long actionNanos) {
+        TransitionListener.this.onTransition(source, event, target, actionNanos);
+        next.onTransition(source, event, target, actionNanos);
+      }
+
+      @Override
+      public void onKeyedTransition(
+          Object key, Object source, Object event, Object target, long actionNanos) {
+        TransitionListener.this.onKeyedTransition(key, source, event, target, actionNanos);
+        next.onKeyedTransition(key, source, event, target, actionNanos);
+      }
+
+      @Override
+      public void onIllegalEvent(Object state, Object event) {
+        TransitionListener.this.onIllegalEvent(state, event);
+        next.onIllegalEvent(state, event);
+      }
+    };
+  }
+}
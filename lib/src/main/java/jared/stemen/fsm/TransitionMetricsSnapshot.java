@@ -0,0 +1,78 @@
+package jared.stemen.fsm;
+
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * A point-in-time copy of the metrics recorded for the transitions of one or more FSMs.
+ *
+ * <p>Recording continues while a snapshot is taken, so the counts of different transitions may
+ * have been read a few events apart.
+ */
+@Value
+public class TransitionMetricsSnapshot {
+  /** The transitions performed at least once, with their counts and action latencies. */
+  List<TransitionStats> transitions;
+
+  /** The rejected (state, event) pairs, with the number of times each was rejected. */
+  List<IllegalEventStats> illegalEvents;
+
+  /**
+   * Gets the total number of transitions performed.
+   *
+   * @return The sum of the counts of every transition
+   */
+  public long getTransitionCount() {
+    return transitions.stream().mapToLong(TransitionStats::getCount).sum();
+  }
+
+  /**
+   * Gets the total number of rejected events.
+   *
+   * @return The sum of the counts of every rejected (state, event) pair
+   */
+  public long getIllegalEventCount() {
+    return illegalEvents.stream().mapToLong(IllegalEventStats::getCount).sum();
+  }
+
+  /** The metrics of one (source, event, target) transition. */
+  @Value
+  public static class TransitionStats {
+    Object source;
+    Object event;
+    Object target;
+
+    /** The number of times the transition was performed. */
+    long count;
+
+    /** The time spent running the actions of the transition. */
+    LatencyStats actionLatency;
+  }
+
+  /** The number of times an event was rejected from a state. */
+  @Value
+  public static class IllegalEventStats {
+    Object state;
+    Object event;
+    long count;
+  }
+
+  /**
+   * A summary of recorded latencies, in nanoseconds.
+   *
+   * <p>Percentiles are read from logarithmic buckets and are accurate to within about 3% of the
+   * recorded value.
+   */
+  @Value
+  public static class LatencyStats {
+    long count;
+    long minNanos;
+    long maxNanos;
+    double meanNanos;
+    long p50Nanos;
+    long p90Nanos;
+    long p99Nanos;
+    long p999Nanos;
+  }
+}
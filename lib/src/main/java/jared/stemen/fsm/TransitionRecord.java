@@ -0,0 +1,22 @@
+package jared.stemen.fsm;
+
+import lombok.Value;
+
+/**
+ * A committed transition as read back from a journal.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ * @param <EVENT> The type representing the events in the FSM
+ */
+@Value
+public class TransitionRecord<STATE, EVENT> {
+  /** The id of the machine that performed the transition. */
+  long machineId;
+
+  STATE source;
+  EVENT event;
+  STATE target;
+
+  /** When the transition was committed, in milliseconds since the epoch. */
+  long timestamp;
+}
@@ -0,0 +1,56 @@
+package jared.stemen.fsm.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Generates a switch-based {@link jared.stemen.fsm.FiniteStateMachine} at compile time from the
+ * {@link Transition} annotations of the constants of a state enum.
+ *
+ * <pre>{@code
+ * @StateMachine(events = DoorEvent.class, terminal = "BROKEN")
+ * enum DoorState {
+ *   @Transition(event = "CLOSE_DOOR", target = "CLOSED")
+ *   OPEN,
+ *   @Transition(event = "OPEN_DOOR", target = "OPEN")
+ *   @Transition(event = "LOCK_DOOR", target = "LOCKED", actions = "engageLock")
+ *   CLOSED,
+ *   @Transition(event = "UNLOCK_DOOR", target = "CLOSED")
+ *   LOCKED,
+ *   BROKEN
+ * }
+ * }</pre>
+ *
+ * <p>The processor in the {@code processor} project generates {@code DoorStateMachine} next to the
+ * enum, together with a {@code DoorStateMachine.Actions} interface declaring one no-op default
+ * method per action name. It reports unknown events or states, duplicate transitions and states
+ * without any transition that are not terminal as compile errors.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface StateMachine {
+  /**
+   * Gets the enum of the events the machine processes.
+   *
+   * @return The event enum
+   */
+  Class<? extends Enum<?>> events();
+
+  /**
+   * Gets the simple name of the generated class.
+   *
+   * @return The name, or an empty string for the state enum's name followed by {@code Machine}
+   */
+  String name() default "";
+
+  /**
+   * Gets the states that are allowed to have no transition.
+   *
+   * @return The names of the terminal states
+   */
+  String[] terminal() default {};
+}
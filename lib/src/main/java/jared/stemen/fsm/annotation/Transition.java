@@ -0,0 +1,41 @@
+package jared.stemen.fsm.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a transition from the annotated state constant of a {@link StateMachine} enum.
+ *
+ * <p>Names are checked against the state and event enums when the machine is generated.
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+@Repeatable(Transitions.class)
+public @interface Transition {
+  /**
+   * Gets the event triggering the transition.
+   *
+   * @return The name of an event constant
+   */
+  String event();
+
+  /**
+   * Gets the state the transition moves to.
+   *
+   * @return The name of a state constant
+   */
+  String target();
+
+  /**
+   * Gets the actions run during the transition, in order. Each name becomes a method of the
+   * generated {@code Actions} interface.
+   *
+   * @return The action names
+   */
+  String[] actions() default {};
+}
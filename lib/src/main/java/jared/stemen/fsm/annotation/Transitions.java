@@ -0,0 +1,20 @@
+package jared.stemen.fsm.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Container of the {@link Transition} annotations repeated on a state constant. */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Transitions {
+  /**
+   * Gets the repeated transitions.
+   *
+   * @return The transitions
+   */
+  Transition[] value();
+}
@@ -0,0 +1,204 @@
+package jared.stemen.fsm.impl;
+
+import java.util.Set;
+
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.BatchResult;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.TransitionListener;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Event dispatch shared by the single-threaded FSM implementations.
+ *
+ * <p>Subclasses only decide where transitions are looked up.
+ *
+ * <p>Events are processed with run-to-completion semantics. An event performed by an action of the
+ * machine itself is not dispatched while the state is still the source state of the running
+ * transition; it is queued and performed once that transition has committed, in the order it was
+ * raised. The outermost call drains the queue iteratively, so cascades of any length run in
+ * constant stack depth, and only returns once the machine is idle. While queued, a nested {@link
+ * #performEvent(Object) performEvent} returns the state the running transition started in and a
+ * nested {@link #tryPerformEvent(Object) tryPerformEvent} returns {@code true}.
+ *
+ * <p>The result of the outermost call only depends on its own event. A queued event that is
+ * rejected is skipped: it is reported to the transition listener as an illegal event and to {@link
+ * ActionFailureHandler#onRejectedRaisedEvent(Object, Object, IllegalStateException)} with the
+ * exception {@code performEvent} would have thrown. If the handler throws, the rest of the queue is
+ * discarded and the exception propagates from the outermost call, while the transitions already
+ * made are kept.
+ */
+abstract class AbstractFiniteStateMachine<STATE, EVENT>
+    implements FiniteStateMachine<STATE, EVENT> {
+  @Getter @NonNull private STATE state;
+  private boolean dispatching;
+  private EventQueue queue;
+
+  AbstractFiniteStateMachine(STATE state) {
+    this.state = state;
+  }
+
+  /**
+   * Gets the table events are currently dispatched through.
+   *
+   * @return The transition table
+   */
+  abstract TransitionTable<STATE, EVENT> transitions();
+
+  /**
+   * Gets the handler notified when an action fails.
+   *
+   * @return The action failure handler
+   */
+  abstract ActionFailureHandler actionFailureHandler();
+
+  /**
+   * Gets the listener notified of transitions.
+   *
+   * @return The transition listener, or {@code null} if there is none
+   */
+  abstract TransitionListener transitionListener();
+
+  /**
+   * Gets the key the transitions of this FSM are reported under, if it belongs to a registry.
+   *
+   * @return The key passed to {@link TransitionListener#onKeyedTransition}, or {@code null} to
+   *     report transitions without a key
+   */
+  Object key() {
+    return null;
+  }
+
+  @Override
+  public STATE performEvent(EVENT event) {
+    if (dispatching) {
+      raise(event);
+      return state;
+    }
+    runToCompletion(event, transitions(), actionFailureHandler(), transitionListener(), true);
+    return state;
+  }
+
+  @Override
+  public boolean tryPerformEvent(EVENT event) {
+    if (dispatching) {
+      raise(event);
+      return true;
+    }
+    return runToCompletion(
+        event, transitions(), actionFailureHandler(), transitionListener(), false);
+  }
+
+  @Override
+  public Set<EVENT> getLegalEvents() {
+    return transitions().legalEvents(state);
+  }
+
+  @Override
+  public BatchResult<STATE> performEvents(Iterable<EVENT> events) {
+    long processed = 0;
+    if (dispatching) {
+      for (val event : events) {
+        raise(event);
+        processed++;
+      }
+      return new BatchResult<>(state, processed, true);
+    }
+    val transitions = transitions();
+    val failureHandler = actionFailureHandler();
+    val listener = transitionListener();
+    for (val event : events) {
+      if (!runToCompletion(event, transitions, failureHandler, listener, false)) {
+        return new BatchResult<>(state, processed, false);
+      }
+      processed++;
+    }
+    return new BatchResult<>(state, processed, true);
+  }
+
+  @Override
+  public BatchResult<STATE> performEvents(EVENT[] events) {
+    if (dispatching) {
+      for (val event : events) {
+        raise(event);
+      }
+      return new BatchResult<>(state, events.length, true);
+    }
+    val transitions = transitions();
+    val failureHandler = actionFailureHandler();
+    val listener = transitionListener();
+    for (int i = 0; i < events.length; i++) {
+      if (!runToCompletion(events[i], transitions, failureHandler, listener, false)) {
+        return new BatchResult<>(state, i, false);
+      }
+    }
+    return new BatchResult<>(state, events.length, true);
+  }
+
+  /**
+   * Performs an event, then every event raised by the actions it ran, until none is left.
+   *
+   * @param rejectionThrows Whether a rejected event throws instead of returning {@code false}
+   * @return {@code true} if the event was performed, {@code false} if it was rejected and the FSM
+   *     left unchanged
+   */
+  @SuppressWarnings("unchecked")
+  private boolean runToCompletion(
+      EVENT event,
+      TransitionTable<STATE, EVENT> transitions,
+      ActionFailureHandler failureHandler,
+      TransitionListener listener,
+      boolean rejectionThrows) {
+    dispatching = true;
+    try {
+      val stateAndActions = transitions.find(state, event);
+      if (stateAndActions == null) {
+        ActionRunner.illegalEvent(listener, state, event);
+        if (rejectionThrows) {
+          throw ActionRunner.illegalEvent(transitions, state, event);
+        }
+        return false;
+      }
+      commit(stateAndActions, event, failureHandler, listener);
+      while (queue != null && !queue.isEmpty()) {
+        val raised = (EVENT) queue.poll();
+        val raisedTransition = transitions.find(state, raised);
+        if (raisedTransition == null) {
+          ActionRunner.illegalEvent(listener, state, raised);
+          failureHandler.onRejectedRaisedEvent(
+              state, raised, ActionRunner.illegalEvent(transitions, state, raised));
+          continue;
+        }
+        commit(raisedTransition, raised, failureHandler, listener);
+      }
+      return true;
+    } finally {
+      dispatching = false;
+      if (queue != null) {
+        queue.clear();
+      }
+    }
+  }
+
+  /** Runs the actions of a transition, moves to its target, then notifies the listener. */
+  private void commit(
+      StateAndActions<STATE> transition,
+      EVENT event,
+      ActionFailureHandler failureHandler,
+      TransitionListener listener) {
+    val source = state;
+    val actionNanos =
+        ActionRunner.runTransition(transition, event, source, failureHandler, listener);
+    state = transition.getState();
+    ActionRunner.transitioned(listener, key(), source, event, state, actionNanos);
+  }
+
+  private void raise(EVENT event) {
+    if (queue == null) {
+      queue = new EventQueue();
+    }
+    queue.add(event);
+  }
+}
@@ -0,0 +1,188 @@
+package jared.stemen.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import jared.stemen.fsm.ActionFailedException;
+import jared.stemen.fsm.ActionFailureHandler;
+import lombok.NonNull;
+import lombok.val;
+import lombok.extern.slf4j.Slf4j;
+
+/** Built-in {@link ActionFailureHandler} policies. */
+@Slf4j
+public final class ActionFailureHandlers {
+  private static final ActionFailureHandler LOGGING =
+      new ActionFailureHandler() {
+        @Override
+        public void onActionFailure(Object state, Object event, Exception exception) {
+          log.error(
+              "Exception thrown during action execution for event {} in state {}:. "
+                  + "Execution will continue.",
+              event,
+              state,
+              exception);
+        }
+
+        @Override
+        public void onRejectedRaisedEvent(
+            Object state, Object event, IllegalStateException exception) {
+          log.warn("Event {} raised by an action was rejected: {}", event, exception.getMessage());
+        }
+      };
+
+  private static final ActionFailureHandler FAIL_FAST =
+      new ActionFailureHandler() {
+        @Override
+        public void onActionFailure(Object state, Object event, Exception exception) {
+          throw new ActionFailedException(state, event, exception);
+        }
+
+        @Override
+        public void onRejectedRaisedEvent(
+            Object state, Object event, IllegalStateException exception) {
+          throw exception;
+        }
+      };
+
+  private ActionFailureHandlers() {}
+
+  /**
+   * Logs every failure with its stack trace and lets the transition complete. Events raised by
+   * actions that are rejected are logged as warnings. This is the default policy.
+   *
+   * @return The logging policy
+   */
+  public static ActionFailureHandler logging() {
+    return LOGGING;
+  }
+
+  /**
+   * Logs at most the given number of failures per second and lets every transition complete. The
+   * number of failures that were not logged is reported with the next logged failure.
+   *
+   * @param maxPerSecond The maximum number of failures logged per second
+   * @return The rate-limited logging policy
+   */
+  public static ActionFailureHandler rateLimitedLogging(long maxPerSecond) {
+    if (maxPerSecond <= 0) {
+      throw new IllegalArgumentException("maxPerSecond must be positive but was " + maxPerSecond);
+    }
+    return new RateLimitedLogging(maxPerSecond);
+  }
+
+  /**
+   * Logs one failure out of every {@code sampleRate} and lets every transition complete.
+   *
+   * @param sampleRate The number of failures per logged failure
+   * @return The sampled logging policy
+   */
+  public static ActionFailureHandler sampledLogging(long sampleRate) {
+    if (sampleRate <= 0) {
+      throw new IllegalArgumentException("sampleRate must be positive but was " + sampleRate);
+    }
+    val failures = new AtomicLong();
+    return (state, event, exception) -> {
+      val count = failures.getAndIncrement();
+      if (count % sampleRate == 0) {
+        log.error(
+            "Exception thrown during action execution for event {} in state {} "
+                + "({} failures so far, logging 1 in {}). Execution will continue.",
+            event,
+            state,
+            count + 1,
+            sampleRate,
+            exception);
+      }
+    };
+  }
+
+  /**
+   * Only counts failures and lets every transition complete. Nothing is logged.
+   *
+   * @param counter The counter incremented for every failure
+   * @return The counting policy
+   */
+  public static ActionFailureHandler counting(@NonNull LongAdder counter) {
+    return (state, event, exception) -> counter.increment();
+  }
+
+  /**
+   * Aborts the transition at the first failing action by throwing an {@link ActionFailedException}
+   * caused by the action's exception. The remaining actions are skipped and the FSM stays in its
+   * source state.
+   *
+   * <p>An event raised by an action that is rejected throws the {@link IllegalStateException} it
+   * would have thrown if it had been performed directly.
+   *
+   * @return The fail-fast policy
+   */
+  public static ActionFailureHandler failFast() {
+    return FAIL_FAST;
+  }
+
+  /**
+   * Runs every action, then aborts the transition if any of them failed by throwing an {@link
+   * ActionFailedException} with every failure attached as a suppressed exception. The FSM stays in
+   * its source state.
+   *
+   * @return The collect-and-rethrow policy
+   */
+  public static ActionFailureHandler collectAndRethrow() {
+    return new CollectAndRethrow();
+  }
+
+  private static final class RateLimitedLogging implements ActionFailureHandler {
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final long maxPerSecond;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+    private final AtomicLong loggedInWindow = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    private RateLimitedLogging(long maxPerSecond) {
+      this.maxPerSecond = maxPerSecond;
+    }
+
+    @Override
+    public void onActionFailure(Object state, Object event, Exception exception) {
+      val now = System.nanoTime();
+      val start = windowStart.get();
+      if (now - start >= WINDOW_NANOS && windowStart.compareAndSet(start, now)) {
+        loggedInWindow.set(0);
+      }
+      if (loggedInWindow.incrementAndGet() > maxPerSecond) {
+        suppressed.incrementAndGet();
+        return;
+      }
+      log.error(
+          "Exception thrown during action execution for event {} in state {} "
+              + "({} failures suppressed since the last report). Execution will continue.",
+          event,
+          state,
+          suppressed.getAndSet(0),
+          exception);
+    }
+  }
+
+  private static final class CollectAndRethrow implements ActionFailureHandler {
+    private final ThreadLocal<List<Exception>> failures = ThreadLocal.withInitial(ArrayList::new);
+
+    @Override
+    public void onActionFailure(Object state, Object event, Exception exception) {
+      failures.get().add(exception);
+    }
+
+    @Override
+    public void afterFailedActions(Object state, Object event) {
+      val collected = failures.get();
+      val exception = new ActionFailedException(state, event, null);
+      collected.forEach(exception::addSuppressed);
+      collected.clear();
+      throw exception;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package jared.stemen.fsm.impl;
+
+import java.util.List;
+
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.TransitionListener;
+import lombok.val;
+
+/** Runs the actions of a transition and builds the error raised for illegal events. */
+final class ActionRunner {
+  private ActionRunner() {}
+
+  /**
+   * Runs every action in order, reporting each failure to the given handler. Unless the handler
+   * throws, one failing action does not prevent the remaining actions or the transition itself.
+   *
+   * @param actions The actions to run
+   * @param event The event being processed
+   * @param state The state the transition starts from
+   * @param failureHandler The handler notified of failing actions
+   */
+  static <STATE, EVENT> void runActions(
+      List<Runnable> actions, EVENT event, STATE state, ActionFailureHandler failureHandler) {
+    boolean failed = false;
+    for (int i = 0; i < actions.size(); i++) {
+      try {
+        actions.get(i).run();
+      } catch (Exception e) {
+        failed = true;
+        failureHandler.onActionFailure(state, event, e);
+      }
+    }
+    if (failed) {
+      failureHandler.afterFailedActions(state, event);
+    }
+  }
+
+  /**
+   * Runs the actions of a transition like {@link #runActions(List, Object, Object,
+   * ActionFailureHandler) runActions}, timing them if there is a listener to notify.
+   *
+   * <p>Without a listener this costs a single null check over running the actions directly. The
+   * listener itself is only notified by {@link #transitioned(TransitionListener, Object, Object,
+   * Object, Object, long) transitioned}, once the caller has moved the FSM to the target state.
+   *
+   * @param transition The transition to run
+   * @param event The event being processed
+   * @param state The state the transition starts from
+   * @param failureHandler The handler notified of failing actions
+   * @param listener The listener that will be notified, or {@code null}
+   * @return The time spent running the actions, in nanoseconds, or 0 if there is no listener
+   */
+  static <STATE, EVENT> long runTransition(
+      StateAndActions<STATE> transition,
+      EVENT event,
+      STATE state,
+      ActionFailureHandler failureHandler,
+      TransitionListener listener) {
+    if (listener == null) {
+      runActions(transition.getActions(), event, state, failureHandler);
+      return 0;
+    }
+    long start = System.nanoTime();
+    runActions(transition.getActions(), event, state, failureHandler);
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * Notifies the listener, if there is one, that a transition has been made.
+   *
+   * @param listener The listener to notify, or {@code null}
+   * @param key The key of the machine, or {@code null} if it has none
+   * @param source The state the transition started from
+   * @param event The event that was processed
+   * @param target The state the transition moved to
+   * @param actionNanos The time spent running the actions of the transition, in nanoseconds
+   */
+  static void transitioned(
+      TransitionListener listener,
+      Object key,
+      Object source,
+      Object event,
+      Object target,
+      long actionNanos) {
+    if (listener == null) {
+      return;
+    }
+    if (key == null) {
+      listener.onTransition(source, event, target, actionNanos);
+    } else {
+      listener.onKeyedTransition(key, source, event, target, actionNanos);
+    }
+  }
+
+  /**
+   * Notifies the listener, if there is one, that an event was rejected.
+   *
+   * @param listener The listener to notify, or {@code null}
+   * @param state The current state
+   * @param event The rejected event
+   */
+  static void illegalEvent(TransitionListener listener, Object state, Object event) {
+    if (listener != null) {
+      listener.onIllegalEvent(state, event);
+    }
+  }
+
+  /**
+   * Builds the exception thrown when an event has no transition linked from the current state, or
+   * none of the guards of its transitions pass.
+   *
+   * @param transitions The table the event was looked up in
+   * @param state The current state
+   * @param event The rejected event
+   * @return The exception to throw
+   */
+  static <STATE, EVENT> IllegalStateException illegalEvent(
+      TransitionTable<STATE, EVENT> transitions, STATE state, EVENT event) {
+    val legalEvents = transitions.legalEvents(state);
+    if (legalEvents.contains(event)) {
+      return new IllegalStateException(
+          "No guard of event %s passed in state %s".formatted(event, state));
+    }
+    return new IllegalStateException(
+        "%s is not a legal event for state %s legal events for this state are: %s"
+            .formatted(event, state, legalEvents));
+  }
+}
@@ -0,0 +1,217 @@
+package jared.stemen.fsm.impl;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import jared.stemen.fsm.AsyncFiniteStateMachine;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.Link;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * {@link AsyncFiniteStateMachine} that drains a per-machine mailbox on a virtual thread.
+ *
+ * <p>A drain task is only started when an event is submitted to an empty mailbox, and it keeps
+ * running until the mailbox is empty again, so at most one thread processes events for a machine
+ * at any time. Because each drain runs on its own virtual thread by default, thousands of machines
+ * can block in actions at the same time without tying up platform threads.
+ *
+ * <p>The synchronous {@link #performEvent(Object)}, {@link #tryPerformEvent(Object)} and {@link
+ * #getLegalEvents()} go through the same mailbox and wait for the result, so they never overtake
+ * events submitted asynchronously and never read the underlying FSM while another thread changes
+ * it. An action must therefore never call them on its own machine, as it would wait for itself.
+ *
+ * <p>Anything thrown while an event is processed, including errors, fails the future of that event
+ * only, and the drain moves on to the next one. If the executor refuses to start a drain, every
+ * event in the mailbox fails with the executor's exception.
+ */
+public class AsyncFiniteStateMachineImpl<STATE, EVENT>
+    implements AsyncFiniteStateMachine<STATE, EVENT> {
+  private static final Executor VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+  private final FiniteStateMachine<STATE, EVENT> delegate;
+  private final Executor executor;
+  private final Queue<PendingOperation<STATE, EVENT, ?>> mailbox = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private volatile STATE state;
+
+  /**
+   * Creates an asynchronous FSM that drains its mailbox on virtual threads.
+   *
+   * @param delegate The FSM events are performed on, which must not be used directly afterwards
+   */
+  public AsyncFiniteStateMachineImpl(@NonNull FiniteStateMachine<STATE, EVENT> delegate) {
+    this(delegate, VIRTUAL_THREADS);
+  }
+
+  /**
+   * Creates an asynchronous FSM that drains its mailbox on the given executor.
+   *
+   * @param delegate The FSM events are performed on, which must not be used directly afterwards
+   * @param executor The executor drain tasks are submitted to
+   */
+  public AsyncFiniteStateMachineImpl(
+      @NonNull FiniteStateMachine<STATE, EVENT> delegate, @NonNull Executor executor) {
+    this.delegate = delegate;
+    this.executor = executor;
+    this.state = delegate.getState();
+  }
+
+  /**
+   * Adds a new transition link to the underlying FSM.
+   *
+   * <p>Links must be added before the first event is submitted.
+   */
+  @Override
+  public FiniteStateMachine<STATE, EVENT> link(Link<STATE, EVENT> link) {
+    delegate.link(link);
+    return this;
+  }
+
+  @Override
+  public FiniteStateMachine<STATE, EVENT> freeze() {
+    delegate.freeze();
+    return this;
+  }
+
+  @Override
+  public CompletableFuture<STATE> performEventAsync(EVENT event) {
+    return submit(event, FiniteStateMachine::performEvent);
+  }
+
+  private <T> CompletableFuture<T> submit(
+      EVENT event, BiFunction<FiniteStateMachine<STATE, EVENT>, EVENT, T> operation) {
+    val future = new CompletableFuture<T>();
+    mailbox.add(new PendingOperation<>(event, operation, future));
+    if (pending.getAndIncrement() == 0) {
+      try {
+        executor.execute(this::drain);
+      } catch (RuntimeException e) {
+        reject(e);
+      }
+    }
+    return future;
+  }
+
+  /**
+   * Performs a state transition in response to the specified event, waiting for every previously
+   * submitted event to be processed first.
+   *
+   * @param event The event to process
+   * @return The new state after the transition
+   * @throws IllegalStateException If the event is not valid for the current state
+   */
+  @Override
+  public STATE performEvent(EVENT event) {
+    return join(submit(event, FiniteStateMachine::performEvent));
+  }
+
+  /**
+   * Attempts a state transition in response to the specified event, waiting for every previously
+   * submitted event to be processed first.
+   *
+   * <p>The event is performed with {@link FiniteStateMachine#tryPerformEvent(Object)
+   * tryPerformEvent} on the underlying FSM, so an exception thrown by the action failure handler
+   * still propagates instead of being mistaken for a rejected event.
+   *
+   * @param event The event to process
+   * @return {@code true} if the transition was performed, {@code false} if the event was rejected
+   */
+  @Override
+  public boolean tryPerformEvent(EVENT event) {
+    return join(submit(event, FiniteStateMachine::tryPerformEvent));
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the state committed by the most recently processed event. Events still in the mailbox are
+   * not reflected.
+   *
+   * @return The current state
+   */
+  @Override
+  public STATE getState() {
+    return state;
+  }
+
+  /**
+   * Gets the events that have a transition linked from the current state, waiting for every
+   * previously submitted event to be processed first.
+   *
+   * @return The legal events for the state reached once the previously submitted events have been
+   *     processed
+   */
+  @Override
+  public Set<EVENT> getLegalEvents() {
+    return join(submit(null, (machine, event) -> machine.getLegalEvents()));
+  }
+
+  private void drain() {
+    do {
+      process(mailbox.poll());
+    } while (pending.decrementAndGet() != 0);
+  }
+
+  /**
+   * Applies an operation to the underlying FSM, publishing the state it leaves the FSM in before
+   * completing the future, so that callers waiting for the future see the new state.
+   */
+  private <T> void process(PendingOperation<STATE, EVENT, T> next) {
+    T result = null;
+    Throwable failure = null;
+    try {
+      result = next.operation().apply(delegate, next.event());
+    } catch (Throwable e) {
+      failure = e;
+    }
+    state = delegate.getState();
+    if (failure == null) {
+      next.future().complete(result);
+    } else {
+      next.future().completeExceptionally(failure);
+    }
+  }
+
+  /**
+   * Fails every event in the mailbox after the executor refused to start a drain, so that the next
+   * submitted event tries to start one again.
+   */
+  private void reject(RuntimeException e) {
+    do {
+      mailbox.poll().future().completeExceptionally(e);
+    } while (pending.decrementAndGet() != 0);
+  }
+
+  /**
+   * An operation waiting in the mailbox.
+   *
+   * @param event The event the operation is applied with, if any
+   * @param operation The operation applied to the underlying FSM on the draining thread
+   * @param future The future completed with the result of the operation
+   */
+  private record PendingOperation<STATE, EVENT, T>(
+      EVENT event,
+      BiFunction<FiniteStateMachine<STATE, EVENT>, EVENT, T> operation,
+      CompletableFuture<T> future) {}
+}
@@ -0,0 +1,370 @@
+package jared.stemen.fsm.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jared.stemen.fsm.FsmRegistry;
+import jared.stemen.fsm.StateMachineFleet;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Writes the states of every machine in a fleet or registry to a compact binary file and restores
+ * them.
+ *
+ * <p>States are dictionary-encoded: the file starts with the name of every state, and each machine
+ * is stored as the varint distance from the previous machine id followed by the varint index of its
+ * state, so a machine usually takes two bytes. Fleet snapshots skip every machine in the most
+ * common state, which is stored once in the header. The layout is:
+ *
+ * <ul>
+ *   <li>the {@code int} magic number and a version byte,
+ *   <li>the varint id space, which is the fleet capacity or zero for a registry,
+ *   <li>the varint index of the default state plus one, or zero if there is none,
+ *   <li>the varint number of states, then the length and UTF-8 bytes of each state name,
+ *   <li>the varint number of machines, then the machines in ascending id order.
+ * </ul>
+ *
+ * <p>Restoring maps the file and decodes it in place, matching states by name, so the dictionary
+ * may be reordered between writing and restoring. Restoring a fleet allocates nothing per machine.
+ * Every count, length and index is checked against the size of the file, so a truncated or corrupt
+ * snapshot fails with {@link IllegalArgumentException} rather than reading out of bounds.
+ *
+ * @param <STATE> The type representing the states of the machines
+ */
+public final class BinaryStateSnapshot<STATE> {
+  private static final int MAGIC = 0x46534d53;
+  private static final byte VERSION = 1;
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final int MAX_VARINT_BYTES = 10;
+
+  private final List<STATE> states;
+  private final Map<STATE, Integer> stateIndexes = new HashMap<>();
+
+  /**
+   * Creates a snapshot codec for the given states.
+   *
+   * @param states Every state a machine can be in
+   * @throws IllegalArgumentException If two states have the same name
+   */
+  public BinaryStateSnapshot(@NonNull List<STATE> states) {
+    this.states = List.copyOf(states);
+    val names = new HashMap<String, STATE>();
+    for (int i = 0; i < this.states.size(); i++) {
+      val state = this.states.get(i);
+      if (names.putIfAbsent(String.valueOf(state), state) != null) {
+        throw new IllegalArgumentException(
+            "State name %s appears more than once in the snapshot dictionary".formatted(state));
+      }
+      stateIndexes.put(state, i);
+    }
+  }
+
+  /**
+   * Writes the state of every machine of a fleet.
+   *
+   * @param fleet The fleet to snapshot, which should not process events meanwhile
+   * @param path The file to write, replaced if it exists
+   * @return The number of machines written, excluding those in the default state
+   * @throws IOException If the file cannot be written
+   */
+  public long write(@NonNull StateMachineFleet<STATE, ?> fleet, @NonNull Path path)
+      throws IOException {
+    val capacity = fleet.getCapacity();
+    val counts = new long[states.size()];
+    for (long id = 0; id < capacity; id++) {
+      counts[index(fleet.getState(id))]++;
+    }
+    int defaultIndex = 0;
+    for (int i = 1; i < counts.length; i++) {
+      if (counts[i] > counts[defaultIndex]) {
+        defaultIndex = i;
+      }
+    }
+    val machines = capacity - (counts.length == 0 ? 0 : counts[defaultIndex]);
+    try (Writer writer = new Writer(path)) {
+      writer.header(capacity, counts.length == 0 ? 0 : defaultIndex + 1, machines);
+      long previous = 0;
+      for (long id = 0; id < capacity; id++) {
+        val index = index(fleet.getState(id));
+        if (index != defaultIndex) {
+          writer.varint(id - previous);
+          writer.varint(index);
+          previous = id;
+        }
+      }
+    }
+    return machines;
+  }
+
+  /**
+   * Writes the state of every machine of a registry.
+   *
+   * @param registry The registry to snapshot
+   * @param path The file to write, replaced if it exists
+   * @return The number of machines written
+   * @throws IOException If the file cannot be written
+   */
+  public long write(@NonNull FsmRegistry<Long, STATE, ?> registry, @NonNull Path path)
+      throws IOException {
+    val machines = new TreeMap<Long, STATE>();
+    registry.forEachState(machines::put);
+    try (Writer writer = new Writer(path)) {
+      writer.header(0, 0, machines.size());
+      long previous = 0;
+      boolean first = true;
+      for (val entry : machines.entrySet()) {
+        long id = entry.getKey();
+        writer.varint(first ? zigzag(id) : id - previous);
+        writer.varint(index(entry.getValue()));
+        previous = id;
+        first = false;
+      }
+    }
+    return machines.size();
+  }
+
+  /**
+   * Restores a fleet snapshot. Machines beyond the snapshot's capacity are left unchanged.
+   *
+   * @param path The snapshot file
+   * @param fleet The fleet to restore into
+   * @return The number of machines read, excluding those in the default state
+   * @throws IOException If the file cannot be read
+   * @throws IllegalArgumentException If the file is not a fleet snapshot, is truncated or corrupt,
+   *     or does not fit the fleet
+   */
+  public long restore(@NonNull Path path, @NonNull StateMachineFleet<STATE, ?> fleet)
+      throws IOException {
+    val reader = new Reader(path);
+    val capacity = reader.idSpace;
+    if ((capacity == 0 && reader.machines > 0) || capacity > fleet.getCapacity()) {
+      throw new IllegalArgumentException(
+          "Snapshot %s does not fit a fleet of capacity %d".formatted(path, fleet.getCapacity()));
+    }
+    if (reader.defaultState != null) {
+      for (long id = 0; id < capacity; id++) {
+        if (fleet.getState(id) != reader.defaultState) {
+          fleet.setState(id, reader.defaultState);
+        }
+      }
+    }
+    long id = 0;
+    for (long i = 0; i < reader.machines; i++) {
+      id += reader.varint();
+      if (id < 0 || id >= capacity) {
+        throw reader.corrupt();
+      }
+      fleet.setState(id, reader.state());
+    }
+    return reader.machines;
+  }
+
+  /**
+   * Restores a registry snapshot, replacing the machines of the snapshotted keys.
+   *
+   * @param path The snapshot file
+   * @param registry The registry to restore into
+   * @return The number of machines restored
+   * @throws IOException If the file cannot be read
+   * @throws IllegalArgumentException If the file is not a registry snapshot, or is truncated or
+   *     corrupt
+   */
+  public long restore(@NonNull Path path, @NonNull FsmRegistry<Long, STATE, ?> registry)
+      throws IOException {
+    val reader = new Reader(path);
+    if (reader.idSpace != 0) {
+      throw new IllegalArgumentException("Snapshot %s is a fleet snapshot".formatted(path));
+    }
+    long id = 0;
+    for (long i = 0; i < reader.machines; i++) {
+      id = i == 0 ? unzigzag(reader.varint()) : id + reader.varint();
+      registry.setState(id, reader.state());
+    }
+    return reader.machines;
+  }
+
+  private int index(STATE state) {
+    val index = stateIndexes.get(state);
+    if (index == null) {
+      throw new IllegalArgumentException(
+          "State %s is not in the snapshot dictionary".formatted(state));
+    }
+    return index;
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+
+  private static long unzigzag(long value) {
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /** Buffers varints into a direct buffer and flushes it to the file when full. */
+  private final class Writer implements AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    Writer(Path path) throws IOException {
+      channel =
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    void header(long idSpace, int defaultState, long machines) throws IOException {
+      buffer.putInt(MAGIC);
+      buffer.put(VERSION);
+      varint(idSpace);
+      varint(defaultState);
+      varint(states.size());
+      for (val state : states) {
+        val name = String.valueOf(state).getBytes(StandardCharsets.UTF_8);
+        varint(name.length);
+        for (int offset = 0; offset < name.length; offset += BUFFER_SIZE / 2) {
+          val length = Math.min(BUFFER_SIZE / 2, name.length - offset);
+          ensureRemaining(length);
+          buffer.put(name, offset, length);
+        }
+      }
+      varint(machines);
+    }
+
+    void varint(long value) throws IOException {
+      ensureRemaining(MAX_VARINT_BYTES);
+      while ((value & ~0x7fL) != 0) {
+        buffer.put((byte) ((value & 0x7f) | 0x80));
+        value >>>= 7;
+      }
+      buffer.put((byte) value);
+    }
+
+    private void ensureRemaining(int bytes) throws IOException {
+      if (buffer.remaining() < bytes) {
+        flush();
+      }
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        flush();
+      } finally {
+        channel.close();
+      }
+    }
+  }
+
+  /** Decodes a mapped snapshot, translating its state indexes into this codec's states. */
+  private final class Reader {
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final Object[] fileStates;
+    private final long idSpace;
+    private final STATE defaultState;
+    private final long machines;
+
+    Reader(Path path) throws IOException {
+      this.path = path;
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+      if (buffer.remaining() < Integer.BYTES + 1
+          || buffer.getInt() != MAGIC
+          || buffer.get() != VERSION) {
+        throw new IllegalArgumentException("%s is not a state snapshot".formatted(path));
+      }
+      idSpace = varint();
+      if (idSpace < 0) {
+        throw corrupt();
+      }
+      val defaultIndex = index();
+      val byName = new HashMap<String, STATE>();
+      states.forEach(state -> byName.put(String.valueOf(state), state));
+      fileStates = new Object[count(1)];
+      for (int i = 0; i < fileStates.length; i++) {
+        val name = new byte[count(1)];
+        buffer.get(name);
+        val nameString = new String(name, StandardCharsets.UTF_8);
+        fileStates[i] = byName.get(nameString);
+        if (fileStates[i] == null) {
+          throw new IllegalArgumentException(
+              "Snapshot state %s is not in the snapshot dictionary".formatted(nameString));
+        }
+      }
+      defaultState = defaultIndex == 0 ? null : stateAt(defaultIndex - 1);
+      // Every machine takes at least one byte for its id and one for its state
+      machines = count(2);
+    }
+
+    long varint() {
+      long value = 0;
+      for (int shift = 0; shift < MAX_VARINT_BYTES * 7; shift += 7) {
+        if (!buffer.hasRemaining()) {
+          throw corrupt();
+        }
+        val b = buffer.get();
+        value |= (long) (b & 0x7f) << shift;
+        if (b >= 0) {
+          return value;
+        }
+      }
+      throw corrupt();
+    }
+
+    STATE state() {
+      return stateAt(index());
+    }
+
+    /** Reads the number of the items that follow, each taking at least the given bytes. */
+    private int count(int bytesPerItem) {
+      val value = varint();
+      if (value < 0 || value > buffer.remaining() / bytesPerItem) {
+        throw corrupt();
+      }
+      return (int) value;
+    }
+
+    /** Reads an index into the dictionary of the file, checked when it is used. */
+    private int index() {
+      val value = varint();
+      if (value < 0 || value > Integer.MAX_VALUE) {
+        throw corrupt();
+      }
+      return (int) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private STATE stateAt(int index) {
+      if (index >= fileStates.length) {
+        throw corrupt();
+      }
+      return (STATE) fileStates[index];
+    }
+
+    IllegalArgumentException corrupt() {
+      return new IllegalArgumentException(
+          "Snapshot %s is truncated or corrupt at byte %d".formatted(path, buffer.position()));
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package jared.stemen.fsm.impl;
+
+import jared.stemen.fsm.ActionFailureHandler;
+
+/**
+ * Base class of the dispatchers generated by {@link DispatcherCompiler}.
+ *
+ * <p>A generated subclass holds every action in a {@code static final} field, initialized from the
+ * class data it was defined with, and implements
+ * {@link #dispatch(int, int, Object, Object)} as a switch over the state ordinal, then over the
+ * event ordinal, that calls {@link #run(Runnable, Object, Object)} once per action of the matching
+ * link. Because the actions are constants, the JIT can inline each of them into its case.
+ */
+abstract class CompiledDispatcher {
+  private final ActionFailureHandler failureHandler;
+
+  CompiledDispatcher(ActionFailureHandler failureHandler) {
+    this.failureHandler = failureHandler;
+  }
+
+  /**
+   * Gets the handler notified when an action fails.
+   *
+   * @return The action failure handler
+   */
+  final ActionFailureHandler failureHandler() {
+    return failureHandler;
+  }
+
+  /**
+   * Runs the actions of the transition linked to an event and finds its target.
+   *
+   * @param stateOrdinal The ordinal of the current state
+   * @param eventOrdinal The ordinal of the event
+   * @param state The current state, passed to the action failure handler
+   * @param event The event, passed to the action failure handler
+   * @return The ordinal of the target state, or -1 if the event is not legal in the state
+   */
+  abstract int dispatch(int stateOrdinal, int eventOrdinal, Object state, Object event);
+
+  /**
+   * Runs one action, reporting its failure like {@link ActionRunner#runActions}.
+   *
+   * @return {@code true} if the action failed
+   */
+  final boolean run(Runnable action, Object state, Object event) {
+    try {
+      action.run();
+      return false;
+    } catch (Exception e) {
+      failureHandler.onActionFailure(state, event, e);
+      return true;
+    }
+  }
+
+  /**
+   * Completes a transition once its actions have run.
+   *
+   * @param failed Non-zero if at least one action failed
+   * @return The ordinal of the target state
+   */
+  final int finish(int failed, Object state, Object event, int target) {
+    if (failed != 0) {
+      failureHandler.afterFailedActions(state, event);
+    }
+    return target;
+  }
+}
@@ -0,0 +1,159 @@
+package jared.stemen.fsm.impl;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Set;
+
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.TransitionListener;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Thread-safe FSM that advances its state with a lock-free compare-and-set loop.
+ *
+ * <p>Transitions are looked up in a shared {@link StateMachineDefinition}. Processing an event
+ * reads the current state, finds the transition linked to the event, and atomically swaps the
+ * current state for the target state only if no other thread changed it in the meantime. When two
+ * threads race on the same source state:
+ *
+ * <ul>
+ *   <li>Exactly one of them wins the swap and commits its transition.
+ *   <li>The others re-evaluate their event against the state the winner committed, and either
+ *       follow the transition linked from that state or fail with {@link IllegalStateException}.
+ * </ul>
+ *
+ * <p>Because a transition can only be known to have won once the swap succeeds, actions run
+ * <em>after</em> the state changes, unlike {@link FiniteStateMachineImpl}. The actions of a
+ * transition run exactly once, on the winning thread, and may overlap with the actions of later
+ * transitions committed by other threads. {@link #getState()} may therefore already return the
+ * target state while its actions are still running, and an {@link ActionFailureHandler} that
+ * aborts a transition cannot roll the state back: its exception reaches the caller, but the
+ * transition stays committed.
+ *
+ * <p>For the same reason, an event performed by an action of the machine itself is not queued like
+ * in {@link FiniteStateMachineImpl}: the running transition has already committed, so the event is
+ * performed at once against its target state, and the nested transition and its actions complete
+ * before the remaining actions of the running one.
+ */
+public class ConcurrentFiniteStateMachine<STATE, EVENT>
+    implements FiniteStateMachine<STATE, EVENT> {
+  private static final VarHandle STATE_HANDLE;
+
+  static {
+    try {
+      STATE_HANDLE =
+          MethodHandles.lookup()
+              .findVarHandle(ConcurrentFiniteStateMachine.class, "state", Object.class);
+    } catch (ReflectiveOperationException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  private final TransitionTable<STATE, EVENT> transitions;
+  private final ActionFailureHandler actionFailureHandler;
+  private final TransitionListener transitionListener;
+
+  private volatile Object state;
+
+  /**
+   * Creates a new thread-safe FSM following the links of the given definition.
+   *
+   * @param definition The definition to follow
+   * @param state The initial state of the FSM
+   * @throws IllegalArgumentException If the initial state cannot be represented by the definition
+   */
+  public ConcurrentFiniteStateMachine(
+      @NonNull StateMachineDefinition<STATE, EVENT> definition, @NonNull STATE state) {
+    if (!(definition instanceof StateMachineDefinitionImpl<STATE, EVENT> impl)) {
+      throw new IllegalArgumentException(
+          "Unsupported definition type %s".formatted(definition.getClass().getName()));
+    }
+    this.transitions = impl.getTransitions();
+    this.actionFailureHandler = impl.getActionFailureHandler();
+    this.transitionListener = impl.getTransitionListener();
+    if (transitions instanceof EnumTransitionTable<STATE, EVENT> table && !table.covers(state)) {
+      throw new IllegalArgumentException(
+          "Initial state %s is not of the enum type this definition was compiled for"
+              .formatted(state));
+    }
+    this.state = state;
+  }
+
+  @Override
+  public FiniteStateMachine<STATE, EVENT> link(Link<STATE, EVENT> link) {
+    throw new IllegalStateException(
+        "Cannot link event %s to state %s, the FSM was created from an immutable definition"
+            .formatted(link.getEvent(), link.getSourceState()));
+  }
+
+  @Override
+  public FiniteStateMachine<STATE, EVENT> freeze() {
+    return this;
+  }
+
+  /**
+   * Performs a state transition in response to the specified event.
+   *
+   * <p>The transition is committed before its actions run. See the class documentation for the
+   * semantics when several threads process events concurrently.
+   *
+   * @param event The event to process
+   * @return The state this thread's transition moved to, which other threads may already have
+   *     moved past
+   * @throws IllegalStateException If the event is not valid for the current state
+   */
+  @Override
+  public STATE performEvent(EVENT event) {
+    return commit(event, true).getState();
+  }
+
+  @Override
+  public boolean tryPerformEvent(EVENT event) {
+    return commit(event, false) != null;
+  }
+
+  @Override
+  public Set<EVENT> getLegalEvents() {
+    return transitions.legalEvents(getState());
+  }
+
+  /**
+   * Atomically moves to the target of the transition linked to the event, then runs its actions.
+   *
+   * @param event The event to process
+   * @param rejectionThrows Whether a rejected event throws instead of returning {@code null}, with
+   *     a message naming the state it was rejected in even if another thread has moved on since
+   * @return The committed transition, or {@code null} if the event is not valid for the state
+   */
+  private StateAndActions<STATE> commit(EVENT event, boolean rejectionThrows) {
+    while (true) {
+      val current = getState();
+      val stateAndActions = transitions.find(current, event);
+      if (stateAndActions == null) {
+        ActionRunner.illegalEvent(transitionListener, current, event);
+        if (rejectionThrows) {
+          throw ActionRunner.illegalEvent(transitions, current, event);
+        }
+        return null;
+      }
+      if (STATE_HANDLE.compareAndSet(this, current, stateAndActions.getState())) {
+        val actionNanos =
+            ActionRunner.runTransition(
+                stateAndActions, event, current, actionFailureHandler, transitionListener);
+        ActionRunner.transitioned(
+            transitionListener, null, current, event, stateAndActions.getState(), actionNanos);
+        return stateAndActions;
+      }
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public STATE getState() {
+    return (STATE) state;
+  }
+}
@@ -0,0 +1,545 @@
+package jared.stemen.fsm.impl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jared.stemen.fsm.DefinitionReport;
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.Minimization;
+import jared.stemen.fsm.StateMachineDefinition;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Finds structural problems in a set of links and minimizes definitions.
+ *
+ * <p>Links are analyzed as given rather than through a compiled table, so conflicting links that a
+ * definition would reject are reported instead of failing the analysis. A link from any state is
+ * analyzed as a copy from every state that does not link its event without a guard. Nested states
+ * are flattened the same way a compiled definition is: each one is analyzed with copies of the
+ * links of its ancestors for the events it does not link without a guard itself.
+ */
+public final class DefinitionAnalyzer {
+  private DefinitionAnalyzer() {}
+
+  /**
+   * Analyzes the links of a definition.
+   *
+   * @param definition The definition to analyze
+   * @param initialState The state machines of the definition start in
+   * @return The problems found
+   */
+  public static <STATE, EVENT> DefinitionReport<STATE, EVENT> analyze(
+      @NonNull StateMachineDefinition<STATE, EVENT> definition, @NonNull STATE initialState) {
+    return analyze(
+        flattenNestedStates(definition.getLinks(), definition.getParents()),
+        initialState,
+        Set.of());
+  }
+
+  /**
+   * Analyzes a set of links.
+   *
+   * @param links The links to analyze
+   * @param initialState The state machines start in
+   * @param acceptingStates The states a machine is meant to end in, or an empty set to treat every
+   *     state with an outgoing link as live
+   * @return The problems found
+   */
+  public static <STATE, EVENT> DefinitionReport<STATE, EVENT> analyze(
+      @NonNull Collection<? extends Link<STATE, EVENT>> links,
+      @NonNull STATE initialState,
+      @NonNull Set<STATE> acceptingStates) {
+    val outgoing = new LinkedHashMap<STATE, List<Link<STATE, EVENT>>>();
+    val incoming = new HashMap<STATE, List<STATE>>();
+    outgoing.put(initialState, new ArrayList<>());
+    for (val link : expandAnyStateLinks(links, initialState)) {
+      outgoing.computeIfAbsent(link.getSourceState(), s -> new ArrayList<>()).add(link);
+      outgoing.computeIfAbsent(link.getTargetState(), s -> new ArrayList<>());
+      incoming
+          .computeIfAbsent(link.getTargetState(), s -> new ArrayList<>())
+          .add(link.getSourceState());
+    }
+
+    val reachable = reachable(outgoing, initialState);
+    val unreachable = new LinkedHashSet<STATE>(outgoing.keySet());
+    unreachable.removeAll(reachable);
+
+    val deadEnds = new LinkedHashSet<STATE>();
+    if (acceptingStates.isEmpty()) {
+      for (val state : reachable) {
+        if (outgoing.get(state).isEmpty()) {
+          deadEnds.add(state);
+        }
+      }
+    } else {
+      val live = new LinkedHashSet<STATE>();
+      val queue = new ArrayDeque<STATE>();
+      for (val state : acceptingStates) {
+        if (live.add(state)) {
+          queue.add(state);
+        }
+      }
+      while (!queue.isEmpty()) {
+        for (val source : incoming.getOrDefault(queue.poll(), List.of())) {
+          if (live.add(source)) {
+            queue.add(source);
+          }
+        }
+      }
+      for (val state : reachable) {
+        if (!live.contains(state)) {
+          deadEnds.add(state);
+        }
+      }
+    }
+
+    val conflicts = new ArrayList<DefinitionReport.Conflict<STATE, EVENT>>();
+    for (val entry : outgoing.entrySet()) {
+      val linksByEvent = new LinkedHashMap<EVENT, List<Link<STATE, EVENT>>>();
+      for (val link : entry.getValue()) {
+        linksByEvent.computeIfAbsent(link.getEvent(), e -> new ArrayList<>()).add(link);
+      }
+      linksByEvent.forEach(
+          (event, eventLinks) -> {
+            boolean shadowed = false;
+            for (int i = 0; i < eventLinks.size() - 1; i++) {
+              shadowed |= eventLinks.get(i).getGuard() == null;
+            }
+            if (shadowed) {
+              val targets = eventLinks.stream().map(Link::getTargetState).toList();
+              conflicts.add(new DefinitionReport.Conflict<>(entry.getKey(), event, targets));
+            }
+          });
+    }
+
+    return new DefinitionReport<>(
+        Collections.unmodifiableSet(unreachable),
+        Collections.unmodifiableSet(deadEnds),
+        List.copyOf(conflicts));
+  }
+
+  /**
+   * Minimizes a definition.
+   *
+   * <p>The minimized definition keeps the action failure handler and transition listener of the
+   * given definition when it was built by {@link StateMachineDefinitionImpl}.
+   *
+   * @param definition The definition to minimize
+   * @param initialState The state machines of the definition start in
+   * @return The minimized definition and the representative of every reachable state
+   * @throws IllegalArgumentException If a link has a guard
+   */
+  public static <STATE, EVENT> Minimization<STATE, EVENT> minimize(
+      @NonNull StateMachineDefinition<STATE, EVENT> definition, @NonNull STATE initialState) {
+    return minimize(definition, initialState, Set.of());
+  }
+
+  /**
+   * Minimizes a definition with Hopcroft's partition refinement.
+   *
+   * <p>Two reachable states are merged when they accept the same events, run the same actions for
+   * each of them, agree on being accepting and move to merged states again. Merged machines
+   * therefore run the same actions and reject the same events for any sequence of events.
+   * Unreachable states are dropped. Each merged group is represented by the state of the group
+   * that is reached first from the initial state, so the initial state represents itself. Nested
+   * states are flattened, so the minimized definition has none.
+   *
+   * @param definition The definition to minimize
+   * @param initialState The state machines of the definition start in
+   * @param acceptingStates The states a machine is meant to end in, which are never merged with
+   *     other states, or an empty set
+   * @return The minimized definition and the representative of every reachable state
+   * @throws IllegalArgumentException If a link has a guard
+   */
+  public static <STATE, EVENT> Minimization<STATE, EVENT> minimize(
+      @NonNull StateMachineDefinition<STATE, EVENT> definition,
+      @NonNull STATE initialState,
+      @NonNull Set<STATE> acceptingStates) {
+    if (definition.getLinks().stream().anyMatch(link -> link.getGuard() != null)) {
+      throw new IllegalArgumentException("Definitions with guarded links cannot be minimized");
+    }
+    val outgoing = new HashMap<STATE, List<Link<STATE, EVENT>>>();
+    val links = flattenNestedStates(definition.getLinks(), definition.getParents());
+    for (val link : expandAnyStateLinks(links, initialState)) {
+      outgoing.computeIfAbsent(link.getSourceState(), s -> new ArrayList<>()).add(link);
+    }
+    val states = new ArrayList<STATE>(reachable(outgoing, initialState));
+    val stateIndex = new HashMap<STATE, Integer>();
+    for (int i = 0; i < states.size(); i++) {
+      stateIndex.put(states.get(i), i);
+    }
+    val events = new ArrayList<EVENT>();
+    val eventIndex = new HashMap<EVENT, Integer>();
+    for (val state : states) {
+      for (val link : outgoing.getOrDefault(state, List.of())) {
+        if (eventIndex.putIfAbsent(link.getEvent(), events.size()) == null) {
+          events.add(link.getEvent());
+        }
+      }
+    }
+
+    // State n is a sink standing in for every rejected event, so the transition function is total
+    int n = states.size();
+    int m = events.size();
+    val delta = new int[(n + 1) * m];
+    Arrays.fill(delta, n);
+    val linkAt = new ArrayList<Link<STATE, EVENT>>(n * m);
+    for (int i = 0; i < n * m; i++) {
+      linkAt.add(null);
+    }
+    for (int s = 0; s < n; s++) {
+      for (val link : outgoing.getOrDefault(states.get(s), List.of())) {
+        int e = eventIndex.get(link.getEvent());
+        delta[s * m + e] = stateIndex.get(link.getTargetState());
+        linkAt.set(s * m + e, link);
+      }
+    }
+
+    // Initial partition: states that differ in accepting or in the actions and timeout per event
+    val blockOf = new int[n + 1];
+    val signatures = new HashMap<List<Object>, Integer>();
+    for (int s = 0; s <= n; s++) {
+      val signature = new ArrayList<Object>(2 * m + 1);
+      signature.add(s < n && acceptingStates.contains(states.get(s)));
+      for (int e = 0; e < m; e++) {
+        val link = s < n ? linkAt.get(s * m + e) : null;
+        signature.add(link == null ? NO_LINK : new ActionsKey(link.getActions()));
+        signature.add(link == null ? null : link.getTimeout());
+      }
+      blockOf[s] = signatures.computeIfAbsent(signature, k -> signatures.size());
+    }
+    val partition = new Partition(blockOf, signatures.size());
+    refine(partition, delta, n + 1, m);
+
+    val representatives = new HashMap<Integer, STATE>();
+    val mapping = new LinkedHashMap<STATE, STATE>();
+    for (int s = 0; s < n; s++) {
+      val state = states.get(s);
+      mapping.put(state, representatives.computeIfAbsent(partition.blockOf[s], b -> state));
+    }
+
+    val builder = StateMachineDefinitionImpl.<STATE, EVENT>builder();
+    if (definition instanceof StateMachineDefinitionImpl<STATE, EVENT> impl) {
+      builder
+          .actionFailureHandler(impl.getActionFailureHandler())
+          .transitionListener(impl.getTransitionListener());
+    }
+    for (int s = 0; s < n; s++) {
+      val state = states.get(s);
+      if (mapping.get(state) != state) {
+        continue;
+      }
+      for (int e = 0; e < m; e++) {
+        val link = linkAt.get(s * m + e);
+        if (link != null) {
+          builder.link(
+              LinkImpl.<STATE, EVENT>builder()
+                  .sourceState(state)
+                  .event(link.getEvent())
+                  .targetState(mapping.get(link.getTargetState()))
+                  .actions(link.getActions())
+                  .timeout(link.getTimeout())
+                  .build());
+        }
+      }
+    }
+    return new Minimization<>(
+        builder.build(),
+        Collections.unmodifiableMap(mapping),
+        n,
+        representatives.size());
+  }
+
+  private static final Object NO_LINK = new Object();
+
+  /**
+   * Copies the links of the ancestors of every nested state to it, after the links of the state and
+   * nearer ancestors, for the events those do not link without a guard.
+   */
+  static <STATE, EVENT> List<Link<STATE, EVENT>> flattenNestedStates(
+      List<? extends Link<STATE, EVENT>> links, Map<STATE, STATE> parents) {
+    val flattened = new ArrayList<Link<STATE, EVENT>>(links);
+    if (parents.isEmpty()) {
+      return flattened;
+    }
+    val bySource = new HashMap<STATE, List<Link<STATE, EVENT>>>();
+    for (val link : links) {
+      if (!link.isFromAnyState()) {
+        bySource.computeIfAbsent(link.getSourceState(), s -> new ArrayList<>()).add(link);
+      }
+    }
+    for (val state : parents.keySet()) {
+      val unguarded = new HashSet<EVENT>();
+      for (val link : bySource.getOrDefault(state, List.of())) {
+        if (link.getGuard() == null) {
+          unguarded.add(link.getEvent());
+        }
+      }
+      for (STATE ancestor = parents.get(state);
+          ancestor != null;
+          ancestor = parents.get(ancestor)) {
+        val ancestorLinks = bySource.getOrDefault(ancestor, List.of());
+        for (val link : ancestorLinks) {
+          if (!unguarded.contains(link.getEvent())) {
+            flattened.add(
+                LinkImpl.<STATE, EVENT>builder()
+                    .sourceState(state)
+                    .event(link.getEvent())
+                    .targetState(link.getTargetState())
+                    .actions(link.getActions())
+                    .guard(link.getGuard())
+                    .timeout(link.getTimeout())
+                    .build());
+          }
+        }
+        for (val link : ancestorLinks) {
+          if (link.getGuard() == null) {
+            unguarded.add(link.getEvent());
+          }
+        }
+      }
+    }
+    return flattened;
+  }
+
+  /**
+   * Replaces every link from any state by copies from each state mentioned by the links, placed
+   * after the links of that state, unless the state links the event without a guard.
+   */
+  private static <STATE, EVENT> List<Link<STATE, EVENT>> expandAnyStateLinks(
+      Collection<? extends Link<STATE, EVENT>> links, STATE initialState) {
+    val expanded = new ArrayList<Link<STATE, EVENT>>();
+    val anyStateLinks = new ArrayList<Link<STATE, EVENT>>();
+    val states = new LinkedHashSet<STATE>();
+    val unguarded = new HashSet<List<Object>>();
+    states.add(initialState);
+    for (val link : links) {
+      if (link.isFromAnyState()) {
+        anyStateLinks.add(link);
+      } else {
+        expanded.add(link);
+        states.add(link.getSourceState());
+        if (link.getGuard() == null) {
+          unguarded.add(List.of(link.getSourceState(), link.getEvent()));
+        }
+      }
+      states.add(link.getTargetState());
+    }
+    for (val state : states) {
+      for (val link : anyStateLinks) {
+        if (!unguarded.contains(List.of(state, link.getEvent()))) {
+          expanded.add(
+              LinkImpl.<STATE, EVENT>builder()
+                  .sourceState(state)
+                  .event(link.getEvent())
+                  .targetState(link.getTargetState())
+                  .actions(link.getActions())
+                  .guard(link.getGuard())
+                  .timeout(link.getTimeout())
+                  .build());
+        }
+      }
+    }
+    return expanded;
+  }
+
+  /** Compares action lists by the identity of their actions, since lambdas have no equality. */
+  private record ActionsKey(List<Runnable> actions) {
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof ActionsKey key) || key.actions.size() != actions.size()) {
+        return false;
+      }
+      for (int i = 0; i < actions.size(); i++) {
+        if (actions.get(i) != key.actions.get(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public int hashCode() {
+      int hash = 1;
+      for (val action : actions) {
+        hash = 31 * hash + System.identityHashCode(action);
+      }
+      return hash;
+    }
+  }
+
+  private static <STATE, EVENT> Set<STATE> reachable(
+      Map<STATE, List<Link<STATE, EVENT>>> outgoing, STATE initialState) {
+    val reachable = new LinkedHashSet<STATE>();
+    val queue = new ArrayDeque<STATE>();
+    reachable.add(initialState);
+    queue.add(initialState);
+    while (!queue.isEmpty()) {
+      for (val link : outgoing.getOrDefault(queue.poll(), List.of())) {
+        if (reachable.add(link.getTargetState())) {
+          queue.add(link.getTargetState());
+        }
+      }
+    }
+    return reachable;
+  }
+
+  /**
+   * Splits the blocks of the partition until every block agrees on the block each event moves to.
+   *
+   * <p>Every block starts on the work list. A popped block splits all blocks by their predecessors
+   * on each event; when a block outside the work list splits, only the smaller half is added.
+   */
+  private static void refine(Partition partition, int[] delta, int stateCount, int eventCount) {
+    // Predecessors of each (event, target) as compressed rows
+    val predecessorStart = new int[eventCount * stateCount + 1];
+    for (int s = 0; s < stateCount; s++) {
+      for (int e = 0; e < eventCount; e++) {
+        predecessorStart[e * stateCount + delta[s * eventCount + e] + 1]++;
+      }
+    }
+    for (int i = 1; i < predecessorStart.length; i++) {
+      predecessorStart[i] += predecessorStart[i - 1];
+    }
+    val predecessors = new int[stateCount * eventCount];
+    val fill = Arrays.copyOf(predecessorStart, predecessorStart.length - 1);
+    for (int s = 0; s < stateCount; s++) {
+      for (int e = 0; e < eventCount; e++) {
+        predecessors[fill[e * stateCount + delta[s * eventCount + e]]++] = s;
+      }
+    }
+
+    val work = new ArrayDeque<Integer>();
+    val inWork = new boolean[stateCount + 1];
+    for (int b = 0; b < partition.blockCount; b++) {
+      work.add(b);
+      inWork[b] = true;
+    }
+    val touched = new int[stateCount];
+    while (!work.isEmpty()) {
+      int splitter = work.poll();
+      inWork[splitter] = false;
+      val members =
+          Arrays.copyOfRange(
+              partition.elements, partition.start[splitter], partition.end[splitter]);
+      for (int e = 0; e < eventCount; e++) {
+        int touchedCount = 0;
+        for (int target : members) {
+          int row = e * stateCount + target;
+          for (int p = predecessorStart[row]; p < predecessorStart[row + 1]; p++) {
+            int block = partition.mark(predecessors[p]);
+            if (block >= 0) {
+              touched[touchedCount++] = block;
+            }
+          }
+        }
+        for (int t = 0; t < touchedCount; t++) {
+          int block = touched[t];
+          int split = partition.split(block);
+          if (split < 0) {
+            continue;
+          }
+          if (inWork[block]) {
+            work.add(split);
+            inWork[split] = true;
+          } else {
+            int smaller = partition.size(split) <= partition.size(block) ? split : block;
+            work.add(smaller);
+            inWork[smaller] = true;
+          }
+        }
+      }
+    }
+  }
+
+  /** Blocks of states kept as contiguous ranges of one array, with marked states at the front. */
+  private static final class Partition {
+    private final int[] blockOf;
+    private final int[] elements;
+    private final int[] position;
+    private final int[] start;
+    private final int[] end;
+    private final int[] marked;
+    private int blockCount;
+
+    private Partition(int[] blockOf, int initialBlocks) {
+      int stateCount = blockOf.length;
+      this.blockOf = blockOf;
+      this.elements = new int[stateCount];
+      this.position = new int[stateCount];
+      this.start = new int[stateCount + 1];
+      this.end = new int[stateCount + 1];
+      this.marked = new int[stateCount + 1];
+      this.blockCount = initialBlocks;
+      for (int s = 0; s < stateCount; s++) {
+        end[blockOf[s]]++;
+      }
+      for (int b = 1; b < initialBlocks; b++) {
+        end[b] += end[b - 1];
+      }
+      for (int b = 0; b < initialBlocks; b++) {
+        start[b] = b == 0 ? 0 : end[b - 1];
+      }
+      val fill = Arrays.copyOf(start, initialBlocks);
+      for (int s = 0; s < stateCount; s++) {
+        position[s] = fill[blockOf[s]]++;
+        elements[position[s]] = s;
+      }
+    }
+
+    private int size(int block) {
+      return end[block] - start[block];
+    }
+
+    /**
+     * Moves a state into the marked front of its block.
+     *
+     * @return The block of the state if it is the first one marked in it, {@code -1} otherwise
+     */
+    private int mark(int state) {
+      int block = blockOf[state];
+      int boundary = start[block] + marked[block];
+      if (position[state] < boundary) {
+        return -1;
+      }
+      int other = elements[boundary];
+      elements[position[state]] = other;
+      position[other] = position[state];
+      elements[boundary] = state;
+      position[state] = boundary;
+      return marked[block]++ == 0 ? block : -1;
+    }
+
+    /**
+     * Moves the marked states of a block into a new block unless all of its states are marked.
+     *
+     * @return The new block, or {@code -1} if the block was not split
+     */
+    private int split(int block) {
+      int count = marked[block];
+      marked[block] = 0;
+      if (count == size(block)) {
+        return -1;
+      }
+      int created = blockCount++;
+      start[created] = start[block];
+      end[created] = start[block] + count;
+      start[block] += count;
+      for (int i = start[created]; i < end[created]; i++) {
+        blockOf[elements[i]] = created;
+      }
+      return created;
+    }
+  }
+}
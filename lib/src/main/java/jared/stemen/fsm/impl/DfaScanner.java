@@ -0,0 +1,454 @@
+package jared.stemen.fsm.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.StateMachineDefinition;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.val;
+
+/**
+ * Runs a definition whose events are characters over whole inputs without boxing.
+ *
+ * <p>Characters that every state treats alike are merged into equivalence classes, so the
+ * transition table has one column per class rather than per character. Scanning then costs two
+ * array reads per character. Bytes are read as ISO-8859-1 characters, so a byte {@code b} is the
+ * event {@code (char) (b & 0xFF)}. Inputs are read in place: a {@link CharSequence} by index, a
+ * {@link ByteBuffer} by absolute index between its position and limit without moving either, and a
+ * file through a read-only mapping.
+ *
+ * <p>Nested states follow the links of their ancestors like a compiled definition does. Only
+ * transitions are followed; the actions of the links are not run. A scanner is immutable
+ * and can be shared between threads.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ */
+public final class DfaScanner<STATE> {
+  /** The largest part of a file mapped at once. A single token must fit in it. */
+  static final int MAPPING_SIZE = 1 << 30;
+
+  private static final int MERGE_INTERVAL = 256;
+
+  private final List<STATE> states;
+  private final char[] charClasses;
+  private final int[] byteClasses;
+  private final int classCount;
+
+  // Rows hold the offset of the next state's row, so a step is one read; row 0 rejects everything
+  private final int[] next;
+  private final int acceptingRow;
+  private final int initialRow;
+
+  /**
+   * Compiles the scanner.
+   *
+   * @param definition The definition whose transitions the scanner follows
+   * @param initialState The state every scan and token starts in
+   * @param acceptingStates The states that end a match
+   * @throws IllegalArgumentException If no accepting state is given or a link has a guard or is
+   *     from any state
+   */
+  @Builder
+  private DfaScanner(
+      @NonNull StateMachineDefinition<STATE, Character> definition,
+      @NonNull STATE initialState,
+      @Singular @NonNull Set<STATE> acceptingStates) {
+    if (acceptingStates.isEmpty()) {
+      throw new IllegalArgumentException("A scanner needs at least one accepting state");
+    }
+    val links =
+        DefinitionAnalyzer.flattenNestedStates(definition.getLinks(), definition.getParents());
+    if (links.stream().anyMatch(link -> link.getGuard() != null)) {
+      throw new IllegalArgumentException("A scanner cannot follow guarded links");
+    }
+    if (links.stream().anyMatch(Link::isFromAnyState)) {
+      throw new IllegalArgumentException("A scanner cannot follow links from any state");
+    }
+    val all = new LinkedHashSet<STATE>();
+    all.add(initialState);
+    for (val link : links) {
+      all.add(link.getSourceState());
+      all.add(link.getTargetState());
+    }
+    all.removeAll(acceptingStates);
+    all.addAll(acceptingStates);
+    // Accepting states are numbered last, so a row is accepting if it is at or past acceptingRow
+    val stateIndexes = new HashMap<STATE, Integer>();
+    this.states = new ArrayList<>();
+    states.add(null);
+    for (val state : all) {
+      stateIndexes.put(state, states.size());
+      states.add(state);
+    }
+    val stateCount = states.size();
+
+    // Each character's column of targets; characters with equal columns share a class
+    val columns = new HashMap<Character, int[]>();
+    for (val link : links) {
+      val column = columns.computeIfAbsent(link.getEvent(), c -> new int[stateCount]);
+      column[stateIndexes.get(link.getSourceState())] = stateIndexes.get(link.getTargetState());
+    }
+    val classes = new HashMap<Column, Integer>();
+    val classColumns = new ArrayList<int[]>();
+    classColumns.add(new int[stateCount]);
+    this.charClasses = new char[Character.MAX_VALUE + 1];
+    for (val entry : columns.entrySet()) {
+      val column = entry.getValue();
+      int cls =
+          classes.computeIfAbsent(
+              new Column(column),
+              k -> {
+                classColumns.add(column);
+                return classColumns.size() - 1;
+              });
+      charClasses[entry.getKey()] = (char) cls;
+    }
+    this.byteClasses = new int[256];
+    for (int b = 0; b < 256; b++) {
+      byteClasses[b] = charClasses[b];
+    }
+    this.classCount = classColumns.size();
+
+    this.next = new int[stateCount * classCount];
+    for (int cls = 0; cls < classCount; cls++) {
+      val column = classColumns.get(cls);
+      for (int state = 0; state < stateCount; state++) {
+        next[state * classCount + cls] = column[state] * classCount;
+      }
+    }
+    this.acceptingRow = (stateCount - acceptingStates.size()) * classCount;
+    this.initialRow = stateIndexes.get(initialState) * classCount;
+  }
+
+  /** Compares columns by content. */
+  private record Column(int[] targets) {
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Column column && Arrays.equals(targets, column.targets);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(targets);
+    }
+  }
+
+  /**
+   * Receives the tokens and rejected positions of a scan.
+   *
+   * @param <STATE> The type representing the states in the FSM
+   */
+  public interface TokenListener<STATE> {
+    /**
+     * Called for every token, which is the longest non-empty match starting after the previous
+     * token.
+     *
+     * @param start The index of the first character of the token
+     * @param end The index after the last character of the token
+     * @param state The accepting state the token ended in
+     */
+    void onToken(long start, long end, STATE state);
+
+    /**
+     * Called when no token starts at an index. Scanning resumes at the next index.
+     *
+     * @param position The index no token starts at
+     */
+    default void onReject(long position) {}
+  }
+
+  /**
+   * Gets the number of classes the characters were merged into, including the class of characters
+   * no link uses.
+   *
+   * @return The number of character classes
+   */
+  public int getClassCount() {
+    return classCount;
+  }
+
+  /**
+   * Checks whether the whole input moves the machine from the initial state to an accepting state.
+   *
+   * @param input The input to scan
+   * @return {@code true} if the input is accepted
+   */
+  public boolean matches(@NonNull CharSequence input) {
+    int row = initialRow;
+    for (int i = 0, length = input.length(); i < length && row != 0; i++) {
+      row = next[row + charClasses[input.charAt(i)]];
+    }
+    return row >= acceptingRow;
+  }
+
+  /**
+   * Checks whether the remaining bytes of the buffer move the machine from the initial state to an
+   * accepting state.
+   *
+   * @param input The input to scan
+   * @return {@code true} if the input is accepted
+   */
+  public boolean matches(@NonNull ByteBuffer input) {
+    int row = initialRow;
+    for (int i = input.position(), limit = input.limit(); i < limit && row != 0; i++) {
+      row = next[row + byteClasses[input.get(i) & 0xFF]];
+    }
+    return row >= acceptingRow;
+  }
+
+  /**
+   * Finds the first character the machine has no transition for, starting from the initial state.
+   *
+   * @param input The input to scan
+   * @return The index of the rejected character, or {@code -1} if the whole input was consumed
+   */
+  public long rejectPosition(@NonNull CharSequence input) {
+    int row = initialRow;
+    for (int i = 0, length = input.length(); i < length; i++) {
+      row = next[row + charClasses[input.charAt(i)]];
+      if (row == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Finds the first byte the machine has no transition for, starting from the initial state.
+   *
+   * @param input The input to scan
+   * @return The index of the rejected byte in the buffer, or {@code -1} if every remaining byte
+   *     was consumed
+   */
+  public long rejectPosition(@NonNull ByteBuffer input) {
+    int row = initialRow;
+    for (int i = input.position(), limit = input.limit(); i < limit; i++) {
+      row = next[row + byteClasses[input.get(i) & 0xFF]];
+      if (row == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Splits the input into the longest tokens accepted from the initial state.
+   *
+   * @param input The input to scan
+   * @param listener Receives the tokens and the indexes no token starts at
+   */
+  public void tokenize(@NonNull CharSequence input, @NonNull TokenListener<STATE> listener) {
+    val length = input.length();
+    int start = 0;
+    while (start < length) {
+      int row = initialRow;
+      int end = -1;
+      int endRow = 0;
+      for (int i = start; i < length; ) {
+        row = next[row + charClasses[input.charAt(i++)]];
+        if (row == 0) {
+          break;
+        }
+        if (row >= acceptingRow) {
+          end = i;
+          endRow = row;
+        }
+      }
+      start = emit(listener, start, end, endRow, 0);
+    }
+  }
+
+  /**
+   * Splits the remaining bytes of the buffer into the longest tokens accepted from the initial
+   * state. Reported indexes are indexes into the buffer.
+   *
+   * @param input The input to scan
+   * @param listener Receives the tokens and the indexes no token starts at
+   */
+  public void tokenize(@NonNull ByteBuffer input, @NonNull TokenListener<STATE> listener) {
+    tokenize(input, input.position(), input.limit(), 0, true, listener);
+  }
+
+  /**
+   * Splits a file into the longest tokens accepted from the initial state. Reported indexes are
+   * byte offsets into the file.
+   *
+   * @param file The file to scan
+   * @param listener Receives the tokens and the offsets no token starts at
+   * @throws UncheckedIOException If the file cannot be read
+   * @throws IllegalStateException If a token does not fit in a single mapping
+   */
+  public void tokenize(@NonNull Path file, @NonNull TokenListener<STATE> listener) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      val size = channel.size();
+      long offset = 0;
+      while (offset < size) {
+        val length = (int) Math.min(size - offset, MAPPING_SIZE);
+        val last = offset + length == size;
+        val mapping = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        val stop = tokenize(mapping, 0, length, offset, last, listener);
+        if (stop == 0 && !last) {
+          throw new IllegalStateException(
+              "Token at offset %d of %s is longer than %d bytes"
+                  .formatted(offset, file, MAPPING_SIZE));
+        }
+        offset += stop;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot scan " + file, e);
+    }
+  }
+
+  /**
+   * Tokenizes {@code [from, to)} of the buffer, reporting indexes shifted by {@code base}.
+   *
+   * @return The index scanning stopped at, which is {@code to} unless more input may extend the
+   *     token starting there
+   */
+  private int tokenize(
+      ByteBuffer input, int from, int to, long base, boolean last, TokenListener<STATE> listener) {
+    int start = from;
+    while (start < to) {
+      int row = initialRow;
+      int end = -1;
+      int endRow = 0;
+      int i = start;
+      while (i < to) {
+        row = next[row + byteClasses[input.get(i++) & 0xFF]];
+        if (row == 0) {
+          break;
+        }
+        if (row >= acceptingRow) {
+          end = i;
+          endRow = row;
+        }
+      }
+      if (!last && row != 0 && i == to) {
+        return start;
+      }
+      start = emit(listener, start, end, endRow, base);
+    }
+    return start;
+  }
+
+  int initialRow() {
+    return initialRow;
+  }
+
+  boolean isAccepting(int row) {
+    return row >= acceptingRow;
+  }
+
+  /**
+   * Gets the state of a row.
+   *
+   * @return The state, or {@code null} for the rejecting row
+   */
+  STATE stateOf(int row) {
+    return states.get(row / classCount);
+  }
+
+  /**
+   * Runs {@code [from, to)} of the buffer from a row.
+   *
+   * @return The row the machine ends in, {@code 0} if a byte was rejected
+   */
+  int run(ByteBuffer input, int from, int to, int row) {
+    for (int i = from; i < to && row != 0; i++) {
+      row = next[row + byteClasses[input.get(i) & 0xFF]];
+    }
+    return row;
+  }
+
+  /**
+   * Runs {@code [from, to)} of the buffer from every state at once.
+   *
+   * <p>Simulations that reach the same state are merged every {@value #MERGE_INTERVAL} bytes and
+   * rejected ones are dropped, so a chunk usually costs a few passes rather than one per state.
+   *
+   * @return The row each state ends in, indexed by state number, which is its row divided by the
+   *     number of classes
+   */
+  int[] runFromEveryState(ByteBuffer input, int from, int to) {
+    val stateCount = states.size();
+    val active = new int[stateCount];
+    val slotOf = new int[stateCount];
+    val firstSlot = new int[stateCount];
+    val remap = new int[stateCount];
+    slotOf[0] = -1;
+    for (int state = 1; state < stateCount; state++) {
+      active[state - 1] = state * classCount;
+      slotOf[state] = state - 1;
+    }
+    int count = stateCount - 1;
+    for (int block = from, blockEnd; block < to && count > 0; block = blockEnd) {
+      blockEnd = block + Math.min(to - block, MERGE_INTERVAL);
+      for (int i = block; i < blockEnd; i++) {
+        val cls = byteClasses[input.get(i) & 0xFF];
+        for (int slot = 0; slot < count; slot++) {
+          active[slot] = next[active[slot] + cls];
+        }
+      }
+
+      Arrays.fill(firstSlot, -1);
+      int merged = 0;
+      for (int slot = 0; slot < count; slot++) {
+        val row = active[slot];
+        if (row == 0) {
+          remap[slot] = -1;
+          continue;
+        }
+        val state = row / classCount;
+        if (firstSlot[state] < 0) {
+          firstSlot[state] = merged;
+          active[merged++] = row;
+        }
+        remap[slot] = firstSlot[state];
+      }
+      if (merged < count) {
+        for (int state = 1; state < stateCount; state++) {
+          if (slotOf[state] >= 0) {
+            slotOf[state] = remap[slotOf[state]];
+          }
+        }
+        count = merged;
+      }
+    }
+    val rows = new int[stateCount];
+    for (int state = 1; state < stateCount; state++) {
+      rows[state] = slotOf[state] < 0 ? 0 : active[slotOf[state]];
+    }
+    return rows;
+  }
+
+  /**
+   * Follows a row through the result of {@link #runFromEveryState}.
+   *
+   * @return The row the machine ends in
+   */
+  int follow(int[] rows, int row) {
+    return rows[row / classCount];
+  }
+
+  private int emit(TokenListener<STATE> listener, int start, int end, int endRow, long base) {
+    if (end < 0) {
+      listener.onReject(base + start);
+      return start + 1;
+    }
+    listener.onToken(base + start, base + end, states.get(endRow / classCount));
+    return end;
+  }
+}
@@ -0,0 +1,439 @@
+package jared.stemen.fsm.impl;
+
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.StateMachineDefinition;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Opt-in compiler that turns a definition into a hidden class specialized for its links.
+ *
+ * <p>The generated class dispatches with a {@code tableswitch} over the state ordinal, then one
+ * over the event ordinal, and calls the actions of the matching link directly from {@code static
+ * final} fields instead of iterating a {@code List<Runnable>}. Every action call site in the
+ * generated code only ever sees one receiver, so the JIT can inline the whole transition path.
+ *
+ * <p>Compiling costs a class definition, so it is meant for the few hottest definitions of an
+ * application. Machines created from a specialized definition behave exactly like those created
+ * from the original one.
+ */
+public final class DispatcherCompiler {
+  private static final String CLASS_NAME =
+      DispatcherCompiler.class.getPackageName().replace('.', '/') + "/SpecializedDispatcher";
+  private static final String SUPER_NAME = CompiledDispatcher.class.getName().replace('.', '/');
+  private static final String RUNNABLE = "Ljava/lang/Runnable;";
+  private static final String OBJECT = "Ljava/lang/Object;";
+  private static final String ACTIONS = "[" + RUNNABLE;
+  private static final String METHOD_HANDLES = "java/lang/invoke/MethodHandles";
+  private static final String LOOKUP = "Ljava/lang/invoke/MethodHandles$Lookup;";
+  private static final int MAX_CODE_LENGTH = 65535;
+
+  private DispatcherCompiler() {}
+
+  /**
+   * Compiles a definition whose states and events are enum constants.
+   *
+   * @param definition The definition to compile
+   * @return A definition following the same links whose machines dispatch through generated code
+   * @throws IllegalArgumentException If the states and events are not constants of a single enum
+   *     each, if a link has a guard, or if the definition is too large to fit in one generated
+   *     method
+   */
+  public static <STATE extends Enum<STATE>, EVENT extends Enum<EVENT>>
+      StateMachineDefinition<STATE, EVENT> compile(
+          @NonNull StateMachineDefinition<STATE, EVENT> definition) {
+    if (!(definition instanceof StateMachineDefinitionImpl<STATE, EVENT> impl)
+        || !(impl.getTransitions() instanceof EnumTransitionTable<STATE, EVENT> table)) {
+      throw new IllegalArgumentException(
+          "Only definitions whose states and events are enum constants can be compiled");
+    }
+    if (table.guarded()) {
+      throw new IllegalArgumentException("Definitions with guarded links cannot be compiled");
+    }
+    val actions = new ArrayList<Runnable>();
+    val bytes = generate(table, actions);
+    CompiledDispatcher dispatcher;
+    try {
+      val type =
+          MethodHandles.lookup()
+              .defineHiddenClassWithClassData(bytes, actions.toArray(new Runnable[0]), true)
+              .lookupClass();
+      dispatcher =
+          (CompiledDispatcher)
+              MethodHandles.lookup()
+                  .findConstructor(
+                      type, MethodType.methodType(void.class, ActionFailureHandler.class))
+                  .invoke(impl.getActionFailureHandler());
+    } catch (Throwable e) {
+      throw new IllegalStateException("Cannot define a specialized dispatcher", e);
+    }
+    return new SpecializedStateMachineDefinition<>(impl, table, dispatcher);
+  }
+
+  /**
+   * Generates the class file of a dispatcher.
+   *
+   * @param table The transitions to dispatch
+   * @param actions Receives the actions, in the order of the static fields holding them
+   * @return The class file
+   * @throws IllegalArgumentException If a generated method exceeds the size limit of the JVM
+   */
+  private static byte[] generate(EnumTransitionTable<?, ?> table, List<Runnable> actions) {
+    val pool = new ConstantPool();
+    val fieldIndexes = new IdentityHashMap<Runnable, Integer>();
+    val states = table.stateCount();
+    val events = table.eventCount();
+    for (int state = 0; state < states; state++) {
+      for (int event = 0; event < events; event++) {
+        val transition = table.find(state, event);
+        if (transition != null) {
+          for (val action : transition.getActions()) {
+            if (fieldIndexes.putIfAbsent(action, actions.size()) == null) {
+              actions.add(action);
+            }
+          }
+        }
+      }
+    }
+
+    val out = new ByteVector();
+    out.u4(0xcafebabe).u2(0).u2(61);
+    val body = new ByteVector();
+    body.u2(0x0030).u2(pool.type(CLASS_NAME)).u2(pool.type(SUPER_NAME)).u2(0);
+    body.u2(actions.size());
+    for (int i = 0; i < actions.size(); i++) {
+      body.u2(0x001a).u2(pool.utf8("a" + i)).u2(pool.utf8(RUNNABLE)).u2(0);
+    }
+    body.u2(3);
+    method(
+        body,
+        pool,
+        0x0000,
+        "<init>",
+        "(Ljared/stemen/fsm/ActionFailureHandler;)V",
+        2,
+        2,
+        constructor(pool),
+        List.of());
+    method(
+        body,
+        pool,
+        0x0008,
+        "<clinit>",
+        "()V",
+        3,
+        0,
+        staticInitializer(pool, actions.size()),
+        List.of());
+    val frames = new ArrayList<Integer>();
+    method(
+        body,
+        pool,
+        0x0001,
+        "dispatch",
+        "(II" + OBJECT + OBJECT + ")I",
+        6,
+        5,
+        dispatch(pool, table, fieldIndexes, frames),
+        frames);
+    body.u2(0);
+    pool.writeTo(out);
+    return out.append(body).toByteArray();
+  }
+
+  private static ByteVector constructor(ConstantPool pool) {
+    return new ByteVector()
+        .u1(0x2a)
+        .u1(0x2b)
+        .u1(0xb7)
+        .u2(pool.method(SUPER_NAME, "<init>", "(Ljared/stemen/fsm/ActionFailureHandler;)V"))
+        .u1(0xb1);
+  }
+
+  /**
+   * Generates the static initializer, which reads the actions from the class data with {@link
+   * MethodHandles#classData} and stores each of them in its field.
+   */
+  private static ByteVector staticInitializer(ConstantPool pool, int fields) {
+    val code = new ByteVector();
+    if (fields > 0) {
+      code.u1(0xb8).u2(pool.method(METHOD_HANDLES, "lookup", "()" + LOOKUP));
+      code.u1(0x13).u2(pool.string(ConstantDescs.DEFAULT_NAME));
+      code.u1(0x13).u2(pool.type(ACTIONS));
+      code.u1(0xb8)
+          .u2(
+              pool.method(
+                  METHOD_HANDLES,
+                  "classData",
+                  "(" + LOOKUP + "Ljava/lang/String;Ljava/lang/Class;)" + OBJECT));
+      code.u1(0xc0).u2(pool.type(ACTIONS));
+      for (int i = 0; i < fields; i++) {
+        code.u1(0x59);
+        pushInt(code, i);
+        code.u1(0x32).u1(0xb3).u2(pool.field(CLASS_NAME, "a" + i, RUNNABLE));
+      }
+      code.u1(0x57);
+    }
+    return code.u1(0xb1);
+  }
+
+  /**
+   * Generates {@link CompiledDispatcher#dispatch}. The only branches are switches, and no local is
+   * introduced, so every branch target has the frame of the method entry.
+   */
+  private static ByteVector dispatch(
+      ConstantPool pool,
+      EnumTransitionTable<?, ?> table,
+      Map<Runnable, Integer> fieldIndexes,
+      List<Integer> frames) {
+    val run = pool.method(SUPER_NAME, "run", "(" + RUNNABLE + OBJECT + OBJECT + ")Z");
+    val finish = pool.method(SUPER_NAME, "finish", "(I" + OBJECT + OBJECT + "I)I");
+    val states = table.stateCount();
+    val events = table.eventCount();
+    val code = new ByteVector();
+    code.u1(0x1b);
+    val stateSwitch = tableSwitch(code, states);
+
+    val illegal = code.length();
+    frames.add(illegal);
+    code.u1(0x02).u1(0xac);
+
+    val switchStart = stateSwitch.opcode();
+    code.patchDefault(stateSwitch, illegal - switchStart);
+    for (int state = 0; state < states; state++) {
+      boolean linked = false;
+      for (int event = 0; event < events && !linked; event++) {
+        linked = table.find(state, event) != null;
+      }
+      if (!linked) {
+        code.patchCase(stateSwitch, state, illegal - switchStart);
+        continue;
+      }
+      code.patchCase(stateSwitch, state, code.length() - switchStart);
+      frames.add(code.length());
+      code.u1(0x1c);
+      val eventSwitch = tableSwitch(code, events);
+      code.patchDefault(eventSwitch, illegal - eventSwitch.opcode());
+      for (int event = 0; event < events; event++) {
+        val transition = table.find(state, event);
+        if (transition == null) {
+          code.patchCase(eventSwitch, event, illegal - eventSwitch.opcode());
+          continue;
+        }
+        code.patchCase(eventSwitch, event, code.length() - eventSwitch.opcode());
+        frames.add(code.length());
+        code.u1(0x2a).u1(0x03);
+        for (val action : transition.getActions()) {
+          code.u1(0x2a)
+              .u1(0xb2)
+              .u2(pool.field(CLASS_NAME, "a" + fieldIndexes.get(action), RUNNABLE))
+              .u1(0x2d)
+              .u1(0x19)
+              .u1(4)
+              .u1(0xb6)
+              .u2(run)
+              .u1(0x80);
+        }
+        code.u1(0x2d).u1(0x19).u1(4);
+        pushInt(code, ((Enum<?>) transition.getState()).ordinal());
+        code.u1(0xb6).u2(finish).u1(0xac);
+      }
+    }
+    return code;
+  }
+
+  private static Switch tableSwitch(ByteVector code, int cases) {
+    val opcode = code.length();
+    code.u1(0xaa);
+    while (code.length() % 4 != 0) {
+      code.u1(0);
+    }
+    val defaultOffset = code.length();
+    code.u4(0).u4(0).u4(cases - 1);
+    for (int i = 0; i < cases; i++) {
+      code.u4(0);
+    }
+    return new Switch(opcode, defaultOffset);
+  }
+
+  private static void pushInt(ByteVector code, int value) {
+    if (value <= 5) {
+      code.u1(0x03 + value);
+    } else if (value <= Byte.MAX_VALUE) {
+      code.u1(0x10).u1(value);
+    } else if (value <= Short.MAX_VALUE) {
+      code.u1(0x11).u2(value);
+    } else {
+      throw new IllegalArgumentException("The definition is too large to be compiled");
+    }
+  }
+
+  private static void method(
+      ByteVector out,
+      ConstantPool pool,
+      int access,
+      String name,
+      String descriptor,
+      int maxStack,
+      int maxLocals,
+      ByteVector code,
+      List<Integer> frames) {
+    if (code.length() > MAX_CODE_LENGTH) {
+      throw new IllegalArgumentException(
+          "The definition has too many links and actions to be compiled");
+    }
+    val stackMap = new ByteVector();
+    if (!frames.isEmpty()) {
+      stackMap.u2(frames.size());
+      int previous = -1;
+      for (val offset : frames) {
+        val delta = offset - previous - 1;
+        if (delta < 64) {
+          stackMap.u1(delta);
+        } else {
+          stackMap.u1(251).u2(delta);
+        }
+        previous = offset;
+      }
+    }
+    val attribute = new ByteVector().u2(maxStack).u2(maxLocals).u4(code.length()).append(code);
+    attribute.u2(0);
+    if (frames.isEmpty()) {
+      attribute.u2(0);
+    } else {
+      attribute.u2(1).u2(pool.utf8("StackMapTable")).u4(stackMap.length()).append(stackMap);
+    }
+    out.u2(access).u2(pool.utf8(name)).u2(pool.utf8(descriptor)).u2(1);
+    out.u2(pool.utf8("Code")).u4(attribute.length()).append(attribute);
+  }
+
+  /** The position of a {@code tableswitch} and of its jump offsets. */
+  private record Switch(int opcode, int defaultOffset) {}
+
+  /** Growable big-endian byte buffer. */
+  private static final class ByteVector {
+    private byte[] bytes = new byte[256];
+    private int length;
+
+    ByteVector u1(int value) {
+      if (length == bytes.length) {
+        bytes = Arrays.copyOf(bytes, length * 2);
+      }
+      bytes[length++] = (byte) value;
+      return this;
+    }
+
+    ByteVector u2(int value) {
+      return u1(value >>> 8).u1(value);
+    }
+
+    ByteVector u4(int value) {
+      return u2(value >>> 16).u2(value);
+    }
+
+    ByteVector append(ByteVector other) {
+      for (int i = 0; i < other.length; i++) {
+        u1(other.bytes[i]);
+      }
+      return this;
+    }
+
+    void patchDefault(Switch target, int offset) {
+      put(target.defaultOffset(), offset);
+    }
+
+    void patchCase(Switch target, int index, int offset) {
+      put(target.defaultOffset() + 12 + index * 4, offset);
+    }
+
+    private void put(int position, int value) {
+      bytes[position] = (byte) (value >>> 24);
+      bytes[position + 1] = (byte) (value >>> 16);
+      bytes[position + 2] = (byte) (value >>> 8);
+      bytes[position + 3] = (byte) value;
+    }
+
+    int length() {
+      return length;
+    }
+
+    byte[] toByteArray() {
+      return Arrays.copyOf(bytes, length);
+    }
+  }
+
+  /** Constant pool holding the names, types and member references of the generated class. */
+  private static final class ConstantPool {
+    private final ByteVector entries = new ByteVector();
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private int count = 1;
+
+    int utf8(String value) {
+      return index(
+          "U" + value,
+          () -> {
+            val bytes = value.getBytes(StandardCharsets.UTF_8);
+            entries.u1(1).u2(bytes.length);
+            for (val b : bytes) {
+              entries.u1(b);
+            }
+          });
+    }
+
+    int string(String value) {
+      val valueIndex = utf8(value);
+      return index("S" + value, () -> entries.u1(8).u2(valueIndex));
+    }
+
+    int type(String name) {
+      val nameIndex = utf8(name);
+      return index("C" + name, () -> entries.u1(7).u2(nameIndex));
+    }
+
+    int field(String owner, String name, String descriptor) {
+      return member(9, owner, name, descriptor);
+    }
+
+    int method(String owner, String name, String descriptor) {
+      return member(10, owner, name, descriptor);
+    }
+
+    private int member(int tag, String owner, String name, String descriptor) {
+      val ownerIndex = type(owner);
+      val nameIndex = utf8(name);
+      val descriptorIndex = utf8(descriptor);
+      val nameAndType =
+          index(
+              "N" + name + ":" + descriptor,
+              () -> entries.u1(12).u2(nameIndex).u2(descriptorIndex));
+      return index(
+          tag + owner + "." + name + ":" + descriptor,
+          () -> entries.u1(tag).u2(ownerIndex).u2(nameAndType));
+    }
+
+    private int index(String key, Runnable writer) {
+      val existing = indexes.get(key);
+      if (existing != null) {
+        return existing;
+      }
+      writer.run();
+      indexes.put(key, count);
+      return count++;
+    }
+
+    void writeTo(ByteVector out) {
+      out.u2(count).append(entries);
+    }
+  }
+}
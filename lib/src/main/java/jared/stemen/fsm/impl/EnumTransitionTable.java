@@ -0,0 +1,199 @@
+package jared.stemen.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.val;
+
+/**
+ * Dense transition table for machines whose states and events are enum constants.
+ *
+ * <p>Transitions are stored in a single array indexed by {@code stateOrdinal * eventCount +
+ * eventOrdinal}, so dispatching an event costs two ordinal reads and one array load instead of two
+ * hash lookups. Transitions from any state share the cells of every state that links no
+ * transition for their event. The cells cannot change once compiled, but the {@link
+ * GuardedTransitions} they may hold keep updating their hit counts and, when ordered by frequency,
+ * the order their guards are evaluated in.
+ */
+final class EnumTransitionTable<STATE, EVENT> implements TransitionTable<STATE, EVENT> {
+  private final Class<?> stateType;
+  private final Class<?> eventType;
+  private final Object[] events;
+  private final LinkedTransition<STATE>[] table;
+  private final boolean guarded;
+
+  private EnumTransitionTable(
+      Class<?> stateType,
+      Class<?> eventType,
+      Object[] events,
+      LinkedTransition<STATE>[] table,
+      boolean guarded) {
+    this.stateType = stateType;
+    this.eventType = eventType;
+    this.events = events;
+    this.table = table;
+    this.guarded = guarded;
+  }
+
+  /**
+   * Compiles the given transitions into a dense table.
+   *
+   * @param stateTransitionsMap The transitions to compile, keyed by source state then event
+   * @param anyStateTransitions The transitions taken from every state that has none for the event
+   * @param initialState A state that must be representable in the table, or {@code null} if the
+   *     state type should be taken from the transitions alone
+   * @return The compiled table, or {@code null} if the states or events are not all constants of a
+   *     single enum type
+   */
+  static <STATE, EVENT> EnumTransitionTable<STATE, EVENT> compile(
+      Map<STATE, Map<EVENT, LinkedTransition<STATE>>> stateTransitionsMap,
+      Map<EVENT, LinkedTransition<STATE>> anyStateTransitions,
+      STATE initialState) {
+    Class<?> stateType = initialState != null ? enumType(initialState) : null;
+    for (val state : stateTransitionsMap.keySet()) {
+      stateType = stateType != null ? stateType : enumType(state);
+      if (stateType == null || enumType(state) != stateType) {
+        return null;
+      }
+    }
+    for (val transitions : anyStateTransitions.values()) {
+      for (val candidate : transitions.candidates()) {
+        stateType = stateType != null ? stateType : enumType(candidate.getState());
+      }
+    }
+    Class<?> eventType = null;
+    boolean guarded = false;
+    val rows = new ArrayList<Map<EVENT, LinkedTransition<STATE>>>(stateTransitionsMap.values());
+    rows.add(anyStateTransitions);
+    for (val row : rows) {
+      for (val transition : row.entrySet()) {
+        val type = enumType(transition.getKey());
+        if (type == null || (eventType != null && type != eventType)) {
+          return null;
+        }
+        eventType = type;
+        for (val candidate : transition.getValue().candidates()) {
+          if (stateType == null || enumType(candidate.getState()) != stateType) {
+            return null;
+          }
+          guarded |= candidate.getGuard() != null;
+        }
+      }
+    }
+    if (stateType == null || eventType == null) {
+      return null;
+    }
+
+    val events = eventType.getEnumConstants();
+    val stateCount = stateType.getEnumConstants().length;
+    @SuppressWarnings("unchecked")
+    final LinkedTransition<STATE>[] table = new LinkedTransition[stateCount * events.length];
+    for (val entry : stateTransitionsMap.entrySet()) {
+      val row = ordinal(entry.getKey()) * events.length;
+      for (val transition : entry.getValue().entrySet()) {
+        table[row + ordinal(transition.getKey())] = transition.getValue();
+      }
+    }
+    for (val transition : anyStateTransitions.entrySet()) {
+      val column = ordinal(transition.getKey());
+      for (int cell = column; cell < table.length; cell += events.length) {
+        if (table[cell] == null) {
+          table[cell] = transition.getValue();
+        }
+      }
+    }
+    return new EnumTransitionTable<>(stateType, eventType, events, table, guarded);
+  }
+
+  /**
+   * Checks whether a state can be used to index this table.
+   *
+   * @param state The state to check
+   * @return {@code true} if the state is a constant of the enum type this table was compiled for
+   */
+  boolean covers(Object state) {
+    return stateType.isInstance(state);
+  }
+
+  @Override
+  public StateAndActions<STATE> find(STATE state, EVENT event) {
+    if (!eventType.isInstance(event)) {
+      return null;
+    }
+    val linked = table[ordinal(state) * events.length + ordinal(event)];
+    return linked == null ? null : linked.select();
+  }
+
+  /**
+   * Finds a transition by state and event ordinals, skipping all type checks.
+   *
+   * @param stateOrdinal The ordinal of the current state
+   * @param eventOrdinal The ordinal of the event being processed
+   * @return The target state and actions, or {@code null} if the event is not legal in the state
+   *     or none of its guards pass
+   */
+  StateAndActions<STATE> find(int stateOrdinal, int eventOrdinal) {
+    val linked = table[stateOrdinal * events.length + eventOrdinal];
+    return linked == null ? null : linked.select();
+  }
+
+  /**
+   * Checks whether any transition of the table has a guard.
+   *
+   * @return {@code true} if finding a transition may evaluate guards
+   */
+  boolean guarded() {
+    return guarded;
+  }
+
+  /**
+   * Gets the enum type of the events the table was compiled for.
+   *
+   * @return The event enum
+   */
+  Class<?> eventType() {
+    return eventType;
+  }
+
+  /**
+   * Gets the number of state ordinals the table has rows for.
+   *
+   * @return The number of constants of the state enum
+   */
+  int stateCount() {
+    return table.length / events.length;
+  }
+
+  /**
+   * Gets the number of event ordinals the table has columns for.
+   *
+   * @return The number of constants of the event enum
+   */
+  int eventCount() {
+    return events.length;
+  }
+
+  @Override
+  public Set<EVENT> legalEvents(STATE state) {
+    val legalEvents = new LinkedHashSet<EVENT>();
+    val row = ordinal(state) * events.length;
+    for (int i = 0; i < events.length; i++) {
+      if (table[row + i] != null) {
+        @SuppressWarnings("unchecked")
+        final EVENT event = (EVENT) events[i];
+        legalEvents.add(event);
+      }
+    }
+    return legalEvents;
+  }
+
+  private static Class<?> enumType(Object value) {
+    return value instanceof Enum<?> constant ? constant.getDeclaringClass() : null;
+  }
+
+  private static int ordinal(Object value) {
+    return ((Enum<?>) value).ordinal();
+  }
+}
@@ -0,0 +1,69 @@
+package jared.stemen.fsm.impl;
+
+import lombok.val;
+
+/**
+ * Ring buffer of the events raised by actions during a transition, which run-to-completion machines
+ * perform once that transition has committed.
+ *
+ * <p>It is only allocated by machines whose actions raise events and grows by doubling, so queueing
+ * does not allocate per event. Each event can carry a {@code long} key, which a {@link
+ * jared.stemen.fsm.StateMachineFleet} uses for the id of the machine the event was raised for.
+ */
+final class EventQueue {
+  private static final int INITIAL_CAPACITY = 8;
+
+  private Object[] events = new Object[INITIAL_CAPACITY];
+  private long[] keys = new long[INITIAL_CAPACITY];
+  private int head;
+  private int size;
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  void add(Object event) {
+    add(0, event);
+  }
+
+  void add(long key, Object event) {
+    if (size == events.length) {
+      val grownEvents = new Object[events.length << 1];
+      val grownKeys = new long[events.length << 1];
+      for (int i = 0; i < size; i++) {
+        grownEvents[i] = events[(head + i) & (events.length - 1)];
+        grownKeys[i] = keys[(head + i) & (events.length - 1)];
+      }
+      events = grownEvents;
+      keys = grownKeys;
+      head = 0;
+    }
+    val tail = (head + size++) & (events.length - 1);
+    events[tail] = event;
+    keys[tail] = key;
+  }
+
+  /**
+   * Gets the key of the next event.
+   *
+   * @return The key the next event returned by {@link #poll()} was added with
+   */
+  long peekKey() {
+    return keys[head];
+  }
+
+  Object poll() {
+    val event = events[head];
+    events[head] = null;
+    head = (head + 1) & (events.length - 1);
+    size--;
+    return event;
+  }
+
+  void clear() {
+    while (size > 0) {
+      poll();
+    }
+    head = 0;
+  }
+}
@@ -1,19 +1,23 @@
 package jared.stemen.fsm.impl;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import jared.stemen.fsm.ActionFailureHandler;
 import jared.stemen.fsm.FiniteStateMachine;
 import jared.stemen.fsm.Link;
-import lombok.*;
-import lombok.extern.slf4j.Slf4j;
+import jared.stemen.fsm.TransitionListener;
+import lombok.NonNull;
+import lombok.Setter;
+
+public class FiniteStateMachineImpl<STATE, EVENT> extends AbstractFiniteStateMachine<STATE, EVENT> {
+  private final HashTransitionTable<STATE, EVENT> links;
+  private TransitionTable<STATE, EVENT> transitions;
+  private boolean frozen;
 
-@Slf4j
-public class FiniteStateMachineImpl<STATE, EVENT> implements FiniteStateMachine<STATE, EVENT> {
-  @Getter @NonNull private STATE state;
+  /** The handler notified when an action fails, which logs failures by default. */
+  @Setter @NonNull
+  private ActionFailureHandler actionFailureHandler = ActionFailureHandlers.logging();
 
-  private final Map<STATE, Map<EVENT, StateAndActions<STATE>>> stateTransitionsMap =
-      new HashMap<>();
+  /** The listener notified of transitions, or {@code null} to skip notification entirely. */
+  @Setter private TransitionListener transitionListener;
 
   /**
    * Creates a new Finite State Machine with the specified initial state.
@@ -25,47 +29,80 @@ public class FiniteStateMachineImpl<STATE, EVENT> implements FiniteStateMachine<
    * @throws NullPointerException if the provided state is null
    */
   public FiniteStateMachineImpl(STATE state) {
-    this.state = state;
+    this(state, false);
+  }
+
+  /**
+   * Creates a new Finite State Machine with the specified initial state, choosing the order in
+   * which guards are evaluated.
+   *
+   * @param state The initial state of the FSM
+   * @param guardsOrderedByFrequency Whether guarded links sharing a source state and event are
+   *     evaluated most frequently followed first rather than in link order, which is only safe if
+   *     their guards never pass together
+   * @throws NullPointerException if the provided state is null
+   */
+  public FiniteStateMachineImpl(STATE state, boolean guardsOrderedByFrequency) {
+    super(state);
+    this.links = new HashTransitionTable<>(guardsOrderedByFrequency);
+    this.transitions = links;
+  }
+
+  @Override
+  TransitionTable<STATE, EVENT> transitions() {
+    return transitions;
+  }
+
+  @Override
+  ActionFailureHandler actionFailureHandler() {
+    return actionFailureHandler;
+  }
+
+  @Override
+  TransitionListener transitionListener() {
+    return transitionListener;
   }
 
   @Override
   public FiniteStateMachine<STATE, EVENT> link(Link<STATE, EVENT> link) {
-    val eventToStateActions =
-        stateTransitionsMap.computeIfAbsent(link.getSourceState(), (k) -> new HashMap<>());
-    if (eventToStateActions.containsKey(link.getEvent())) {
+    if (frozen) {
       throw new IllegalStateException(
-          "Event %s already linked to state %s"
-              .formatted(link.getEvent(), eventToStateActions.get(link.getEvent()).getState()));
+          "Cannot link event %s to state %s, the FSM has been frozen"
+              .formatted(link.getEvent(), link.getSourceState()));
     }
-    eventToStateActions.put(
-        link.getEvent(), new StateAndActions<>(link.getTargetState(), link.getActions()));
+    links.add(link);
     return this;
   }
 
-  @Override
-  public STATE performEvent(EVENT event) {
-    val eventToStateActions = stateTransitionsMap.getOrDefault(state, Map.of());
-    val stateAndActions = eventToStateActions.get(event);
-    if (stateAndActions == null) {
+  /**
+   * Nests a state in a parent state, so that it inherits the transitions of the parent for every
+   * event it does not link itself, and for events none of its own guards accept.
+   *
+   * <p>Until the FSM is frozen, dispatch walks up the hierarchy. Freezing flattens the inherited
+   * transitions into every substate, so a frozen FSM dispatches as fast as one without nesting.
+   *
+   * @param child The substate
+   * @param parent The state whose transitions the substate inherits
+   * @return This FSM
+   * @throws IllegalStateException If the FSM is frozen, if the child is already nested in another
+   *     state, or if the parent is the child or one of its substates
+   */
+  public FiniteStateMachineImpl<STATE, EVENT> substate(
+      @NonNull STATE child, @NonNull STATE parent) {
+    if (frozen) {
       throw new IllegalStateException(
-          "%s is not a legal event for state %s legal events for this state are: %s"
-              .formatted(event, state, eventToStateActions.keySet()));
+          "Cannot nest state %s in %s, the FSM has been frozen".formatted(child, parent));
     }
-    stateAndActions
-        .getActions()
-        .forEach(
-            runnable -> {
-              try {
-                runnable.run();
-              } catch (Exception e) {
-                log.error(
-                    "Exception thrown during action execution for event {} in state {}:. Execution will continue.",
-                    event,
-                    state,
-                    e);
-              }
-            });
-    state = stateAndActions.getState();
-    return state;
+    links.nest(child, parent);
+    return this;
+  }
+
+  @Override
+  public FiniteStateMachine<STATE, EVENT> freeze() {
+    if (!frozen) {
+      transitions = links.compile(getState());
+      frozen = true;
+    }
+    return this;
   }
 }
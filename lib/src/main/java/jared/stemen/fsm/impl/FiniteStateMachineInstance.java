@@ -0,0 +1,57 @@
+package jared.stemen.fsm.impl;
+
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.TransitionListener;
+
+/**
+ * Lightweight FSM created by {@link StateMachineDefinitionImpl#newInstance(Object)}.
+ *
+ * <p>It holds nothing but its current state, a reference to the shared definition and the key it
+ * is registered under, if any, so millions of instances cost a few dozen bytes each.
+ */
+final class FiniteStateMachineInstance<STATE, EVENT>
+    extends AbstractFiniteStateMachine<STATE, EVENT> {
+  private final StateMachineDefinitionImpl<STATE, EVENT> definition;
+  private final Object key;
+
+  FiniteStateMachineInstance(
+      StateMachineDefinitionImpl<STATE, EVENT> definition, STATE state, Object key) {
+    super(state);
+    this.definition = definition;
+    this.key = key;
+  }
+
+  @Override
+  Object key() {
+    return key;
+  }
+
+  @Override
+  TransitionTable<STATE, EVENT> transitions() {
+    return definition.getTransitions();
+  }
+
+  @Override
+  ActionFailureHandler actionFailureHandler() {
+    return definition.getActionFailureHandler();
+  }
+
+  @Override
+  TransitionListener transitionListener() {
+    return definition.getTransitionListener();
+  }
+
+  @Override
+  public FiniteStateMachine<STATE, EVENT> link(Link<STATE, EVENT> link) {
+    throw new IllegalStateException(
+        "Cannot link event %s to state %s, the FSM was created from an immutable definition"
+            .formatted(link.getEvent(), link.getSourceState()));
+  }
+
+  @Override
+  public FiniteStateMachine<STATE, EVENT> freeze() {
+    return this;
+  }
+}
@@ -0,0 +1,260 @@
+package jared.stemen.fsm.impl;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.Transition;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * {@link Flow.Processor} that performs the events of an upstream publisher on an FSM and publishes
+ * the resulting transitions to a single downstream subscriber.
+ *
+ * <p>At most {@code batchSize} events are requested from upstream ahead of time and they are held
+ * in a buffer of that size. Events are only performed while downstream has demand, and more are
+ * requested in batches once three quarters of the buffer has been performed, so a slow subscriber
+ * throttles the publisher instead of letting the buffer grow.
+ *
+ * <p>Events are performed on whichever thread delivers an event, a request or a cancellation, but
+ * never on two threads at once, so the FSM needs no synchronization. It must not be used directly
+ * while subscribed. Completion and errors from upstream are forwarded once the buffered events
+ * have been performed.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ * @param <EVENT> The type representing the events in the FSM
+ */
+public final class FiniteStateMachineProcessor<STATE, EVENT>
+    implements Flow.Processor<EVENT, Transition<STATE, EVENT>> {
+  private static final int DEFAULT_BATCH_SIZE = 256;
+
+  /** What happens to an event that is not legal in the current state. */
+  public enum IllegalEventPolicy {
+    /** The event is skipped. */
+    DROP,
+
+    /** Upstream is cancelled and the rejection is signalled downstream as an error. */
+    ERROR,
+
+    /** The event and the state that rejected it are handed to the side output and skipped. */
+    SIDE_OUTPUT
+  }
+
+  private final FiniteStateMachine<STATE, EVENT> machine;
+  private final int batchSize;
+  private final int replenishThreshold;
+  private final IllegalEventPolicy illegalEventPolicy;
+  private final BiConsumer<? super STATE, ? super EVENT> sideOutput;
+  private final Queue<EVENT> buffer;
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicInteger drains = new AtomicInteger();
+  private volatile Flow.Subscription upstream;
+  private volatile Flow.Subscriber<? super Transition<STATE, EVENT>> downstream;
+  private volatile boolean done;
+  private volatile Throwable error;
+  private volatile boolean cancelled;
+  private volatile Throwable failure;
+  private boolean terminated;
+  private int performed;
+
+  /**
+   * Creates a processor.
+   *
+   * @param machine The FSM events are performed on
+   * @param batchSize The number of events buffered and requested ahead, or zero for 256
+   * @param illegalEventPolicy How illegal events are handled, or {@code null} to signal an error
+   * @param sideOutput The consumer of illegal events when they are sent to the side output
+   * @throws IllegalArgumentException If the batch size is negative, or the side output policy is
+   *     chosen without a side output
+   */
+  @Builder
+  private FiniteStateMachineProcessor(
+      @NonNull FiniteStateMachine<STATE, EVENT> machine,
+      int batchSize,
+      IllegalEventPolicy illegalEventPolicy,
+      BiConsumer<? super STATE, ? super EVENT> sideOutput) {
+    if (batchSize < 0) {
+      throw new IllegalArgumentException("Invalid batch size %d".formatted(batchSize));
+    }
+    this.illegalEventPolicy =
+        illegalEventPolicy != null ? illegalEventPolicy : IllegalEventPolicy.ERROR;
+    if (this.illegalEventPolicy == IllegalEventPolicy.SIDE_OUTPUT && sideOutput == null) {
+      throw new IllegalArgumentException("The side output policy needs a side output");
+    }
+    this.machine = machine;
+    this.batchSize = batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+    this.replenishThreshold = this.batchSize - (this.batchSize >> 2);
+    this.sideOutput = sideOutput;
+    this.buffer = new ArrayBlockingQueue<>(this.batchSize);
+  }
+
+  @Override
+  public void onSubscribe(@NonNull Flow.Subscription subscription) {
+    if (upstream != null || cancelled) {
+      subscription.cancel();
+      return;
+    }
+    upstream = subscription;
+    subscription.request(batchSize);
+  }
+
+  @Override
+  public void onNext(@NonNull EVENT event) {
+    if (!buffer.offer(event)) {
+      failure = new IllegalStateException("Upstream sent more events than were requested");
+    }
+    drain();
+  }
+
+  @Override
+  public void onError(@NonNull Throwable throwable) {
+    error = throwable;
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void onComplete() {
+    done = true;
+    drain();
+  }
+
+  @Override
+  public void subscribe(@NonNull Flow.Subscriber<? super Transition<STATE, EVENT>> subscriber) {
+    synchronized (this) {
+      if (downstream == null) {
+        downstream = subscriber;
+        subscriber.onSubscribe(new Subscription());
+        drain();
+        return;
+      }
+    }
+    subscriber.onSubscribe(
+        new Flow.Subscription() {
+          @Override
+          public void request(long n) {}
+
+          @Override
+          public void cancel() {}
+        });
+    subscriber.onError(new IllegalStateException("The processor already has a subscriber"));
+  }
+
+  /** Performs buffered events for as long as downstream has demand, on one thread at a time. */
+  private void drain() {
+    if (drains.getAndIncrement() != 0) {
+      return;
+    }
+    int missed = 1;
+    do {
+      val subscriber = downstream;
+      if (subscriber != null && !terminated) {
+        drain(subscriber);
+      }
+      missed = drains.addAndGet(-missed);
+    } while (missed != 0);
+  }
+
+  private void drain(Flow.Subscriber<? super Transition<STATE, EVENT>> subscriber) {
+    while (true) {
+      if (failure != null) {
+        fail(subscriber, failure);
+        return;
+      }
+      if (cancelled) {
+        terminated = true;
+        buffer.clear();
+        return;
+      }
+      val upstreamDone = done;
+      val event = requested.get() > 0 ? buffer.poll() : null;
+      if (event == null) {
+        if (upstreamDone && buffer.isEmpty()) {
+          terminated = true;
+          val throwable = error;
+          if (throwable != null) {
+            subscriber.onError(throwable);
+          } else {
+            subscriber.onComplete();
+          }
+        }
+        return;
+      }
+      if (!perform(event, subscriber)) {
+        return;
+      }
+      if (++performed == replenishThreshold) {
+        performed = 0;
+        upstream.request(replenishThreshold);
+      }
+    }
+  }
+
+  /**
+   * Performs an event and publishes its transition.
+   *
+   * @return {@code false} if the processor failed and stopped
+   */
+  private boolean perform(
+      EVENT event, Flow.Subscriber<? super Transition<STATE, EVENT>> subscriber) {
+    val source = machine.getState();
+    try {
+      if (illegalEventPolicy == IllegalEventPolicy.ERROR) {
+        machine.performEvent(event);
+      } else if (!machine.tryPerformEvent(event)) {
+        if (illegalEventPolicy == IllegalEventPolicy.SIDE_OUTPUT) {
+          sideOutput.accept(source, event);
+        }
+        return true;
+      }
+    } catch (RuntimeException e) {
+      fail(subscriber, e);
+      return false;
+    }
+    if (requested.get() != Long.MAX_VALUE) {
+      requested.decrementAndGet();
+    }
+    subscriber.onNext(new Transition<>(source, event, machine.getState()));
+    return true;
+  }
+
+  private void fail(Flow.Subscriber<? super Transition<STATE, EVENT>> subscriber, Throwable e) {
+    terminated = true;
+    cancelled = true;
+    buffer.clear();
+    val subscription = upstream;
+    if (subscription != null) {
+      subscription.cancel();
+    }
+    subscriber.onError(e);
+  }
+
+  private final class Subscription implements Flow.Subscription {
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        failure = new IllegalArgumentException("Non-positive request %d".formatted(n));
+      } else {
+        requested.getAndAccumulate(
+            n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      val subscription = upstream;
+      if (subscription != null) {
+        subscription.cancel();
+      }
+      drain();
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package jared.stemen.fsm.impl;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/** Fork-join task running a body for every index of a range, splitting the range in halves. */
+final class ForkJoinRange extends RecursiveAction {
+  private final int from;
+  private final int to;
+  private final IntConsumer body;
+
+  /**
+   * Creates a task for a range of indexes.
+   *
+   * @param from The first index, inclusive
+   * @param to The last index, exclusive
+   * @param body The body to run for each index
+   */
+  ForkJoinRange(int from, int to, IntConsumer body) {
+    this.from = from;
+    this.to = to;
+    this.body = body;
+  }
+
+  @Override
+  protected void compute() {
+    if (to - from == 1) {
+      body.accept(from);
+    } else if (to > from) {
+      int middle = (from + to) >>> 1;
+      invokeAll(new ForkJoinRange(from, middle, body), new ForkJoinRange(middle, to, body));
+    }
+  }
+}
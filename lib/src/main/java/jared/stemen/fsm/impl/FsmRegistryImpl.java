@@ -0,0 +1,322 @@
+package jared.stemen.fsm.impl;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import com.google.common.util.concurrent.Striped;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.FsmRegistry;
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.StateMachineDefinition;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * {@link FsmRegistry} that serializes events per key with striped locks.
+ *
+ * <p>Each key hashes to one of a fixed number of locks, so two keys only contend when they share a
+ * stripe. Machines are plain, non-thread-safe instances created from the shared definition; the
+ * stripe lock is what makes processing an event for a key atomic.
+ *
+ * <p>With a {@link TimingWheel}, links with a {@link Link#getTimeout() timeout} are followed
+ * automatically: every transition of a machine cancels its pending timeout and schedules the one of
+ * its new state, if any. A timeout that fires after its machine has moved on is ignored. Machines
+ * start timing their initial state when they are created by their first event, even if that event
+ * is rejected, and any other state when they enter it or when it is set.
+ *
+ * <p>Like other links, the timeout link of a state is inherited by its substates that do not link
+ * its event themselves. As with the flattened transitions, every transition restarts the timer,
+ * including one between two substates of the state that declares the timeout.
+ *
+ * <p>If the timeout event is rejected, for example because none of its guards pass, or its
+ * transition is aborted by the action failure handler, the machine stays in its state and the
+ * timeout is scheduled again, so the event is retried after another full timeout.
+ */
+public class FsmRegistryImpl<K, STATE, EVENT> implements FsmRegistry<K, STATE, EVENT> {
+  private static final int DEFAULT_STRIPES_PER_CPU = 4;
+
+  private final StateMachineDefinition<STATE, EVENT> definition;
+  private final STATE initialState;
+  private final Striped<Lock> locks;
+  private final ConcurrentHashMap<K, FiniteStateMachine<STATE, EVENT>> machines =
+      new ConcurrentHashMap<>();
+  private final Function<K, FiniteStateMachine<STATE, EVENT>> machineFactory;
+  private final TimingWheel timingWheel;
+  private final Map<STATE, Link<STATE, EVENT>> timeoutLinks;
+  private final ConcurrentHashMap<K, PendingTimeout> timeouts = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a new registry with a number of lock stripes proportional to the available processors.
+   *
+   * @param definition The definition every machine follows
+   * @param initialState The state new machines start in
+   */
+  public FsmRegistryImpl(
+      @NonNull StateMachineDefinition<STATE, EVENT> definition, @NonNull STATE initialState) {
+    this(
+        definition,
+        initialState,
+        Runtime.getRuntime().availableProcessors() * DEFAULT_STRIPES_PER_CPU);
+  }
+
+  /**
+   * Creates a new registry.
+   *
+   * @param definition The definition every machine follows
+   * @param initialState The state new machines start in
+   * @param stripes The number of locks keys are spread over
+   */
+  public FsmRegistryImpl(
+      @NonNull StateMachineDefinition<STATE, EVENT> definition,
+      @NonNull STATE initialState,
+      int stripes) {
+    this(definition, initialState, stripes, null);
+  }
+
+  /**
+   * Creates a new registry that follows timeout links.
+   *
+   * @param definition The definition every machine follows
+   * @param initialState The state new machines start in
+   * @param stripes The number of locks keys are spread over
+   * @param timingWheel The wheel timeouts are scheduled on, or {@code null} if the definition has
+   *     no timeout links
+   * @throws IllegalArgumentException If the definition has timeout links but no wheel is given, a
+   *     timeout link is from any state, or a state has timeout links with different events or
+   *     timeouts
+   */
+  public FsmRegistryImpl(
+      @NonNull StateMachineDefinition<STATE, EVENT> definition,
+      @NonNull STATE initialState,
+      int stripes,
+      TimingWheel timingWheel) {
+    this.definition = definition;
+    this.initialState = initialState;
+    this.locks = Striped.lock(stripes);
+    this.machineFactory = key -> newMachine(key, initialState);
+    this.timingWheel = timingWheel;
+    this.timeoutLinks = timeoutLinks(definition);
+    if (timingWheel == null && !timeoutLinks.isEmpty()) {
+      throw new IllegalArgumentException("Definitions with timeout links need a timing wheel");
+    }
+  }
+
+  @Override
+  public STATE performEvent(@NonNull K key, EVENT event) {
+    val lock = locks.get(key);
+    lock.lock();
+    try {
+      var machine = machines.get(key);
+      if (machine == null) {
+        machine = machines.computeIfAbsent(key, machineFactory);
+        restartTimeout(key, initialState);
+      }
+      val state = machine.performEvent(event);
+      restartTimeout(key, state);
+      return state;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public STATE getState(@NonNull K key) {
+    val lock = locks.get(key);
+    lock.lock();
+    try {
+      val machine = machines.get(key);
+      return machine == null ? initialState : machine.getState();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(@NonNull K key) {
+    val lock = locks.get(key);
+    lock.lock();
+    try {
+      cancelTimeout(key);
+      return machines.remove(key) != null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void setState(@NonNull K key, @NonNull STATE state) {
+    val machine = newMachine(key, state);
+    val lock = locks.get(key);
+    lock.lock();
+    try {
+      machines.put(key, machine);
+      restartTimeout(key, state);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public void forEachState(@NonNull BiConsumer<? super K, ? super STATE> action) {
+    for (val key : machines.keySet()) {
+      STATE state = null;
+      val lock = locks.get(key);
+      lock.lock();
+      try {
+        val machine = machines.get(key);
+        if (machine != null) {
+          state = machine.getState();
+        }
+      } finally {
+        lock.unlock();
+      }
+      if (state != null) {
+        action.accept(key, state);
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return machines.size();
+  }
+
+  /**
+   * Creates the machine of a key. Machines created from a {@link StateMachineDefinitionImpl} report
+   * their transitions to its listener under the key.
+   */
+  private FiniteStateMachine<STATE, EVENT> newMachine(K key, STATE state) {
+    return definition instanceof StateMachineDefinitionImpl<STATE, EVENT> impl
+        ? impl.newInstance(state, key)
+        : definition.newInstance(state);
+  }
+
+  /** Cancels the pending timeout of a key and schedules the one of its state. Needs the lock. */
+  private void restartTimeout(K key, STATE state) {
+    if (timingWheel == null) {
+      return;
+    }
+    cancelTimeout(key);
+    val link = timeoutLinks.get(state);
+    if (link != null) {
+      val timeout = new PendingTimeout(key, link);
+      timeouts.put(key, timeout);
+      timeout.handle = timingWheel.schedule(timeout, link.getTimeout());
+    }
+  }
+
+  private void cancelTimeout(K key) {
+    val timeout = timeouts.remove(key);
+    if (timeout != null) {
+      timeout.handle.cancel();
+    }
+  }
+
+  private void fire(PendingTimeout timeout) {
+    val lock = locks.get(timeout.key);
+    lock.lock();
+    try {
+      if (!timeouts.remove(timeout.key, timeout)) {
+        return;
+      }
+      val machine = machines.get(timeout.key);
+      if (machine != null) {
+        try {
+          machine.tryPerformEvent(timeout.link.getEvent());
+        } finally {
+          restartTimeout(timeout.key, machine.getState());
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static <STATE, EVENT> Map<STATE, Link<STATE, EVENT>> timeoutLinks(
+      StateMachineDefinition<STATE, EVENT> definition) {
+    val timeoutLinks = new HashMap<STATE, Link<STATE, EVENT>>();
+    for (val link : definition.getLinks()) {
+      if (link.getTimeout() == null) {
+        continue;
+      }
+      if (link.isFromAnyState()) {
+        throw new IllegalArgumentException(
+            "Timeout link for event %s cannot be from any state".formatted(link.getEvent()));
+      }
+      val existing = timeoutLinks.putIfAbsent(link.getSourceState(), link);
+      if (existing != null
+          && (!Objects.equals(existing.getEvent(), link.getEvent())
+              || !existing.getTimeout().equals(link.getTimeout()))) {
+        throw new IllegalArgumentException(
+            "State %s has timeout links with different events or timeouts"
+                .formatted(link.getSourceState()));
+      }
+    }
+    val linkedEvents = new HashMap<STATE, Set<EVENT>>();
+    for (val link : definition.getLinks()) {
+      if (!link.isFromAnyState()) {
+        linkedEvents
+            .computeIfAbsent(link.getSourceState(), state -> new HashSet<>())
+            .add(link.getEvent());
+      }
+    }
+    val parents = definition.getParents();
+    val inherited = new HashMap<>(timeoutLinks);
+    for (val state : parents.keySet()) {
+      if (!timeoutLinks.containsKey(state)) {
+        val link = inheritedTimeoutLink(parents, linkedEvents, timeoutLinks, state);
+        if (link != null) {
+          inherited.put(state, link);
+        }
+      }
+    }
+    return inherited;
+  }
+
+  /**
+   * Finds the timeout link a substate inherits: the one of its nearest ancestor whose event is not
+   * linked by the substate or any state in between.
+   *
+   * @return The inherited timeout link, or {@code null} if there is none
+   */
+  private static <STATE, EVENT> Link<STATE, EVENT> inheritedTimeoutLink(
+      Map<STATE, STATE> parents,
+      Map<STATE, Set<EVENT>> linkedEvents,
+      Map<STATE, Link<STATE, EVENT>> timeoutLinks,
+      STATE state) {
+    val overridden = new HashSet<EVENT>(linkedEvents.getOrDefault(state, Set.of()));
+    for (var ancestor = parents.get(state); ancestor != null; ancestor = parents.get(ancestor)) {
+      val link = timeoutLinks.get(ancestor);
+      if (link != null && !overridden.contains(link.getEvent())) {
+        return link;
+      }
+      overridden.addAll(linkedEvents.getOrDefault(ancestor, Set.of()));
+    }
+    return null;
+  }
+
+  /** The timeout a key is waiting for, identified by reference so stale ones are ignored. */
+  private final class PendingTimeout implements Runnable {
+    private final K key;
+    private final Link<STATE, EVENT> link;
+    private TimingWheel.Timeout handle;
+
+    private PendingTimeout(K key, Link<STATE, EVENT> link) {
+      this.key = key;
+      this.link = link;
+    }
+
+    @Override
+    public void run() {
+      fire(this);
+    }
+  }
+}
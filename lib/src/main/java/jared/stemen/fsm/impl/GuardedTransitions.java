@@ -0,0 +1,109 @@
+package jared.stemen.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.val;
+
+/**
+ * Several transitions linked to the same (state, event) pair, each guarded except possibly the
+ * last.
+ *
+ * <p>Guards are evaluated in link order and the first transition whose guard passes is taken. When
+ * ordered by frequency, the guarded transitions are periodically re-sorted so the ones taken most
+ * often are evaluated first, which only preserves the behaviour of machines whose guards never
+ * pass together. The unguarded fallback always stays last. Hit counts are updated without
+ * synchronization, so under contention they are approximate, which only affects the order.
+ *
+ * @param <STATE> The type representing states in the FSM
+ */
+final class GuardedTransitions<STATE> implements LinkedTransition<STATE> {
+  private static final int REORDER_INTERVAL = 1024;
+
+  private final List<StateAndActions<STATE>> candidates;
+  private final StateAndActions<STATE>[] byIndex;
+  private final boolean orderedByFrequency;
+  private final long[] hits;
+  private int selections;
+  private volatile int[] order;
+
+  /**
+   * Creates the transitions of a (state, event) pair.
+   *
+   * @param candidates The transitions in link order, all but the last of which must be guarded
+   * @param orderedByFrequency Whether to evaluate the most frequently taken transitions first
+   */
+  @SuppressWarnings("unchecked")
+  GuardedTransitions(List<StateAndActions<STATE>> candidates, boolean orderedByFrequency) {
+    this.candidates = List.copyOf(candidates);
+    this.byIndex = this.candidates.toArray(new StateAndActions[0]);
+    this.orderedByFrequency = orderedByFrequency;
+    this.hits = new long[byIndex.length];
+    val order = new int[byIndex.length];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    this.order = order;
+  }
+
+  /**
+   * Creates transitions with one more candidate.
+   *
+   * @param candidate The transition to evaluate after the existing ones
+   * @return The new transitions
+   */
+  GuardedTransitions<STATE> with(StateAndActions<STATE> candidate) {
+    val extended = new ArrayList<>(candidates);
+    extended.add(candidate);
+    return new GuardedTransitions<>(extended, orderedByFrequency);
+  }
+
+  @Override
+  public StateAndActions<STATE> select() {
+    val order = this.order;
+    for (int i = 0; i < order.length; i++) {
+      val candidate = byIndex[order[i]];
+      val guard = candidate.getGuard();
+      if (guard == null || guard.getAsBoolean()) {
+        if (orderedByFrequency) {
+          countHit(order[i]);
+        }
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<StateAndActions<STATE>> candidates() {
+    return candidates;
+  }
+
+  private void countHit(int index) {
+    hits[index]++;
+    if (++selections >= REORDER_INTERVAL) {
+      selections = 0;
+      reorder();
+    }
+  }
+
+  /** Sorts the guarded candidates by descending hits, then halves hits to favour recent ones. */
+  private void reorder() {
+    val sorted = order.clone();
+    val fallback = byIndex[byIndex.length - 1].getGuard() == null;
+    val guarded = fallback ? sorted.length - 1 : sorted.length;
+    for (int i = 1; i < guarded; i++) {
+      val index = sorted[i];
+      int j = i - 1;
+      while (j >= 0 && hits[sorted[j]] < hits[index]) {
+        sorted[j + 1] = sorted[j];
+        j--;
+      }
+      sorted[j + 1] = index;
+    }
+    for (int i = 0; i < hits.length; i++) {
+      hits[i] >>= 1;
+    }
+    order = sorted;
+  }
+}
@@ -0,0 +1,208 @@
+package jared.stemen.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jared.stemen.fsm.Link;
+import lombok.val;
+
+/**
+ * Transition table backed by nested hash maps.
+ *
+ * <p>This is the table links are registered into, and it is the dispatch structure used for any
+ * state or event type that cannot be compiled into an {@link EnumTransitionTable}.
+ *
+ * <p>States may be nested in parent states. A substate inherits every transition of its ancestors
+ * for events it does not link itself, and falls back to them when none of its own guards pass.
+ * Until the table is compiled, lookups walk up the hierarchy; compiling flattens the inherited
+ * transitions into every substate so dispatch costs the same as without a hierarchy.
+ *
+ * <p>Links from any state are stored once, keyed by event, and are the last fallback of every
+ * state, after its ancestors. They are looked up only when a state has no transition to take;
+ * compiling into an {@link EnumTransitionTable} resolves them into the cells no link fills, so they
+ * cost a single probe like any other transition.
+ */
+class HashTransitionTable<STATE, EVENT> implements TransitionTable<STATE, EVENT> {
+  private final Map<STATE, Map<EVENT, LinkedTransition<STATE>>> stateTransitionsMap =
+      new HashMap<>();
+  private final Map<STATE, STATE> parents = new HashMap<>();
+  private final Map<EVENT, LinkedTransition<STATE>> anyStateTransitions = new HashMap<>();
+  private final boolean guardsOrderedByFrequency;
+
+  /** Creates a table whose guards are evaluated in link order. */
+  HashTransitionTable() {
+    this(false);
+  }
+
+  /**
+   * Creates a table.
+   *
+   * @param guardsOrderedByFrequency Whether guards linked to the same state and event are
+   *     evaluated most frequently passing first rather than in link order
+   */
+  HashTransitionTable(boolean guardsOrderedByFrequency) {
+    this.guardsOrderedByFrequency = guardsOrderedByFrequency;
+  }
+
+  /**
+   * Registers a link in this table.
+   *
+   * @param link The link to register
+   * @throws IllegalStateException If a link without a guard with the same source state and event
+   *     already exists
+   */
+  void add(Link<STATE, EVENT> link) {
+    val eventToTransitions =
+        link.isFromAnyState()
+            ? anyStateTransitions
+            : stateTransitionsMap.computeIfAbsent(link.getSourceState(), (k) -> new HashMap<>());
+    val transition =
+        new StateAndActions<>(link.getTargetState(), link.getActions(), link.getGuard());
+    val linked = eventToTransitions.get(link.getEvent());
+    if (linked == null) {
+      eventToTransitions.put(link.getEvent(), transition);
+      return;
+    }
+    val candidates = linked.candidates();
+    val last = candidates.get(candidates.size() - 1);
+    if (last.getGuard() == null) {
+      throw new IllegalStateException(
+          "Event %s already linked to state %s".formatted(link.getEvent(), last.getState()));
+    }
+    eventToTransitions.put(
+        link.getEvent(),
+        linked instanceof GuardedTransitions<STATE> guarded
+            ? guarded.with(transition)
+            : new GuardedTransitions<>(List.of(last, transition), guardsOrderedByFrequency));
+  }
+
+  /**
+   * Nests a state in a parent state.
+   *
+   * @param child The substate
+   * @param parent The state whose transitions the substate inherits
+   * @throws IllegalStateException If the child is already nested in another state, or if the
+   *     parent is the child or one of its substates
+   */
+  void nest(STATE child, STATE parent) {
+    for (STATE ancestor = parent; ancestor != null; ancestor = parents.get(ancestor)) {
+      if (ancestor.equals(child)) {
+        throw new IllegalStateException(
+            "State %s cannot be nested in %s, it would contain itself".formatted(child, parent));
+      }
+    }
+    val previous = parents.putIfAbsent(child, parent);
+    if (previous != null && !previous.equals(parent)) {
+      throw new IllegalStateException(
+          "State %s is already nested in %s".formatted(child, previous));
+    }
+  }
+
+  /**
+   * Compiles this table into the fastest structure available for its state and event types.
+   *
+   * @param initialState The initial state of the machine, which must be covered by the compiled
+   *     table even if no link mentions it
+   * @return An {@link EnumTransitionTable} if every state and event is a constant of a single enum
+   *     type, otherwise this table, or a flattened copy of it if states are nested or linked from
+   *     any state
+   */
+  TransitionTable<STATE, EVENT> compile(STATE initialState) {
+    val flattened = parents.isEmpty() && anyStateTransitions.isEmpty() ? this : flatten();
+    val compiled =
+        EnumTransitionTable.compile(
+            flattened.stateTransitionsMap, flattened.anyStateTransitions, initialState);
+    return compiled != null ? compiled : flattened;
+  }
+
+  /**
+   * Copies this table with the inherited transitions of every substate linked directly, followed
+   * by the links from any state where the linked transitions are all guarded.
+   */
+  private HashTransitionTable<STATE, EVENT> flatten() {
+    val flattened = new HashTransitionTable<STATE, EVENT>(guardsOrderedByFrequency);
+    flattened.anyStateTransitions.putAll(anyStateTransitions);
+    val states = new HashSet<STATE>(stateTransitionsMap.keySet());
+    states.addAll(parents.keySet());
+    for (val state : states) {
+      val events = new HashSet<EVENT>();
+      for (STATE ancestor = state; ancestor != null; ancestor = parents.get(ancestor)) {
+        events.addAll(stateTransitionsMap.getOrDefault(ancestor, Map.of()).keySet());
+      }
+      val transitions = new HashMap<EVENT, LinkedTransition<STATE>>();
+      for (val event : events) {
+        transitions.put(event, inherited(state, event));
+      }
+      flattened.stateTransitionsMap.put(state, transitions);
+    }
+    return flattened;
+  }
+
+  /**
+   * Collects the candidates of a state, its ancestors and the links from any state for an event,
+   * from the innermost state outwards, up to the first candidate without a guard.
+   */
+  private LinkedTransition<STATE> inherited(STATE state, EVENT event) {
+    LinkedTransition<STATE> only = null;
+    val candidates = new ArrayList<StateAndActions<STATE>>();
+    for (STATE ancestor = state; ancestor != null; ancestor = parents.get(ancestor)) {
+      val linked = stateTransitionsMap.getOrDefault(ancestor, Map.of()).get(event);
+      if (linked == null) {
+        continue;
+      }
+      only = candidates.isEmpty() ? linked : null;
+      candidates.addAll(linked.candidates());
+      if (candidates.get(candidates.size() - 1).getGuard() == null) {
+        return only != null ? only : new GuardedTransitions<>(candidates, guardsOrderedByFrequency);
+      }
+    }
+    val fallback = anyStateTransitions.get(event);
+    if (fallback != null) {
+      only = candidates.isEmpty() ? fallback : null;
+      candidates.addAll(fallback.candidates());
+    }
+    return only != null ? only : new GuardedTransitions<>(candidates, guardsOrderedByFrequency);
+  }
+
+  @Override
+  public StateAndActions<STATE> find(STATE state, EVENT event) {
+    if (parents.isEmpty()) {
+      val linked = stateTransitionsMap.getOrDefault(state, Map.of()).get(event);
+      val selected = linked == null ? null : linked.select();
+      return selected != null || anyStateTransitions.isEmpty() ? selected : fromAnyState(event);
+    }
+    for (STATE ancestor = state; ancestor != null; ancestor = parents.get(ancestor)) {
+      val linked = stateTransitionsMap.getOrDefault(ancestor, Map.of()).get(event);
+      val selected = linked == null ? null : linked.select();
+      if (selected != null) {
+        return selected;
+      }
+    }
+    return fromAnyState(event);
+  }
+
+  private StateAndActions<STATE> fromAnyState(EVENT event) {
+    val linked = anyStateTransitions.get(event);
+    return linked == null ? null : linked.select();
+  }
+
+  @Override
+  public Set<EVENT> legalEvents(STATE state) {
+    if (parents.isEmpty() && anyStateTransitions.isEmpty()) {
+      return Collections.unmodifiableSet(
+          stateTransitionsMap.getOrDefault(state, Map.of()).keySet());
+    }
+    val legalEvents = new LinkedHashSet<EVENT>();
+    for (STATE ancestor = state; ancestor != null; ancestor = parents.get(ancestor)) {
+      legalEvents.addAll(stateTransitionsMap.getOrDefault(ancestor, Map.of()).keySet());
+    }
+    legalEvents.addAll(anyStateTransitions.keySet());
+    return legalEvents;
+  }
+}
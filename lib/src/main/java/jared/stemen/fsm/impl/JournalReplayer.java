@@ -0,0 +1,200 @@
+package jared.stemen.fsm.impl;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.ReplayResult;
+import jared.stemen.fsm.StateMachineDefinition;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Rebuilds the state of every journaled machine by replaying a {@link MappedTransitionJournal} in
+ * parallel.
+ *
+ * <p>Replay runs in two fork-join phases. First, chunks of the journal are scanned concurrently
+ * and their records are bucketed into partitions by machine id. Then every partition replays its
+ * records, chunk by chunk in journal order, so the transitions of one machine are always replayed
+ * in the order they were committed while different machines are replayed concurrently.
+ *
+ * <p>With {@code skipActions}, replay trusts the journal and a machine's state is the target of its
+ * last record. Otherwise each machine is recreated from the definition in the source state of its
+ * first record and every event is performed again, running its actions; a transition that does
+ * not reach the journaled target fails the replay with {@link IllegalStateException}.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ * @param <EVENT> The type representing the events in the FSM
+ */
+public final class JournalReplayer<STATE, EVENT> {
+  private static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+  private static final long PARTITION_MIX = 0x9e3779b97f4a7c15L;
+
+  private final MappedTransitionJournal<STATE, EVENT> journal;
+  private final StateMachineDefinition<STATE, EVENT> definition;
+  private final boolean skipActions;
+  private final int partitions;
+  private final int chunkSize;
+  private final ForkJoinPool pool;
+  private final ProgressListener progressListener;
+
+  /** Receives the progress of a replay. Called concurrently from the replaying threads. */
+  @FunctionalInterface
+  public interface ProgressListener {
+    /**
+     * Called each time a partition finishes replaying a chunk of the journal.
+     *
+     * @param replayedRecords The number of records replayed so far
+     * @param totalRecords The number of records to replay
+     */
+    void onProgress(long replayedRecords, long totalRecords);
+  }
+
+  /**
+   * Creates a replayer.
+   *
+   * @param journal The journal to replay
+   * @param definition The definition to perform events with, required unless actions are skipped
+   * @param skipActions Whether to take states from the journal instead of performing events again
+   * @param partitions The number of partitions machines are spread over, or zero for the
+   *     parallelism of the pool
+   * @param chunkSize The number of records scanned per task, or zero for the default
+   * @param pool The pool to replay in, or {@code null} for the common pool
+   * @param progressListener The listener notified of progress, or {@code null}
+   * @throws IllegalArgumentException If actions are replayed without a definition
+   */
+  @Builder
+  private JournalReplayer(
+      @NonNull MappedTransitionJournal<STATE, EVENT> journal,
+      StateMachineDefinition<STATE, EVENT> definition,
+      boolean skipActions,
+      int partitions,
+      int chunkSize,
+      ForkJoinPool pool,
+      ProgressListener progressListener) {
+    if (!skipActions && definition == null) {
+      throw new IllegalArgumentException("A definition is required to replay actions");
+    }
+    this.journal = journal;
+    this.definition = definition;
+    this.skipActions = skipActions;
+    this.pool = pool != null ? pool : ForkJoinPool.commonPool();
+    this.partitions = partitions > 0 ? partitions : this.pool.getParallelism();
+    this.chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+    this.progressListener = progressListener;
+  }
+
+  /**
+   * Replays every record of the journal.
+   *
+   * @return The rebuilt states and replay statistics
+   * @throws IllegalStateException If a replayed transition does not match the journal
+   */
+  public ReplayResult<STATE> replay() {
+    val start = System.nanoTime();
+    val total = (int) journal.getRecordCount();
+    val chunks = (int) (((long) total + chunkSize - 1) / chunkSize);
+    val buckets = new int[chunks][][];
+    pool.invoke(new ForkJoinRange(0, chunks, chunk -> buckets[chunk] = bucket(chunk, total)));
+
+    val replayed = new LongAdder();
+    @SuppressWarnings("unchecked")
+    final Map<Long, STATE>[] partitionStates = new Map[partitions];
+    pool.invoke(
+        new ForkJoinRange(
+            0,
+            partitions,
+            partition ->
+                partitionStates[partition] =
+                    replayPartition(partition, buckets, replayed, total)));
+
+    val states = new HashMap<Long, STATE>();
+    for (val partitionState : partitionStates) {
+      states.putAll(partitionState);
+    }
+    return new ReplayResult<>(
+        Collections.unmodifiableMap(states), total, Duration.ofNanos(System.nanoTime() - start));
+  }
+
+  /**
+   * Splits the records of a chunk into partitions.
+   *
+   * @return The indexes of the chunk's records, by partition
+   */
+  private int[][] bucket(int chunk, int total) {
+    val from = chunk * chunkSize;
+    val to = (int) Math.min(total, (long) from + chunkSize);
+    val records = new int[partitions][];
+    val counts = new int[partitions];
+    for (int record = from; record < to; record++) {
+      val partition = partition(journal.machineIdAt(record));
+      var bucket = records[partition];
+      if (bucket == null) {
+        bucket = records[partition] = new int[Math.max(16, (to - from) / partitions)];
+      } else if (counts[partition] == bucket.length) {
+        bucket = records[partition] = Arrays.copyOf(bucket, bucket.length * 2);
+      }
+      bucket[counts[partition]++] = record;
+    }
+    for (int partition = 0; partition < partitions; partition++) {
+      if (records[partition] != null) {
+        records[partition] = Arrays.copyOf(records[partition], counts[partition]);
+      }
+    }
+    return records;
+  }
+
+  private Map<Long, STATE> replayPartition(
+      int partition, int[][][] buckets, LongAdder replayed, long total) {
+    val states = new HashMap<Long, STATE>();
+    val machines = skipActions ? null : new HashMap<Long, FiniteStateMachine<STATE, EVENT>>();
+    for (val chunk : buckets) {
+      val records = chunk[partition];
+      if (records == null) {
+        continue;
+      }
+      for (val record : records) {
+        val machineId = journal.machineIdAt(record);
+        if (skipActions) {
+          states.put(machineId, journal.targetAt(record));
+        } else {
+          replayRecord(machines, machineId, record);
+        }
+      }
+      replayed.add(records.length);
+      if (progressListener != null) {
+        progressListener.onProgress(replayed.sum(), total);
+      }
+    }
+    if (machines != null) {
+      machines.forEach((machineId, machine) -> states.put(machineId, machine.getState()));
+    }
+    return states;
+  }
+
+  private void replayRecord(
+      Map<Long, FiniteStateMachine<STATE, EVENT>> machines, long machineId, int record) {
+    var machine = machines.get(machineId);
+    if (machine == null) {
+      machine = definition.newInstance(journal.sourceAt(record));
+      machines.put(machineId, machine);
+    }
+    val state = machine.performEvent(journal.eventAt(record));
+    val target = journal.targetAt(record);
+    if (!state.equals(target)) {
+      throw new IllegalStateException(
+          "Replayed machine %d reached %s but the journal recorded %s"
+              .formatted(machineId, state, target));
+    }
+  }
+
+  private int partition(long machineId) {
+    return (int) (((machineId * PARTITION_MIX) >>> 33) % partitions);
+  }
+}
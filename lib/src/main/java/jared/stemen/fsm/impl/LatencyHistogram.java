@@ -0,0 +1,122 @@
+package jared.stemen.fsm.impl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import jared.stemen.fsm.TransitionMetricsSnapshot.LatencyStats;
+
+/**
+ * Lock-free histogram of non-negative latencies with logarithmic buckets.
+ *
+ * <p>Like HdrHistogram, every power-of-two range is split into {@value #HALF_SUB_BUCKETS} linear
+ * sub-buckets, so the bucket a value lands in is at most about 3% wider than the value itself.
+ * Recording is a handful of atomic increments and never allocates.
+ */
+final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos The latency in nanoseconds, clamped to zero if negative
+   */
+  void record(long nanos) {
+    long value = Math.max(nanos, 0);
+    counts.incrementAndGet(bucketIndex(value));
+    count.increment();
+    sum.add(value);
+    if (value < min.get()) {
+      min.accumulateAndGet(value, Math::min);
+    }
+    if (value > max.get()) {
+      max.accumulateAndGet(value, Math::max);
+    }
+  }
+
+  /**
+   * Gets the number of recorded latencies.
+   *
+   * @return The count
+   */
+  long count() {
+    return count.sum();
+  }
+
+  /**
+   * Summarizes the recorded latencies.
+   *
+   * @return The summary
+   */
+  LatencyStats snapshot() {
+    long[] copy = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      copy[i] = counts.get(i);
+      total += copy[i];
+    }
+    if (total == 0) {
+      return new LatencyStats(0, 0, 0, 0, 0, 0, 0, 0);
+    }
+    long maxNanos = max.get();
+    return new LatencyStats(
+        total,
+        min.get(),
+        maxNanos,
+        (double) sum.sum() / count.sum(),
+        percentile(copy, total, 0.5, maxNanos),
+        percentile(copy, total, 0.9, maxNanos),
+        percentile(copy, total, 0.99, maxNanos),
+        percentile(copy, total, 0.999, maxNanos));
+  }
+
+  private static long percentile(long[] copy, long total, double percentile, long maxNanos) {
+    long rank = Math.max(1, (long) Math.ceil(total * percentile));
+    long seen = 0;
+    for (int i = 0; i < copy.length; i++) {
+      seen += copy[i];
+      if (seen >= rank) {
+        return Math.min(highestValueIn(i), maxNanos);
+      }
+    }
+    return maxNanos;
+  }
+
+  /**
+   * Gets the bucket a value is counted in.
+   *
+   * @param value A non-negative value
+   * @return The index of its bucket
+   */
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  /**
+   * Gets the highest value counted in a bucket.
+   *
+   * @param index The index of the bucket
+   * @return The highest value of the bucket
+   */
+  static long highestValueIn(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / HALF_SUB_BUCKETS - 1;
+    long subBucket = index - (long) shift * HALF_SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+}
@@ -1,6 +1,8 @@
 package jared.stemen.fsm.impl;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 import jared.stemen.fsm.Link;
 import lombok.Builder;
@@ -8,12 +10,47 @@ import lombok.Data;
 import lombok.NonNull;
 import lombok.Singular;
 
-@Builder
 @Data
 public class LinkImpl<STATE, EVENT> implements Link<STATE, EVENT> {
-  @NonNull private final STATE sourceState;
+  /** The source state, or {@code null} if the link is followed from any state. */
+  private final STATE sourceState;
+
   @NonNull private final STATE targetState;
   @NonNull private final EVENT event;
 
-  @Singular @NonNull private final List<Runnable> actions;
+  @NonNull private final List<Runnable> actions;
+
+  /** The condition under which this link is followed, or {@code null} if it always is. */
+  private final BooleanSupplier guard;
+
+  /** How long a machine may stay in the source state before this link is followed, if at all. */
+  private final Duration timeout;
+
+  /** Whether the link is a fallback followed from every state that does not link its event. */
+  private final boolean fromAnyState;
+
+  @Builder
+  private LinkImpl(
+      STATE sourceState,
+      @NonNull STATE targetState,
+      @NonNull EVENT event,
+      @Singular @NonNull List<Runnable> actions,
+      BooleanSupplier guard,
+      Duration timeout,
+      boolean fromAnyState) {
+    if (sourceState == null && !fromAnyState) {
+      throw new NullPointerException("sourceState is marked non-null but is null");
+    }
+    if (sourceState != null && fromAnyState) {
+      throw new IllegalArgumentException(
+          "Link from any state cannot have source state %s".formatted(sourceState));
+    }
+    this.sourceState = sourceState;
+    this.targetState = targetState;
+    this.event = event;
+    this.actions = actions;
+    this.guard = guard;
+    this.timeout = timeout;
+    this.fromAnyState = fromAnyState;
+  }
 }
@@ -0,0 +1,24 @@
+package jared.stemen.fsm.impl;
+
+import java.util.List;
+
+/**
+ * The transitions linked to one (state, event) pair of a transition table.
+ *
+ * @param <STATE> The type representing states in the FSM
+ */
+interface LinkedTransition<STATE> {
+  /**
+   * Picks the transition to take, evaluating guards if there are any. Never allocates.
+   *
+   * @return The transition, or {@code null} if no guard passes
+   */
+  StateAndActions<STATE> select();
+
+  /**
+   * Gets every transition that may be taken, in the order they were linked.
+   *
+   * @return The candidate transitions
+   */
+  List<StateAndActions<STATE>> candidates();
+}
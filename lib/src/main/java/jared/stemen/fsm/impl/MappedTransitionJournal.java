@@ -0,0 +1,467 @@
+package jared.stemen.fsm.impl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import jared.stemen.fsm.TransitionListener;
+import jared.stemen.fsm.TransitionRecord;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * Append-only journal of committed transitions backed by a memory-mapped file.
+ *
+ * <p>The file starts with a {@value #HEADER_SIZE}-byte header holding a magic number and the
+ * version of the format, so that a file that is not a journal, or that was written in another
+ * format, is rejected when it is opened. Every transition is then written as a fixed-width
+ * {@value #RECORD_SIZE}-byte little-endian record:
+ *
+ * <ul>
+ *   <li>an {@code int} commit marker, written last,
+ *   <li>the {@code int} indexes of the source state, event and target state in the dictionaries
+ *       the journal was built with,
+ *   <li>the {@code long} machine id,
+ *   <li>the {@code long} timestamp, in milliseconds since the epoch.
+ * </ul>
+ *
+ * <p>The file is mapped in 1 GiB segments that records never straddle, so a journal is not
+ * limited to a single 2 GiB mapping and can hold up to {@link Integer#MAX_VALUE} records, about 64
+ * GiB.
+ *
+ * <p>Appending only copies the record into the mapping. Records reach the disk when the operating
+ * system writes the mapping back, or when the journal is forced: after every {@code forceEvery}
+ * records, every {@code forceInterval}, or on {@link #sync()}. Each force covers all records
+ * appended since the previous one, so many transitions share a single syscall. A record whose
+ * commit marker was not written, for example because the process died mid-append, ends the
+ * journal when it is reopened.
+ *
+ * <p>The dictionaries must list the same states and events, in the same order, every time a
+ * journal file is opened. Appending is thread-safe, and fails once the journal is closed.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ * @param <EVENT> The type representing the events in the FSM
+ */
+@Slf4j
+public final class MappedTransitionJournal<STATE, EVENT> implements Closeable {
+  /** The size of a record in bytes. */
+  public static final int RECORD_SIZE = 32;
+
+  /** The size of the file header in bytes, which keeps records aligned to their size. */
+  public static final int HEADER_SIZE = RECORD_SIZE;
+
+  private static final int SEGMENT_SIZE = 1 << 30;
+  private static final int MAGIC = 0x4a4d5346;
+  private static final int VERSION = 1;
+  private static final int VERSION_OFFSET = 4;
+  private static final int COMMITTED = 0x46534d31;
+  private static final int SOURCE_OFFSET = 4;
+  private static final int EVENT_OFFSET = 8;
+  private static final int TARGET_OFFSET = 12;
+  private static final int MACHINE_ID_OFFSET = 16;
+  private static final int TIMESTAMP_OFFSET = 24;
+  private static final VarHandle MARKER =
+      MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+  private final Path path;
+  private final FileChannel channel;
+  private final MappedByteBuffer[] segments;
+  private final int segmentShift;
+  private final int segmentMask;
+  private final long size;
+  private final List<STATE> states;
+  private final List<EVENT> events;
+  private final Map<Object, Integer> stateIndexes;
+  private final Map<Object, Integer> eventIndexes;
+  private final long forceEvery;
+  private final ScheduledExecutorService forceScheduler;
+
+  private final Object appendLock = new Object();
+  private final Object forceLock = new Object();
+  private volatile long position;
+  private boolean closed;
+  private int unforcedRecords;
+  private long forcedPosition;
+
+  /**
+   * Opens a journal, creating its file if needed, and continues after its last committed record.
+   *
+   * @param path The journal file
+   * @param states Every state that can appear in a transition
+   * @param events Every event that can appear in a transition
+   * @param capacity The maximum number of records the journal can hold
+   * @param forceEvery Forces the journal every this many records, or never if zero
+   * @param forceInterval Forces the journal periodically, or never if {@code null}
+   * @throws IllegalArgumentException If the capacity is not positive or exceeds {@link
+   *     Integer#MAX_VALUE}, or if the file is not a journal or was written in another version of
+   *     the format
+   * @throws UncheckedIOException If the file cannot be opened or mapped
+   */
+  @Builder
+  private MappedTransitionJournal(
+      @NonNull Path path,
+      @Singular @NonNull List<STATE> states,
+      @Singular @NonNull List<EVENT> events,
+      long capacity,
+      long forceEvery,
+      Duration forceInterval) {
+    this(path, states, events, capacity, forceEvery, forceInterval, SEGMENT_SIZE);
+  }
+
+  /**
+   * Opens a journal mapped in segments of the given size, which lets tests cross segments without
+   * writing gigabytes.
+   *
+   * @param segmentSize The size of the mappings the file is split into, a power of two that is a
+   *     multiple of {@link #RECORD_SIZE}
+   */
+  MappedTransitionJournal(
+      @NonNull Path path,
+      @NonNull List<STATE> states,
+      @NonNull List<EVENT> events,
+      long capacity,
+      long forceEvery,
+      Duration forceInterval,
+      int segmentSize) {
+    if (capacity <= 0 || capacity > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid journal capacity %d".formatted(capacity));
+    }
+    this.path = path;
+    this.states = List.copyOf(states);
+    this.events = List.copyOf(events);
+    this.stateIndexes = indexes(this.states);
+    this.eventIndexes = indexes(this.events);
+    this.forceEvery = forceEvery;
+    this.size = HEADER_SIZE + capacity * RECORD_SIZE;
+    this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+    this.segmentMask = segmentSize - 1;
+    this.segments = new MappedByteBuffer[(int) ((size + segmentMask) >>> segmentShift)];
+    boolean created;
+    try {
+      this.channel =
+          FileChannel.open(
+              path,
+              StandardOpenOption.CREATE,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE);
+      created = channel.size() == 0;
+      for (int i = 0; i < segments.length; i++) {
+        val start = (long) i << segmentShift;
+        segments[i] =
+            channel.map(
+                FileChannel.MapMode.READ_WRITE, start, Math.min(segmentSize, size - start));
+        segments[i].order(ByteOrder.LITTLE_ENDIAN);
+      }
+    } catch (IOException e) {
+      closeQuietly();
+      throw new UncheckedIOException("Cannot map journal " + path, e);
+    }
+    if (created) {
+      segments[0].putInt(VERSION_OFFSET, VERSION);
+      segments[0].putInt(0, MAGIC);
+      segments[0].force(0, HEADER_SIZE);
+    } else {
+      checkHeader();
+    }
+    this.position = committedEnd();
+    this.forcedPosition = position;
+    if (forceInterval != null) {
+      this.forceScheduler =
+          Executors.newSingleThreadScheduledExecutor(
+              runnable -> {
+                val thread = new Thread(runnable, "fsm-journal-force");
+                thread.setDaemon(true);
+                return thread;
+              });
+      val millis = Math.max(1, forceInterval.toMillis());
+      forceScheduler.scheduleWithFixedDelay(
+          this::scheduledSync, millis, millis, TimeUnit.MILLISECONDS);
+    } else {
+      this.forceScheduler = null;
+    }
+  }
+
+  /**
+   * Appends a committed transition.
+   *
+   * @param machineId The id of the machine that performed the transition
+   * @param source The state the transition started from
+   * @param event The event that was processed
+   * @param target The state the transition moved to
+   * @throws IllegalArgumentException If a state or event is not in the journal's dictionaries
+   * @throws IllegalStateException If the journal is full or closed
+   */
+  public void append(long machineId, STATE source, EVENT event, STATE target) {
+    write(machineId, source, event, target);
+  }
+
+  /**
+   * Creates a listener that appends every transition it is notified of under the given machine id.
+   *
+   * <p>Attach it to the FSM whose transitions should be journaled, for example with {@link
+   * FiniteStateMachineImpl#setTransitionListener(TransitionListener)}.
+   *
+   * @param machineId The id to journal transitions under
+   * @return The listener
+   */
+  public TransitionListener forMachine(long machineId) {
+    return (source, event, target, actionNanos) -> write(machineId, source, event, target);
+  }
+
+  /**
+   * Creates a listener that appends every transition it is notified of under the key of the
+   * machine that performed it, so that one listener can journal every machine of an {@link
+   * FsmRegistryImpl} or every entity of a {@link StateMachineFleetImpl}.
+   *
+   * <p>Attach it to the definition the machines are created from. Keys must be numbers, whose
+   * {@code long} value is journaled as the machine id. Transitions of machines without a key, such
+   * as standalone instances of the definition, cannot be journaled by this listener and throw.
+   *
+   * @return The listener
+   */
+  public TransitionListener forKeyedMachines() {
+    return new TransitionListener() {
+      @Override
+      public void onTransition(Object source, Object event, Object target, long actionNanos) {
+        throw new IllegalStateException(
+            "Cannot journal transition %s -> %s of a machine without a key"
+                .formatted(source, target));
+      }
+
+      @Override
+      public void onKeyedTransition(
+          Object key, Object source, Object event, Object target, long actionNanos) {
+        if (!(key instanceof Number machineId)) {
+          throw new IllegalArgumentException(
+              "Cannot journal machine %s, its key is not a number".formatted(key));
+        }
+        write(machineId.longValue(), source, event, target);
+      }
+    };
+  }
+
+  private void write(long machineId, Object source, Object event, Object target) {
+    val sourceIndex = index(stateIndexes, source, "State");
+    val eventIndex = index(eventIndexes, event, "Event");
+    val targetIndex = index(stateIndexes, target, "State");
+    val timestamp = System.currentTimeMillis();
+    boolean force;
+    synchronized (appendLock) {
+      if (closed) {
+        throw new IllegalStateException("Journal %s is closed".formatted(path));
+      }
+      val end = position;
+      if (end == size) {
+        throw new IllegalStateException("Journal %s is full".formatted(path));
+      }
+      val segment = segment(end);
+      val offset = (int) end & segmentMask;
+      segment.putInt(offset + SOURCE_OFFSET, sourceIndex);
+      segment.putInt(offset + EVENT_OFFSET, eventIndex);
+      segment.putInt(offset + TARGET_OFFSET, targetIndex);
+      segment.putLong(offset + MACHINE_ID_OFFSET, machineId);
+      segment.putLong(offset + TIMESTAMP_OFFSET, timestamp);
+      MARKER.setRelease(segment, offset, COMMITTED);
+      position = end + RECORD_SIZE;
+      force = forceEvery > 0 && ++unforcedRecords >= forceEvery;
+      if (force) {
+        unforcedRecords = 0;
+      }
+    }
+    if (force) {
+      sync();
+    }
+  }
+
+  /**
+   * Forces every record appended so far to the disk.
+   *
+   * @throws UncheckedIOException If the records cannot be written
+   */
+  public void sync() {
+    synchronized (forceLock) {
+      val end = position;
+      while (forcedPosition < end) {
+        val segment = segment(forcedPosition);
+        val from = (int) forcedPosition & segmentMask;
+        val to = (int) Math.min(segment.capacity(), from + (end - forcedPosition));
+        segment.force(from, to - from);
+        forcedPosition += to - from;
+      }
+    }
+  }
+
+  private void scheduledSync() {
+    try {
+      sync();
+    } catch (RuntimeException e) {
+      log.warn("Failed to force journal {}", path, e);
+    }
+  }
+
+  /**
+   * Gets the number of records in the journal.
+   *
+   * @return The record count
+   */
+  public long getRecordCount() {
+    return (position - HEADER_SIZE) / RECORD_SIZE;
+  }
+
+  /**
+   * Reads every record in the order it was appended.
+   *
+   * @param consumer The consumer of the records
+   */
+  public void forEach(@NonNull Consumer<TransitionRecord<STATE, EVENT>> consumer) {
+    val count = (int) getRecordCount();
+    for (int record = 0; record < count; record++) {
+      consumer.accept(
+          new TransitionRecord<>(
+              machineIdAt(record),
+              sourceAt(record),
+              eventAt(record),
+              targetAt(record),
+              segment(offset(record)).getLong(within(record) + TIMESTAMP_OFFSET)));
+    }
+  }
+
+  /**
+   * Gets the machine id of a record without allocating. Safe to call from several threads.
+   *
+   * @param record The index of the record
+   * @return The machine id
+   */
+  long machineIdAt(int record) {
+    return segment(offset(record)).getLong(within(record) + MACHINE_ID_OFFSET);
+  }
+
+  /** Like {@link #machineIdAt(int)}, for the source state of a record. */
+  STATE sourceAt(int record) {
+    return states.get(segment(offset(record)).getInt(within(record) + SOURCE_OFFSET));
+  }
+
+  /** Like {@link #machineIdAt(int)}, for the event of a record. */
+  EVENT eventAt(int record) {
+    return events.get(segment(offset(record)).getInt(within(record) + EVENT_OFFSET));
+  }
+
+  /** Like {@link #machineIdAt(int)}, for the target state of a record. */
+  STATE targetAt(int record) {
+    return states.get(segment(offset(record)).getInt(within(record) + TARGET_OFFSET));
+  }
+
+  /**
+   * Gets the state each journaled machine was left in by its last transition, which is what a
+   * restarted node needs to resume its machines.
+   *
+   * @return The last target state of every machine id in the journal
+   */
+  public Map<Long, STATE> latestStates() {
+    val latest = new LinkedHashMap<Long, STATE>();
+    forEach(record -> latest.put(record.getMachineId(), record.getTarget()));
+    return latest;
+  }
+
+  /** Forces the remaining records to the disk and closes the file. Closing twice has no effect. */
+  @Override
+  public void close() throws IOException {
+    synchronized (appendLock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    if (forceScheduler != null) {
+      forceScheduler.shutdownNow();
+    }
+    sync();
+    channel.close();
+  }
+
+  /** Gets the offset of a record in the file. */
+  private static long offset(int record) {
+    return HEADER_SIZE + (long) record * RECORD_SIZE;
+  }
+
+  /** Gets the offset of a record in its segment. */
+  private int within(int record) {
+    return (int) offset(record) & segmentMask;
+  }
+
+  /** Gets the segment holding the given offset of the file. */
+  private MappedByteBuffer segment(long offset) {
+    return segments[(int) (offset >>> segmentShift)];
+  }
+
+  private void checkHeader() {
+    if (segments[0].getInt(0) != MAGIC) {
+      closeQuietly();
+      throw new IllegalArgumentException("%s is not a transition journal".formatted(path));
+    }
+    val version = segments[0].getInt(VERSION_OFFSET);
+    if (version != VERSION) {
+      closeQuietly();
+      throw new IllegalArgumentException(
+          "Journal %s has version %d, expected %d".formatted(path, version, VERSION));
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      if (channel != null) {
+        channel.close();
+      }
+    } catch (IOException e) {
+      log.warn("Failed to close journal {}", path, e);
+    }
+  }
+
+  private long committedEnd() {
+    long offset = HEADER_SIZE;
+    while (offset < size
+        && (int) MARKER.getAcquire(segment(offset), (int) offset & segmentMask) == COMMITTED) {
+      offset += RECORD_SIZE;
+    }
+    return offset;
+  }
+
+  private static Map<Object, Integer> indexes(List<?> dictionary) {
+    val indexes = new HashMap<Object, Integer>();
+    for (int i = 0; i < dictionary.size(); i++) {
+      if (indexes.putIfAbsent(dictionary.get(i), i) != null) {
+        throw new IllegalArgumentException(
+            "%s appears more than once in the journal dictionary".formatted(dictionary.get(i)));
+      }
+    }
+    return indexes;
+  }
+
+  private static int index(Map<Object, Integer> indexes, Object value, String kind) {
+    val index = indexes.get(value);
+    if (index == null) {
+      throw new IllegalArgumentException(
+          "%s %s is not in the journal dictionary".formatted(kind, value));
+    }
+    return index;
+  }
+}
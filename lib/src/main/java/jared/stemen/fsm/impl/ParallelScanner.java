@@ -0,0 +1,141 @@
+package jared.stemen.fsm.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * Runs a {@link DfaScanner} over large inputs on every core of a fork-join pool.
+ *
+ * <p>The input is split into chunks. The first chunk is run from the initial state; every other
+ * chunk cannot know the state it starts in, so it is run speculatively from every state at once,
+ * giving the state each start state ends in. Composing these mappings chunk by chunk yields exactly
+ * the state a sequential run ends in. Simulations that reach the same state are merged as they go,
+ * so speculation costs little more than a sequential pass for machines that quickly forget where
+ * they started.
+ *
+ * @param <STATE> The type representing the states in the FSM
+ */
+public final class ParallelScanner<STATE> {
+  private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  private final DfaScanner<STATE> scanner;
+  private final int chunkSize;
+  private final ForkJoinPool pool;
+
+  /**
+   * Creates a parallel scanner.
+   *
+   * @param scanner The scanner to run
+   * @param chunkSize The number of bytes run per task, or zero for the default
+   * @param pool The pool to run in, or {@code null} for the common pool
+   */
+  @Builder
+  private ParallelScanner(@NonNull DfaScanner<STATE> scanner, int chunkSize, ForkJoinPool pool) {
+    this.scanner = scanner;
+    this.chunkSize = chunkSize > 0 ? chunkSize : DEFAULT_CHUNK_SIZE;
+    this.pool = pool != null ? pool : ForkJoinPool.commonPool();
+  }
+
+  /**
+   * Runs the remaining bytes of the buffer from the initial state.
+   *
+   * @param input The input to run
+   * @return The state the machine ends in, or {@code null} if a byte was rejected
+   */
+  public STATE finalState(@NonNull ByteBuffer input) {
+    return scanner.stateOf(run(List.of(input)));
+  }
+
+  /**
+   * Checks whether the remaining bytes of the buffer move the machine from the initial state to an
+   * accepting state.
+   *
+   * @param input The input to run
+   * @return {@code true} if the input is accepted
+   */
+  public boolean matches(@NonNull ByteBuffer input) {
+    return scanner.isAccepting(run(List.of(input)));
+  }
+
+  /**
+   * Runs a file from the initial state.
+   *
+   * @param file The file to run
+   * @return The state the machine ends in, or {@code null} if a byte was rejected
+   * @throws UncheckedIOException If the file cannot be read
+   */
+  public STATE finalState(@NonNull Path file) {
+    return scanner.stateOf(run(file));
+  }
+
+  /**
+   * Checks whether a file moves the machine from the initial state to an accepting state.
+   *
+   * @param file The file to run
+   * @return {@code true} if the file is accepted
+   * @throws UncheckedIOException If the file cannot be read
+   */
+  public boolean matches(@NonNull Path file) {
+    return scanner.isAccepting(run(file));
+  }
+
+  private int run(Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      val size = channel.size();
+      val mappings = new ArrayList<ByteBuffer>();
+      for (long offset = 0; offset < size; offset += DfaScanner.MAPPING_SIZE) {
+        val length = Math.min(size - offset, DfaScanner.MAPPING_SIZE);
+        mappings.add(channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+      }
+      return run(mappings);
+    } catch (IOException e) {
+      throw new UncheckedIOException("Cannot scan " + file, e);
+    }
+  }
+
+  private int run(List<ByteBuffer> buffers) {
+    val chunks = new ArrayList<Chunk>();
+    for (val buffer : buffers) {
+      for (int from = buffer.position(), to; from < buffer.limit(); from = to) {
+        to = from + Math.min(buffer.limit() - from, chunkSize);
+        chunks.add(new Chunk(buffer, from, to));
+      }
+    }
+    if (chunks.isEmpty()) {
+      return scanner.initialRow();
+    }
+
+    val mappings = new int[chunks.size()][];
+    val firstRow = new int[1];
+    pool.invoke(
+        new ForkJoinRange(
+            0,
+            chunks.size(),
+            index -> {
+              val chunk = chunks.get(index);
+              if (index == 0) {
+                firstRow[0] = scanner.run(chunk.buffer, chunk.from, chunk.to, scanner.initialRow());
+              } else {
+                mappings[index] = scanner.runFromEveryState(chunk.buffer, chunk.from, chunk.to);
+              }
+            }));
+    int row = firstRow[0];
+    for (int index = 1; index < mappings.length && row != 0; index++) {
+      row = scanner.follow(mappings[index], row);
+    }
+    return row;
+  }
+
+  private record Chunk(ByteBuffer buffer, int from, int to) {}
+}
@@ -0,0 +1,135 @@
+package jared.stemen.fsm.impl;
+
+import java.util.Set;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.TransitionListener;
+import lombok.Getter;
+import lombok.val;
+
+/**
+ * FSM that dispatches events through a class generated by {@link DispatcherCompiler}.
+ *
+ * <p>Events raised by actions are queued and performed once the running transition has committed,
+ * with the same run-to-completion semantics as {@link AbstractFiniteStateMachine}.
+ */
+final class SpecializedFiniteStateMachine<STATE extends Enum<STATE>, EVENT extends Enum<EVENT>>
+    implements FiniteStateMachine<STATE, EVENT> {
+  private final EnumTransitionTable<STATE, EVENT> table;
+  private final CompiledDispatcher dispatcher;
+  private final TransitionListener transitionListener;
+  private final STATE[] states;
+  private final Class<?> eventType;
+  @Getter private STATE state;
+  private boolean dispatching;
+  private EventQueue queue;
+
+  SpecializedFiniteStateMachine(
+      EnumTransitionTable<STATE, EVENT> table,
+      CompiledDispatcher dispatcher,
+      TransitionListener transitionListener,
+      STATE state) {
+    this.table = table;
+    this.dispatcher = dispatcher;
+    this.transitionListener = transitionListener;
+    this.states = state.getDeclaringClass().getEnumConstants();
+    this.eventType = table.eventType();
+    this.state = state;
+  }
+
+  @Override
+  public FiniteStateMachine<STATE, EVENT> link(Link<STATE, EVENT> link) {
+    throw new IllegalStateException(
+        "Cannot link event %s to state %s, the FSM was created from an immutable definition"
+            .formatted(link.getEvent(), link.getSourceState()));
+  }
+
+  @Override
+  public FiniteStateMachine<STATE, EVENT> freeze() {
+    return this;
+  }
+
+  @Override
+  public STATE performEvent(EVENT event) {
+    if (dispatching) {
+      raise(event);
+      return state;
+    }
+    if (!runToCompletion(event)) {
+      throw ActionRunner.illegalEvent(table, state, event);
+    }
+    return state;
+  }
+
+  @Override
+  public boolean tryPerformEvent(EVENT event) {
+    if (dispatching) {
+      raise(event);
+      return true;
+    }
+    return runToCompletion(event);
+  }
+
+  /**
+   * Performs an event, then every event raised by the actions it ran, until none is left.
+   *
+   * @return {@code true} if the event was performed, {@code false} if it was rejected and the FSM
+   *     left unchanged
+   */
+  @SuppressWarnings("unchecked")
+  private boolean runToCompletion(EVENT event) {
+    dispatching = true;
+    try {
+      if (!dispatch(event)) {
+        return false;
+      }
+      while (queue != null && !queue.isEmpty()) {
+        val raised = (EVENT) queue.poll();
+        if (!dispatch(raised)) {
+          dispatcher
+              .failureHandler()
+              .onRejectedRaisedEvent(
+                  state, raised, ActionRunner.illegalEvent(table, state, raised));
+        }
+      }
+      return true;
+    } finally {
+      dispatching = false;
+      if (queue != null) {
+        queue.clear();
+      }
+    }
+  }
+
+  private boolean dispatch(EVENT event) {
+    if (!eventType.isInstance(event)) {
+      ActionRunner.illegalEvent(transitionListener, state, event);
+      return false;
+    }
+    val start = transitionListener == null ? 0 : System.nanoTime();
+    val target = dispatcher.dispatch(state.ordinal(), event.ordinal(), state, event);
+    if (target < 0) {
+      ActionRunner.illegalEvent(transitionListener, state, event);
+      return false;
+    }
+    val source = state;
+    state = states[target];
+    if (transitionListener != null) {
+      transitionListener.onTransition(source, event, state, System.nanoTime() - start);
+    }
+    return true;
+  }
+
+  private void raise(EVENT event) {
+    if (queue == null) {
+      queue = new EventQueue();
+    }
+    queue.add(event);
+  }
+
+  @Override
+  public Set<EVENT> getLegalEvents() {
+    return table.legalEvents(state);
+  }
+}
@@ -0,0 +1,53 @@
+package jared.stemen.fsm.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.StateMachineDefinition;
+import lombok.NonNull;
+
+/** Definition returned by {@link DispatcherCompiler#compile(StateMachineDefinition)}. */
+final class SpecializedStateMachineDefinition<STATE extends Enum<STATE>, EVENT extends Enum<EVENT>>
+    implements StateMachineDefinition<STATE, EVENT> {
+  private final StateMachineDefinitionImpl<STATE, EVENT> definition;
+  private final EnumTransitionTable<STATE, EVENT> table;
+  private final CompiledDispatcher dispatcher;
+
+  SpecializedStateMachineDefinition(
+      StateMachineDefinitionImpl<STATE, EVENT> definition,
+      EnumTransitionTable<STATE, EVENT> table,
+      CompiledDispatcher dispatcher) {
+    this.definition = definition;
+    this.table = table;
+    this.dispatcher = dispatcher;
+  }
+
+  @Override
+  public FiniteStateMachine<STATE, EVENT> newInstance(@NonNull STATE initialState) {
+    if (!table.covers(initialState)) {
+      throw new IllegalArgumentException(
+          "Initial state %s is not of the enum type this definition was compiled for"
+              .formatted(initialState));
+    }
+    return new SpecializedFiniteStateMachine<>(
+        table, dispatcher, definition.getTransitionListener(), initialState);
+  }
+
+  @Override
+  public Set<EVENT> getLegalEvents(STATE state) {
+    return table.legalEvents(state);
+  }
+
+  @Override
+  public List<Link<STATE, EVENT>> getLinks() {
+    return definition.getLinks();
+  }
+
+  @Override
+  public Map<STATE, STATE> getParents() {
+    return definition.getParents();
+  }
+}
@@ -1,6 +1,7 @@
 package jared.stemen.fsm.impl;
 
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -8,7 +9,24 @@ import lombok.NonNull;
 
 @AllArgsConstructor
 @Data
-class StateAndActions<STATE> {
+class StateAndActions<STATE> implements LinkedTransition<STATE> {
   @NonNull private final STATE state;
   @NonNull private final List<Runnable> actions;
+
+  /** The condition under which this transition is taken, or {@code null} if it always is. */
+  private final BooleanSupplier guard;
+
+  StateAndActions(@NonNull STATE state, @NonNull List<Runnable> actions) {
+    this(state, actions, null);
+  }
+
+  @Override
+  public StateAndActions<STATE> select() {
+    return guard == null || guard.getAsBoolean() ? this : null;
+  }
+
+  @Override
+  public List<StateAndActions<STATE>> candidates() {
+    return List.of(this);
+  }
 }
@@ -0,0 +1,98 @@
+package jared.stemen.fsm.impl;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.TransitionListener;
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.Singular;
+import lombok.val;
+
+public final class StateMachineDefinitionImpl<STATE, EVENT>
+    implements StateMachineDefinition<STATE, EVENT> {
+  @Getter private final List<Link<STATE, EVENT>> links;
+  @Getter private final Map<STATE, STATE> parents;
+
+  @Getter(AccessLevel.PACKAGE)
+  private final TransitionTable<STATE, EVENT> transitions;
+
+  @Getter(AccessLevel.PACKAGE)
+  private final ActionFailureHandler actionFailureHandler;
+
+  @Getter(AccessLevel.PACKAGE)
+  private final TransitionListener transitionListener;
+
+  /**
+   * Creates a new definition from the given links and compiles them.
+   *
+   * <p>Use {@link #builder()} to add links one at a time, mirroring {@link
+   * FiniteStateMachine#link(Link)}.
+   *
+   * @param links The links defining the transitions
+   * @param actionFailureHandler The handler notified when an action fails, or {@code null} to log
+   *     failures
+   * @param transitionListener The listener notified of transitions, or {@code null} for none
+   * @param parents The parent of every nested state, whose transitions the nested state inherits
+   *     for events it does not link itself
+   * @param guardsOrderedByFrequency Whether guarded links sharing a source state and event are
+   *     evaluated most frequently followed first rather than in link order, which is only safe if
+   *     their guards never pass together
+   * @throws IllegalStateException If a link shares its source state and event with an earlier
+   *     link that has no guard, or if a state would contain itself
+   */
+  @Builder
+  private StateMachineDefinitionImpl(
+      @Singular @NonNull List<Link<STATE, EVENT>> links,
+      ActionFailureHandler actionFailureHandler,
+      TransitionListener transitionListener,
+      @Singular("substate") @NonNull Map<STATE, STATE> parents,
+      boolean guardsOrderedByFrequency) {
+    this.links = List.copyOf(links);
+    this.parents = Collections.unmodifiableMap(new LinkedHashMap<>(parents));
+    this.actionFailureHandler =
+        actionFailureHandler != null ? actionFailureHandler : ActionFailureHandlers.logging();
+    this.transitionListener = transitionListener;
+    val table = new HashTransitionTable<STATE, EVENT>(guardsOrderedByFrequency);
+    this.links.forEach(table::add);
+    this.parents.forEach(table::nest);
+    this.transitions = table.compile(null);
+  }
+
+  @Override
+  public FiniteStateMachine<STATE, EVENT> newInstance(@NonNull STATE initialState) {
+    return newInstance(initialState, null);
+  }
+
+  /**
+   * Creates a new FSM whose transitions are reported to the listener under the given key.
+   *
+   * @param initialState The initial state of the new FSM
+   * @param key The key passed to {@link TransitionListener#onKeyedTransition}, or {@code null} to
+   *     report transitions without a key
+   * @return The new FSM
+   */
+  FiniteStateMachine<STATE, EVENT> newInstance(@NonNull STATE initialState, Object key) {
+    if (transitions instanceof EnumTransitionTable<STATE, EVENT> table
+        && !table.covers(initialState)) {
+      throw new IllegalArgumentException(
+          "Initial state %s is not of the enum type this definition was compiled for"
+              .formatted(initialState));
+    }
+    return new FiniteStateMachineInstance<>(this, initialState, key);
+  }
+
+  @Override
+  public Set<EVENT> getLegalEvents(STATE state) {
+    return transitions.legalEvents(state);
+  }
+}
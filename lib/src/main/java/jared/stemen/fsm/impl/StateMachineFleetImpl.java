@@ -0,0 +1,205 @@
+package jared.stemen.fsm.impl;
+
+import java.util.Objects;
+
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.StateMachineFleet;
+import jared.stemen.fsm.TransitionListener;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.val;
+
+/**
+ * {@link StateMachineFleet} that stores each machine's state as a single {@code byte}, or a {@code
+ * short} when the state enum has more than 256 constants.
+ *
+ * <p>States are kept in pages of 65536 entries that are only allocated the first time a machine in
+ * the page leaves the initial state, so sparse id ranges stay cheap. Codes are stored with the
+ * initial state's ordinal swapped with zero, which lets freshly allocated pages represent the
+ * initial state without being filled.
+ *
+ * <p>Events that actions perform on the fleet, for any machine, are queued and performed once the
+ * running transition has committed, with the same run-to-completion semantics as {@link
+ * FiniteStateMachineImpl}. While queued, a nested {@link #performEvent(long, Object)
+ * performEvent} returns the current state of the machine the event was raised for.
+ *
+ * <p>This class is not thread-safe.
+ */
+public class StateMachineFleetImpl<STATE extends Enum<STATE>, EVENT extends Enum<EVENT>>
+    implements StateMachineFleet<STATE, EVENT> {
+  private static final int PAGE_SHIFT = 16;
+  private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+  private final EnumTransitionTable<STATE, EVENT> transitions;
+  private final ActionFailureHandler actionFailureHandler;
+  private final TransitionListener transitionListener;
+  private final STATE[] states;
+  private final int initialOrdinal;
+  @Getter private final long capacity;
+
+  private final byte[][] bytePages;
+  private final short[][] shortPages;
+  private boolean dispatching;
+  private EventQueue queue;
+
+  /**
+   * Creates a new fleet in which every machine starts in the given state.
+   *
+   * @param definition The definition every machine follows, whose states and events must be enums
+   * @param initialState The initial state of every machine
+   * @param capacity The number of machines the fleet can hold
+   * @throws IllegalArgumentException If the definition was not compiled into an enum table, or if
+   *     the capacity is negative or too large
+   */
+  public StateMachineFleetImpl(
+      @NonNull StateMachineDefinition<STATE, EVENT> definition,
+      @NonNull STATE initialState,
+      long capacity) {
+    if (!(definition instanceof StateMachineDefinitionImpl<STATE, EVENT> impl)
+        || !(impl.getTransitions() instanceof EnumTransitionTable<STATE, EVENT> table)
+        || !table.covers(initialState)) {
+      throw new IllegalArgumentException(
+          "A fleet requires a definition whose states and events are constants of a single enum");
+    }
+    val pageCount = (capacity + PAGE_MASK) >>> PAGE_SHIFT;
+    if (capacity < 0 || pageCount > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid fleet capacity %d".formatted(capacity));
+    }
+    this.transitions = table;
+    this.actionFailureHandler = impl.getActionFailureHandler();
+    this.transitionListener = impl.getTransitionListener();
+    this.states = initialState.getDeclaringClass().getEnumConstants();
+    this.initialOrdinal = initialState.ordinal();
+    this.capacity = capacity;
+    if (states.length <= 1 << Byte.SIZE) {
+      this.bytePages = new byte[(int) pageCount][];
+      this.shortPages = null;
+    } else {
+      this.bytePages = null;
+      this.shortPages = new short[(int) pageCount][];
+    }
+  }
+
+  @Override
+  public STATE performEvent(long entityId, EVENT event) {
+    if (dispatching) {
+      val state = states[readOrdinal(entityId)];
+      if (queue == null) {
+        queue = new EventQueue();
+      }
+      queue.add(entityId, event);
+      return state;
+    }
+    dispatching = true;
+    try {
+      if (dispatch(entityId, event) == null) {
+        throw ActionRunner.illegalEvent(transitions, getState(entityId), event);
+      }
+      runQueued();
+      return getState(entityId);
+    } finally {
+      dispatching = false;
+      if (queue != null) {
+        queue.clear();
+      }
+    }
+  }
+
+  /** Performs the events raised by actions, until none is left. */
+  @SuppressWarnings("unchecked")
+  private void runQueued() {
+    while (queue != null && !queue.isEmpty()) {
+      val entityId = queue.peekKey();
+      val raised = (EVENT) queue.poll();
+      if (dispatch(entityId, raised) == null) {
+        val state = getState(entityId);
+        actionFailureHandler.onRejectedRaisedEvent(
+            state, raised, ActionRunner.illegalEvent(transitions, state, raised));
+      }
+    }
+  }
+
+  /**
+   * Runs the transition linked to an event and stores its target.
+   *
+   * @return The target state, or {@code null} if the event is not legal in the machine's state
+   */
+  private STATE dispatch(long entityId, EVENT event) {
+    val state = states[readOrdinal(entityId)];
+    final StateAndActions<STATE> stateAndActions =
+        event == null ? null : transitions.find(state.ordinal(), event.ordinal());
+    if (stateAndActions == null) {
+      ActionRunner.illegalEvent(transitionListener, state, event);
+      return null;
+    }
+    val actionNanos =
+        ActionRunner.runTransition(
+            stateAndActions, event, state, actionFailureHandler, transitionListener);
+    val target = stateAndActions.getState();
+    writeOrdinal(entityId, target.ordinal());
+    if (transitionListener != null) {
+      transitionListener.onKeyedTransition(entityId, state, event, target, actionNanos);
+    }
+    return target;
+  }
+
+  @Override
+  public STATE getState(long entityId) {
+    return states[readOrdinal(entityId)];
+  }
+
+  @Override
+  public void setState(long entityId, @NonNull STATE state) {
+    Objects.checkIndex(entityId, capacity);
+    if (states[state.ordinal()] != state) {
+      throw new IllegalArgumentException(
+          "State %s is not of the enum type this fleet was created for".formatted(state));
+    }
+    writeOrdinal(entityId, state.ordinal());
+  }
+
+  private int readOrdinal(long entityId) {
+    Objects.checkIndex(entityId, capacity);
+    val page = (int) (entityId >>> PAGE_SHIFT);
+    val offset = (int) entityId & PAGE_MASK;
+    if (bytePages != null) {
+      val bytes = bytePages[page];
+      return decode(bytes == null ? 0 : Byte.toUnsignedInt(bytes[offset]));
+    }
+    val shorts = shortPages[page];
+    return decode(shorts == null ? 0 : Short.toUnsignedInt(shorts[offset]));
+  }
+
+  private void writeOrdinal(long entityId, int ordinal) {
+    val page = (int) (entityId >>> PAGE_SHIFT);
+    val offset = (int) entityId & PAGE_MASK;
+    val code = encode(ordinal);
+    if (bytePages != null) {
+      if (bytePages[page] == null) {
+        if (code == 0) {
+          return;
+        }
+        bytePages[page] = new byte[PAGE_SIZE];
+      }
+      bytePages[page][offset] = (byte) code;
+    } else {
+      if (shortPages[page] == null) {
+        if (code == 0) {
+          return;
+        }
+        shortPages[page] = new short[PAGE_SIZE];
+      }
+      shortPages[page][offset] = (short) code;
+    }
+  }
+
+  private int encode(int ordinal) {
+    return ordinal == initialOrdinal ? 0 : ordinal == 0 ? initialOrdinal : ordinal;
+  }
+
+  private int decode(int code) {
+    return encode(code);
+  }
+}
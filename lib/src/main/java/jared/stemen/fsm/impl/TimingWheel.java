@@ -0,0 +1,291 @@
+package jared.stemen.fsm.impl;
+
+import java.io.Closeable;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import lombok.val;
+
+/**
+ * Hashed timing wheel that runs tasks after a delay, shared by any number of timeouts.
+ *
+ * <p>The wheel is a ring of buckets advanced by one thread every tick. A timeout is placed in the
+ * bucket its deadline falls into, together with the number of full turns of the wheel left before
+ * it is due, so scheduling and cancelling are constant time however many timeouts are pending and
+ * however far away they are. Tasks run at most one tick late.
+ *
+ * <p>Scheduling and cancelling only append to lock-free queues that the wheel thread drains on its
+ * next tick, so both are safe from any thread and never contend with the wheel itself. Tasks run on
+ * the wheel thread unless an executor is given, and should then be short.
+ */
+@Slf4j
+public final class TimingWheel implements Closeable {
+  private static final Duration DEFAULT_TICK = Duration.ofMillis(100);
+  private static final int DEFAULT_WHEEL_SIZE = 512;
+  private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+  private final long tickNanos;
+  private final Bucket[] buckets;
+  private final int mask;
+  private final Executor executor;
+  private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+  private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+  private final long startNanos;
+  private final Thread worker;
+  private volatile boolean closed;
+  private long tick;
+
+  /**
+   * Creates a timing wheel and starts its thread.
+   *
+   * @param tick The resolution of the wheel, or {@code null} for 100 milliseconds
+   * @param wheelSize The number of buckets, rounded up to a power of two, or zero for 512
+   * @param executor The executor tasks run in, or {@code null} to run them on the wheel thread
+   * @throws IllegalArgumentException If the tick is not positive or the wheel size is negative
+   */
+  @Builder
+  private TimingWheel(Duration tick, int wheelSize, Executor executor) {
+    val tickDuration = tick != null ? tick : DEFAULT_TICK;
+    if (tickDuration.isNegative() || tickDuration.isZero()) {
+      throw new IllegalArgumentException("Invalid tick %s".formatted(tickDuration));
+    }
+    if (wheelSize < 0 || wheelSize > 1 << 30) {
+      throw new IllegalArgumentException("Invalid wheel size %d".formatted(wheelSize));
+    }
+    this.tickNanos = tickDuration.toNanos();
+    val requested = wheelSize > 0 ? wheelSize : DEFAULT_WHEEL_SIZE;
+    this.buckets = new Bucket[Integer.highestOneBit(Math.max(1, requested - 1)) << 1];
+    for (int i = 0; i < buckets.length; i++) {
+      buckets[i] = new Bucket();
+    }
+    this.mask = buckets.length - 1;
+    this.executor = executor;
+    this.startNanos = System.nanoTime();
+    this.worker = new Thread(this::run, "fsm-timing-wheel");
+    worker.setDaemon(true);
+    worker.start();
+  }
+
+  /**
+   * Runs a task once the delay has passed.
+   *
+   * @param task The task to run
+   * @param delay The delay, rounded up to the next tick
+   * @return The timeout, which can be cancelled until the task starts
+   * @throws IllegalStateException If the wheel is closed
+   */
+  public Timeout schedule(@NonNull Runnable task, @NonNull Duration delay) {
+    if (closed) {
+      throw new IllegalStateException("Timing wheel is closed");
+    }
+    val now = System.nanoTime() - startNanos;
+    val nanos = delay.isNegative() ? 0 : saturatedNanos(delay);
+    val deadline = now + nanos < now ? Long.MAX_VALUE : now + nanos;
+    val timeout = new Timeout(this, task, deadline);
+    scheduled.add(timeout);
+    return timeout;
+  }
+
+  /** Stops the wheel thread. Pending timeouts are discarded. */
+  @Override
+  public void close() {
+    closed = true;
+    worker.interrupt();
+    if (Thread.currentThread() != worker) {
+      try {
+        worker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void run() {
+    while (!closed) {
+      val deadline = tickNanos * (tick + 1);
+      if (!sleepUntil(deadline)) {
+        return;
+      }
+      removeCancelled();
+      transferScheduled();
+      buckets[(int) (tick & mask)].expire(deadline);
+      tick++;
+    }
+  }
+
+  private boolean sleepUntil(long deadline) {
+    for (long now = System.nanoTime() - startNanos; now < deadline; ) {
+      LockSupport.parkNanos(deadline - now);
+      if (closed) {
+        return false;
+      }
+      now = System.nanoTime() - startNanos;
+    }
+    return !closed;
+  }
+
+  private void removeCancelled() {
+    for (Timeout timeout; (timeout = cancelled.poll()) != null; ) {
+      if (timeout.bucket != null) {
+        timeout.bucket.remove(timeout);
+      }
+    }
+  }
+
+  private void transferScheduled() {
+    for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+      val timeout = scheduled.poll();
+      if (timeout == null) {
+        return;
+      }
+      if (timeout.getStateAcquire() != Timeout.PENDING) {
+        continue;
+      }
+      val dueTick = timeout.deadline / tickNanos;
+      timeout.remainingRounds = (dueTick - tick) / buckets.length;
+      buckets[(int) (Math.max(dueTick, tick) & mask)].add(timeout);
+    }
+  }
+
+  private void start(Timeout timeout) {
+    try {
+      if (executor != null) {
+        executor.execute(timeout.task);
+      } else {
+        timeout.task.run();
+      }
+    } catch (RuntimeException e) {
+      log.warn("Timeout task {} failed", timeout.task, e);
+    }
+  }
+
+  private static long saturatedNanos(Duration delay) {
+    try {
+      return delay.toNanos();
+    } catch (ArithmeticException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /** A task scheduled on a {@link TimingWheel}. */
+  public static final class Timeout {
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+    private static final VarHandle STATE;
+
+    static {
+      try {
+        STATE = MethodHandles.lookup().findVarHandle(Timeout.class, "state", int.class);
+      } catch (ReflectiveOperationException e) {
+        throw new ExceptionInInitializerError(e);
+      }
+    }
+
+    private final TimingWheel wheel;
+    private final Runnable task;
+    private final long deadline;
+    @SuppressWarnings("unused")
+    private int state;
+    private long remainingRounds;
+    private Bucket bucket;
+    private Timeout previous;
+    private Timeout next;
+
+    private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+      this.wheel = wheel;
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Prevents the task from running.
+     *
+     * @return {@code true} if the task had not started and never will
+     */
+    public boolean cancel() {
+      if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+        return false;
+      }
+      wheel.cancelled.add(this);
+      return true;
+    }
+
+    /**
+     * Checks whether the timeout was cancelled before its task started.
+     *
+     * @return {@code true} if the timeout was cancelled
+     */
+    public boolean isCancelled() {
+      return getStateAcquire() == CANCELLED;
+    }
+
+    /**
+     * Checks whether the task was started.
+     *
+     * @return {@code true} if the timeout expired
+     */
+    public boolean isExpired() {
+      return getStateAcquire() == EXPIRED;
+    }
+
+    private int getStateAcquire() {
+      return (int) STATE.getAcquire(this);
+    }
+  }
+
+  /** Intrusive doubly-linked list of timeouts, only touched by the wheel thread. */
+  private final class Bucket {
+    private Timeout head;
+    private Timeout tail;
+
+    void add(Timeout timeout) {
+      timeout.bucket = this;
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.previous = tail;
+        tail = timeout;
+      }
+    }
+
+    void remove(Timeout timeout) {
+      if (timeout.previous != null) {
+        timeout.previous.next = timeout.next;
+      } else {
+        head = timeout.next;
+      }
+      if (timeout.next != null) {
+        timeout.next.previous = timeout.previous;
+      } else {
+        tail = timeout.previous;
+      }
+      timeout.previous = null;
+      timeout.next = null;
+      timeout.bucket = null;
+    }
+
+    void expire(long deadline) {
+      for (Timeout timeout = head, next; timeout != null; timeout = next) {
+        next = timeout.next;
+        if (timeout.remainingRounds > 0 && timeout.deadline > deadline) {
+          timeout.remainingRounds--;
+        } else {
+          remove(timeout);
+          if (Timeout.STATE.compareAndSet(timeout, Timeout.PENDING, Timeout.EXPIRED)) {
+            start(timeout);
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package jared.stemen.fsm.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import jared.stemen.fsm.TransitionListener;
+import jared.stemen.fsm.TransitionMetricsSnapshot;
+import jared.stemen.fsm.TransitionMetricsSnapshot.IllegalEventStats;
+import jared.stemen.fsm.TransitionMetricsSnapshot.TransitionStats;
+import lombok.val;
+
+/**
+ * Listener counting every (source, event, target) transition and recording how long its actions
+ * take.
+ *
+ * <p>One instance can be attached to any number of machines, for example through the
+ * {@code transitionListener} of a {@link StateMachineDefinitionImpl} builder, to aggregate their
+ * metrics. Recording is lock-free; call {@link #snapshot()} to export what has been recorded so
+ * far. Metrics are kept in maps nested by source, event and target, so recording a transition or an
+ * illegal event that was seen before does not allocate.
+ *
+ * <p>A definition has a single listener. Use {@link TransitionListener#andThen(TransitionListener)}
+ * to record metrics alongside another listener.
+ */
+public final class TransitionMetrics implements TransitionListener {
+  private final ConcurrentMap<
+          Object, ConcurrentMap<Object, ConcurrentMap<Object, LatencyHistogram>>>
+      transitions = new ConcurrentHashMap<>();
+  private final ConcurrentMap<Object, ConcurrentMap<Object, LongAdder>> illegalEvents =
+      new ConcurrentHashMap<>();
+
+  @Override
+  public void onTransition(Object source, Object event, Object target, long actionNanos) {
+    val byEvent = get(transitions, source, key -> new ConcurrentHashMap<>());
+    val byTarget = get(byEvent, event, key -> new ConcurrentHashMap<>());
+    get(byTarget, target, key -> new LatencyHistogram()).record(actionNanos);
+  }
+
+  @Override
+  public void onIllegalEvent(Object state, Object event) {
+    val byEvent = get(illegalEvents, state, key -> new ConcurrentHashMap<>());
+    get(byEvent, event, key -> new LongAdder()).increment();
+  }
+
+  /**
+   * Gets the value of a key, creating it if it is missing. Unlike a plain {@link
+   * ConcurrentMap#computeIfAbsent(Object, Function) computeIfAbsent}, which may lock the key's bin
+   * even when the key is present, keys that were seen before are read without locking.
+   */
+  private static <K, V> V get(
+      ConcurrentMap<K, V> map, K key, Function<? super K, ? extends V> create) {
+    val value = map.get(key);
+    return value != null ? value : map.computeIfAbsent(key, create);
+  }
+
+  /**
+   * Copies the metrics recorded so far.
+   *
+   * @return The snapshot
+   */
+  public TransitionMetricsSnapshot snapshot() {
+    val transitionStats = new ArrayList<TransitionStats>();
+    transitions.forEach(
+        (source, byEvent) ->
+            byEvent.forEach(
+                (event, byTarget) ->
+                    byTarget.forEach(
+                        (target, histogram) -> {
+                          val latency = histogram.snapshot();
+                          transitionStats.add(
+                              new TransitionStats(
+                                  source, event, target, latency.getCount(), latency));
+                        })));
+    val illegalEventStats = new ArrayList<IllegalEventStats>();
+    illegalEvents.forEach(
+        (state, byEvent) ->
+            byEvent.forEach(
+                (event, count) ->
+                    illegalEventStats.add(new IllegalEventStats(state, event, count.sum()))));
+    return new TransitionMetricsSnapshot(
+        List.copyOf(transitionStats), List.copyOf(illegalEventStats));
+  }
+
+  /** Discards every metric recorded so far. */
+  public void reset() {
+    transitions.clear();
+    illegalEvents.clear();
+  }
+}
@@ -0,0 +1,31 @@
+package jared.stemen.fsm.impl;
+
+import java.util.Set;
+
+/**
+ * Lookup structure that resolves the transition to follow for a (state, event) pair.
+ *
+ * @param <STATE> The type representing states in the FSM
+ * @param <EVENT> The type representing events that can trigger transitions
+ */
+interface TransitionTable<STATE, EVENT> {
+  /**
+   * Finds the transition linked to the given event in the given state.
+   *
+   * @param state The current state
+   * @param event The event being processed
+   * @return The target state and actions, or {@code null} if the event is not legal in the state
+   *     or none of its guards pass
+   */
+  StateAndActions<STATE> find(STATE state, EVENT event);
+
+  /**
+   * Gets the events that have a transition linked from the given state.
+   *
+   * <p>This is only used to build error messages, so implementations are free to allocate.
+   *
+   * @param state The state to inspect
+   * @return The legal events for the state
+   */
+  Set<EVENT> legalEvents(STATE state);
+}
@@ -0,0 +1,127 @@
+package jared.stemen.fsm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.impl.ConcurrentFiniteStateMachine;
+import jared.stemen.fsm.impl.FiniteStateMachineImpl;
+import jared.stemen.fsm.impl.LinkImpl;
+import jared.stemen.fsm.impl.StateMachineDefinitionImpl;
+
+public class BatchEventProcessingTest {
+
+  private enum TestState {
+    IDLE,
+    RUNNING,
+    STOPPED
+  }
+
+  private enum TestEvent {
+    START,
+    STOP,
+    RESET
+  }
+
+  private final AtomicInteger actionCount = new AtomicInteger(0);
+
+  private List<Link<TestState, TestEvent>> links() {
+    return List.of(
+        link(TestState.IDLE, TestEvent.START, TestState.RUNNING),
+        link(TestState.RUNNING, TestEvent.STOP, TestState.STOPPED),
+        link(TestState.STOPPED, TestEvent.RESET, TestState.IDLE));
+  }
+
+  private Link<TestState, TestEvent> link(TestState source, TestEvent event, TestState target) {
+    return LinkImpl.<TestState, TestEvent>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .action(actionCount::incrementAndGet)
+        .build();
+  }
+
+  @Test
+  @DisplayName("Should process every event of a legal batch and return the final state")
+  void shouldProcessLegalBatch() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> fsm = new FiniteStateMachineImpl<>(TestState.IDLE);
+    links().forEach(fsm::link);
+    fsm.freeze();
+
+    // When
+    BatchResult<TestState> result =
+        fsm.performEvents(
+            new TestEvent[] {
+              TestEvent.START, TestEvent.STOP, TestEvent.RESET, TestEvent.START, TestEvent.STOP
+            });
+
+    // Then
+    assertThat(result.isComplete()).isTrue();
+    assertThat(result.getState()).isEqualTo(TestState.STOPPED);
+    assertThat(result.getProcessedEvents()).isEqualTo(5L);
+    assertThat(result.getRejectedIndex()).isEqualTo(-1L);
+    assertThat(fsm.getState()).isEqualTo(TestState.STOPPED);
+    assertThat(actionCount.get()).isEqualTo(5);
+  }
+
+  @Test
+  @DisplayName("Should stop at the first illegal event and report its index without throwing")
+  void shouldStopAtIllegalEvent() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> fsm = new FiniteStateMachineImpl<>(TestState.IDLE);
+    links().forEach(fsm::link);
+
+    // When
+    BatchResult<TestState> result =
+        fsm.performEvents(
+            List.of(TestEvent.START, TestEvent.STOP, TestEvent.STOP, TestEvent.RESET));
+
+    // Then
+    assertThat(result.isComplete()).isFalse();
+    assertThat(result.getState()).isEqualTo(TestState.STOPPED);
+    assertThat(result.getRejectedIndex()).isEqualTo(2L);
+    assertThat(fsm.getState()).isEqualTo(TestState.STOPPED);
+    assertThat(actionCount.get()).isEqualTo(2);
+  }
+
+  @Test
+  @DisplayName("Should process batches on machines created from a definition")
+  void shouldProcessBatchOnDefinitionInstance() {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> definition =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder().links(links()).build();
+    FiniteStateMachine<TestState, TestEvent> fsm = definition.newInstance(TestState.RUNNING);
+
+    // When
+    BatchResult<TestState> result =
+        fsm.performEvents(new TestEvent[] {TestEvent.STOP, TestEvent.START});
+
+    // Then
+    assertThat(result.getState()).isEqualTo(TestState.STOPPED);
+    assertThat(result.getRejectedIndex()).isEqualTo(1L);
+  }
+
+  @Test
+  @DisplayName("Should fall back to the default batch implementation")
+  void shouldProcessBatchWithDefaultImplementation() {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> definition =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder().links(links()).build();
+    FiniteStateMachine<TestState, TestEvent> fsm =
+        new ConcurrentFiniteStateMachine<>(definition, TestState.IDLE);
+
+    // When
+    BatchResult<TestState> result =
+        fsm.performEvents(List.of(TestEvent.START, TestEvent.RESET, TestEvent.STOP));
+
+    // Then
+    assertThat(result.getState()).isEqualTo(TestState.RUNNING);
+    assertThat(result.getRejectedIndex()).isEqualTo(1L);
+    assertThat(result.getProcessedEvents()).isEqualTo(1L);
+  }
+}
@@ -0,0 +1,147 @@
+package jared.stemen.fsm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.impl.ConcurrentFiniteStateMachine;
+import jared.stemen.fsm.impl.FiniteStateMachineImpl;
+import jared.stemen.fsm.impl.LinkImpl;
+import jared.stemen.fsm.impl.StateMachineDefinitionImpl;
+
+public class TryPerformEventTest {
+
+  private enum ConnectionState {
+    DISCONNECTED,
+    CONNECTED,
+    AUTHENTICATED
+  }
+
+  private enum ConnectionEvent {
+    CONNECT,
+    LOGIN,
+    DISCONNECT
+  }
+
+  private final AtomicInteger actionCount = new AtomicInteger(0);
+
+  private Link<ConnectionState, ConnectionEvent> link(
+      ConnectionState source, ConnectionEvent event, ConnectionState target) {
+    return LinkImpl.<ConnectionState, ConnectionEvent>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .action(actionCount::incrementAndGet)
+        .build();
+  }
+
+  private StateMachineDefinition<ConnectionState, ConnectionEvent> definition() {
+    return StateMachineDefinitionImpl.<ConnectionState, ConnectionEvent>builder()
+        .link(
+            link(ConnectionState.DISCONNECTED, ConnectionEvent.CONNECT, ConnectionState.CONNECTED))
+        .link(link(ConnectionState.CONNECTED, ConnectionEvent.LOGIN, ConnectionState.AUTHENTICATED))
+        .link(
+            link(
+                ConnectionState.CONNECTED,
+                ConnectionEvent.DISCONNECT,
+                ConnectionState.DISCONNECTED))
+        .build();
+  }
+
+  @Test
+  @DisplayName("Should report legal and illegal events without throwing")
+  void shouldReportRejectionWithoutThrowing() {
+    // Given
+    FiniteStateMachine<ConnectionState, ConnectionEvent> fsm =
+        new FiniteStateMachineImpl<>(ConnectionState.DISCONNECTED);
+    definition().getLinks().forEach(fsm::link);
+
+    // When/Then
+    assertThat(fsm.tryPerformEvent(ConnectionEvent.LOGIN)).isFalse();
+    assertThat(fsm.getState()).isEqualTo(ConnectionState.DISCONNECTED);
+    assertThat(actionCount.get()).isEqualTo(0);
+    assertThat(fsm.getLegalEvents()).containsExactly(ConnectionEvent.CONNECT);
+
+    assertThat(fsm.tryPerformEvent(ConnectionEvent.CONNECT)).isTrue();
+    assertThat(fsm.getState()).isEqualTo(ConnectionState.CONNECTED);
+    assertThat(actionCount.get()).isEqualTo(1);
+    assertThat(fsm.getLegalEvents())
+        .containsExactlyInAnyOrder(ConnectionEvent.LOGIN, ConnectionEvent.DISCONNECT);
+  }
+
+  @Test
+  @DisplayName("Should reject events on frozen and definition-backed machines")
+  void shouldRejectOnCompiledMachines() {
+    // Given
+    FiniteStateMachine<ConnectionState, ConnectionEvent> instance =
+        definition().newInstance(ConnectionState.CONNECTED);
+    FiniteStateMachine<ConnectionState, ConnectionEvent> concurrent =
+        new ConcurrentFiniteStateMachine<>(definition(), ConnectionState.CONNECTED);
+
+    // When/Then
+    assertThat(instance.tryPerformEvent(ConnectionEvent.CONNECT)).isFalse();
+    assertThat(instance.tryPerformEvent(ConnectionEvent.LOGIN)).isTrue();
+    assertThat(instance.getState()).isEqualTo(ConnectionState.AUTHENTICATED);
+    assertThat(instance.getLegalEvents()).isEmpty();
+
+    assertThat(concurrent.tryPerformEvent(ConnectionEvent.CONNECT)).isFalse();
+    assertThat(concurrent.tryPerformEvent(ConnectionEvent.DISCONNECT)).isTrue();
+    assertThat(concurrent.getState()).isEqualTo(ConnectionState.DISCONNECTED);
+    assertThat(concurrent.getLegalEvents()).containsExactly(ConnectionEvent.CONNECT);
+  }
+
+  @Test
+  @DisplayName("Should fall back to defaults on machines implementing only the abstract methods")
+  void shouldSupportMinimalImplementations() {
+    // Given
+    FiniteStateMachine<ConnectionState, ConnectionEvent> minimal =
+        new FiniteStateMachine<>() {
+          private ConnectionState state = ConnectionState.DISCONNECTED;
+
+          @Override
+          public FiniteStateMachine<ConnectionState, ConnectionEvent> link(
+              Link<ConnectionState, ConnectionEvent> link) {
+            return this;
+          }
+
+          @Override
+          public ConnectionState performEvent(ConnectionEvent event) {
+            if (!getLegalEvents().contains(event)) {
+              throw new IllegalStateException(event + " is not a legal event");
+            }
+            if (event == ConnectionEvent.LOGIN) {
+              throw new IllegalStateException("Login action failed");
+            }
+            state = ConnectionState.CONNECTED;
+            return state;
+          }
+
+          @Override
+          public ConnectionState getState() {
+            return state;
+          }
+
+          @Override
+          public Set<ConnectionEvent> getLegalEvents() {
+            return state == ConnectionState.DISCONNECTED
+                ? Set.of(ConnectionEvent.CONNECT)
+                : Set.of(ConnectionEvent.LOGIN);
+          }
+        };
+
+    // When/Then
+    assertThat(minimal.freeze()).isSameAs(minimal);
+    assertThat(minimal.tryPerformEvent(ConnectionEvent.LOGIN)).isFalse();
+    assertThat(minimal.tryPerformEvent(null)).isFalse();
+    assertThat(minimal.tryPerformEvent(ConnectionEvent.CONNECT)).isTrue();
+    assertThat(minimal.getState()).isEqualTo(ConnectionState.CONNECTED);
+    assertThatThrownBy(() -> minimal.tryPerformEvent(ConnectionEvent.LOGIN))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Login action failed");
+  }
+}
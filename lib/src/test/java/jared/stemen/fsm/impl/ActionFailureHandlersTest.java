@@ -0,0 +1,150 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.ActionFailedException;
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.FiniteStateMachine;
+
+class ActionFailureHandlersTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B
+  }
+
+  private enum TestEvent {
+    EVENT_1,
+    EVENT_2
+  }
+
+  private final AtomicInteger lastActionRuns = new AtomicInteger(0);
+
+  private FiniteStateMachine<TestState, TestEvent> machine(ActionFailureHandler handler) {
+    return StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+        .actionFailureHandler(handler)
+        .link(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.STATE_A)
+                .event(TestEvent.EVENT_1)
+                .targetState(TestState.STATE_B)
+                .action(
+                    () -> {
+                      throw new IllegalArgumentException("first failure");
+                    })
+                .action(
+                    () -> {
+                      throw new UnsupportedOperationException("second failure");
+                    })
+                .action(lastActionRuns::incrementAndGet)
+                .build())
+        .link(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.STATE_A)
+                .event(TestEvent.EVENT_2)
+                .targetState(TestState.STATE_B)
+                .build())
+        .build()
+        .newInstance(TestState.STATE_A);
+  }
+
+  @Test
+  void shouldCountFailuresAndCompleteTransition() {
+    // Given
+    LongAdder failures = new LongAdder();
+    FiniteStateMachine<TestState, TestEvent> fsm =
+        machine(ActionFailureHandlers.counting(failures));
+
+    // When
+    TestState newState = fsm.performEvent(TestEvent.EVENT_1);
+
+    // Then
+    assertThat(newState).isEqualTo(TestState.STATE_B);
+    assertThat(failures.sum()).isEqualTo(2L);
+    assertThat(lastActionRuns.get()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldAbortAtFirstFailureWhenFailingFast() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> fsm = machine(ActionFailureHandlers.failFast());
+
+    // When/Then
+    assertThatThrownBy(() -> fsm.performEvent(TestEvent.EVENT_1))
+        .isInstanceOf(ActionFailedException.class)
+        .hasCauseInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining(TestEvent.EVENT_1.toString());
+    assertThat(fsm.getState()).isEqualTo(TestState.STATE_A);
+    assertThat(lastActionRuns.get()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldRunAllActionsThenRethrowCollectedFailures() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> fsm =
+        machine(ActionFailureHandlers.collectAndRethrow());
+
+    // When
+    ActionFailedException exception = null;
+    try {
+      fsm.performEvent(TestEvent.EVENT_1);
+    } catch (ActionFailedException e) {
+      exception = e;
+    }
+
+    // Then
+    assertThat(exception).isNotNull();
+    assertThat(exception.getSuppressed()).hasSize(2);
+    assertThat(exception.getState()).isEqualTo(TestState.STATE_A);
+    assertThat(fsm.getState()).isEqualTo(TestState.STATE_A);
+    assertThat(lastActionRuns.get()).isEqualTo(1);
+
+    // Failures do not leak into the next transition
+    assertThat(fsm.performEvent(TestEvent.EVENT_2)).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldCompleteTransitionsWhenLoggingIsLimited() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> rateLimited =
+        machine(ActionFailureHandlers.rateLimitedLogging(1));
+    FiniteStateMachine<TestState, TestEvent> sampled =
+        machine(ActionFailureHandlers.sampledLogging(10));
+
+    // When/Then
+    assertThat(rateLimited.performEvent(TestEvent.EVENT_1)).isEqualTo(TestState.STATE_B);
+    assertThat(sampled.performEvent(TestEvent.EVENT_1)).isEqualTo(TestState.STATE_B);
+    assertThat(lastActionRuns.get()).isEqualTo(2);
+  }
+
+  @Test
+  void shouldUseHandlerSetOnFiniteStateMachineImpl() {
+    // Given
+    LongAdder failures = new LongAdder();
+    FiniteStateMachineImpl<TestState, TestEvent> fsm =
+        new FiniteStateMachineImpl<>(TestState.STATE_A);
+    fsm.setActionFailureHandler(ActionFailureHandlers.counting(failures));
+    fsm.link(
+        LinkImpl.<TestState, TestEvent>builder()
+            .sourceState(TestState.STATE_A)
+            .event(TestEvent.EVENT_1)
+            .targetState(TestState.STATE_B)
+            .action(
+                () -> {
+                  throw new IllegalStateException("failure");
+                })
+            .build());
+
+    // When
+    fsm.performEvent(TestEvent.EVENT_1);
+
+    // Then
+    assertThat(failures.sum()).isEqualTo(1L);
+  }
+}
@@ -0,0 +1,172 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.DefinitionReport;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.StateMachineDefinition;
+
+class AnyStateLinksTest {
+
+  private enum JobState {
+    IDLE,
+    RUNNING,
+    PAUSED,
+    FAILED
+  }
+
+  private enum JobEvent {
+    START,
+    PAUSE,
+    RESET
+  }
+
+  private final AtomicBoolean resetLocked = new AtomicBoolean();
+
+  private static LinkImpl<JobState, JobEvent> link(
+      JobState source, JobEvent event, JobState target) {
+    return LinkImpl.<JobState, JobEvent>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .build();
+  }
+
+  private static LinkImpl<JobState, JobEvent> fromAnyState(JobEvent event, JobState target) {
+    return LinkImpl.<JobState, JobEvent>builder()
+        .fromAnyState(true)
+        .event(event)
+        .targetState(target)
+        .build();
+  }
+
+  private HashTransitionTable<JobState, JobEvent> table() {
+    HashTransitionTable<JobState, JobEvent> links = new HashTransitionTable<>();
+    links.add(link(JobState.IDLE, JobEvent.START, JobState.RUNNING));
+    links.add(link(JobState.RUNNING, JobEvent.PAUSE, JobState.PAUSED));
+    links.add(
+        LinkImpl.<JobState, JobEvent>builder()
+            .sourceState(JobState.PAUSED)
+            .event(JobEvent.RESET)
+            .targetState(JobState.PAUSED)
+            .guard(resetLocked::get)
+            .build());
+    links.add(fromAnyState(JobEvent.RESET, JobState.IDLE));
+    return links;
+  }
+
+  @Test
+  void shouldFollowLinksFromAnyStateWhenNoLinkOfTheStateIsTaken() {
+    // Given
+    HashTransitionTable<JobState, JobEvent> links = table();
+
+    // When/Then
+    for (TransitionTable<JobState, JobEvent> table : List.of(links, links.compile(JobState.IDLE))) {
+      assertThat(table.find(JobState.RUNNING, JobEvent.RESET).getState())
+          .isEqualTo(JobState.IDLE);
+      assertThat(table.find(JobState.FAILED, JobEvent.RESET).getState())
+          .isEqualTo(JobState.IDLE);
+      assertThat(table.find(JobState.PAUSED, JobEvent.RESET).getState())
+          .isEqualTo(JobState.IDLE);
+      resetLocked.set(true);
+      assertThat(table.find(JobState.PAUSED, JobEvent.RESET).getState())
+          .isEqualTo(JobState.PAUSED);
+      resetLocked.set(false);
+      assertThat(table.find(JobState.FAILED, JobEvent.START)).isNull();
+      assertThat(table.legalEvents(JobState.FAILED)).containsExactly(JobEvent.RESET);
+    }
+  }
+
+  @Test
+  void shouldShareOneTransitionAcrossTheCompiledTable() {
+    // Given
+    HashTransitionTable<JobState, JobEvent> links = table();
+
+    // When
+    TransitionTable<JobState, JobEvent> compiled = links.compile(JobState.IDLE);
+
+    // Then
+    assertThat(compiled).isInstanceOf(EnumTransitionTable.class);
+    assertThat(compiled.find(JobState.IDLE, JobEvent.RESET))
+        .isSameAs(compiled.find(JobState.RUNNING, JobEvent.RESET))
+        .isSameAs(compiled.find(JobState.FAILED, JobEvent.RESET));
+  }
+
+  @Test
+  void shouldFallBackFromAnyStateInNonEnumTables() {
+    // Given
+    FiniteStateMachineImpl<String, String> fsm = new FiniteStateMachineImpl<>("idle");
+    fsm.link(
+            LinkImpl.<String, String>builder()
+                .sourceState("idle")
+                .event("start")
+                .targetState("running")
+                .build())
+        .link(
+            LinkImpl.<String, String>builder()
+                .fromAnyState(true)
+                .event("shutdown")
+                .targetState("stopped")
+                .build())
+        .freeze();
+
+    // When
+    fsm.performEvent("start");
+    String state = fsm.performEvent("shutdown");
+
+    // Then
+    assertThat(state).isEqualTo("stopped");
+    assertThat(fsm.getLegalEvents()).containsExactly("shutdown");
+  }
+
+  @Test
+  void shouldRejectDuplicateLinksFromAnyState() {
+    // Given
+    HashTransitionTable<JobState, JobEvent> links = table();
+
+    // When/Then
+    assertThatThrownBy(() -> links.add(fromAnyState(JobEvent.RESET, JobState.FAILED)))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldRejectSourceStateOnLinksFromAnyState() {
+    // When/Then
+    assertThatThrownBy(
+            () ->
+                LinkImpl.<JobState, JobEvent>builder()
+                    .sourceState(JobState.IDLE)
+                    .fromAnyState(true)
+                    .event(JobEvent.RESET)
+                    .targetState(JobState.IDLE)
+                    .build())
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Link from any state cannot have source state IDLE");
+  }
+
+  @Test
+  void shouldAnalyzeLinksFromAnyStateAsLinksFromEveryState() {
+    // Given
+    StateMachineDefinition<JobState, JobEvent> definition =
+        StateMachineDefinitionImpl.<JobState, JobEvent>builder()
+            .link(link(JobState.IDLE, JobEvent.START, JobState.RUNNING))
+            .link(link(JobState.RUNNING, JobEvent.PAUSE, JobState.PAUSED))
+            .link(fromAnyState(JobEvent.RESET, JobState.IDLE))
+            .build();
+    FiniteStateMachine<JobState, JobEvent> job = definition.newInstance(JobState.PAUSED);
+
+    // When
+    DefinitionReport<JobState, JobEvent> report =
+        DefinitionAnalyzer.analyze(definition, JobState.IDLE);
+
+    // Then
+    assertThat(report.isClean()).isTrue();
+    assertThat(job.performEvent(JobEvent.RESET)).isEqualTo(JobState.IDLE);
+  }
+}
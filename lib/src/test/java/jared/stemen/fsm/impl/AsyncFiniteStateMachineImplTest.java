@@ -0,0 +1,243 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.AsyncFiniteStateMachine;
+import jared.stemen.fsm.StateMachineDefinition;
+
+class AsyncFiniteStateMachineImplTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B,
+    STATE_C
+  }
+
+  private enum TestEvent {
+    NEXT,
+    FINISH
+  }
+
+  private static StateMachineDefinition<TestState, TestEvent> cycle(Runnable action) {
+    return StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+        .link(link(TestState.STATE_A, TestState.STATE_B, action))
+        .link(link(TestState.STATE_B, TestState.STATE_C, action))
+        .link(link(TestState.STATE_C, TestState.STATE_A, action))
+        .build();
+  }
+
+  private static LinkImpl<TestState, TestEvent> link(
+      TestState source, TestState target, Runnable action) {
+    return LinkImpl.<TestState, TestEvent>builder()
+        .sourceState(source)
+        .event(TestEvent.NEXT)
+        .targetState(target)
+        .action(action)
+        .build();
+  }
+
+  @Test
+  void shouldProcessEventsInSubmissionOrder() {
+    // Given
+    AtomicInteger transitions = new AtomicInteger(0);
+    AsyncFiniteStateMachine<TestState, TestEvent> fsm =
+        new AsyncFiniteStateMachineImpl<>(
+            cycle(transitions::incrementAndGet).newInstance(TestState.STATE_A));
+
+    // When
+    List<CompletableFuture<TestState>> futures = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      futures.add(fsm.performEventAsync(TestEvent.NEXT));
+    }
+
+    // Then
+    for (int i = 0; i < futures.size(); i++) {
+      assertThat(futures.get(i).join()).isEqualTo(TestState.values()[(i + 1) % 3]);
+    }
+    assertThat(transitions.get()).isEqualTo(1_000);
+    assertThat(fsm.getState()).isEqualTo(TestState.values()[1_000 % 3]);
+  }
+
+  @Test
+  void shouldCompleteExceptionallyForIllegalEvents() {
+    // Given
+    AsyncFiniteStateMachine<TestState, TestEvent> fsm =
+        new AsyncFiniteStateMachineImpl<>(cycle(() -> {}).newInstance(TestState.STATE_A));
+
+    // When
+    CompletableFuture<TestState> illegal = fsm.performEventAsync(TestEvent.FINISH);
+    CompletableFuture<TestState> legal = fsm.performEventAsync(TestEvent.NEXT);
+
+    // Then
+    assertThatThrownBy(illegal::join)
+        .isInstanceOf(CompletionException.class)
+        .hasCauseInstanceOf(IllegalStateException.class);
+    assertThat(legal.join()).isEqualTo(TestState.STATE_B);
+    assertThatThrownBy(() -> fsm.performEvent(TestEvent.FINISH))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldAttemptEventsThroughTheMailbox() {
+    // Given
+    AsyncFiniteStateMachine<TestState, TestEvent> fsm =
+        new AsyncFiniteStateMachineImpl<>(cycle(() -> {}).newInstance(TestState.STATE_A));
+    AsyncFiniteStateMachine<TestState, TestEvent> aborting =
+        new AsyncFiniteStateMachineImpl<>(
+            StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+                .link(
+                    link(
+                        TestState.STATE_A,
+                        TestState.STATE_B,
+                        () -> {
+                          throw new IllegalArgumentException("failure");
+                        }))
+                .actionFailureHandler(
+                    (state, event, exception) -> {
+                      throw new IllegalStateException("aborted");
+                    })
+                .build()
+                .newInstance(TestState.STATE_A));
+
+    // When
+    boolean rejected = fsm.tryPerformEvent(TestEvent.FINISH);
+    boolean performed = fsm.tryPerformEvent(TestEvent.NEXT);
+
+    // Then
+    assertThat(rejected).isFalse();
+    assertThat(performed).isTrue();
+    assertThat(fsm.getState()).isEqualTo(TestState.STATE_B);
+    assertThatThrownBy(() -> aborting.tryPerformEvent(TestEvent.NEXT))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("aborted");
+    assertThat(aborting.getState()).isEqualTo(TestState.STATE_A);
+  }
+
+  @Test
+  void shouldListLegalEventsThroughTheMailbox() throws Exception {
+    // Given
+    CountDownLatch drainsAllowed = new CountDownLatch(1);
+    AsyncFiniteStateMachine<TestState, TestEvent> fsm =
+        new AsyncFiniteStateMachineImpl<>(
+            StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+                .link(link(TestState.STATE_A, TestState.STATE_B, () -> {}))
+                .link(
+                    LinkImpl.<TestState, TestEvent>builder()
+                        .sourceState(TestState.STATE_B)
+                        .event(TestEvent.FINISH)
+                        .targetState(TestState.STATE_C)
+                        .build())
+                .build()
+                .newInstance(TestState.STATE_A),
+            task ->
+                new Thread(
+                        () -> {
+                          try {
+                            drainsAllowed.await();
+                          } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                          }
+                          task.run();
+                        })
+                    .start());
+    fsm.performEventAsync(TestEvent.NEXT);
+
+    // When
+    CompletableFuture<Set<TestEvent>> legalEvents =
+        CompletableFuture.supplyAsync(fsm::getLegalEvents);
+    TimeUnit.MILLISECONDS.sleep(50);
+    boolean answeredBeforeDrain = legalEvents.isDone();
+    drainsAllowed.countDown();
+
+    // Then
+    assertThat(answeredBeforeDrain).isFalse();
+    assertThat(legalEvents.get(10, TimeUnit.SECONDS)).containsExactly(TestEvent.FINISH);
+  }
+
+  @Test
+  void shouldKeepDrainingAfterAnError() {
+    // Given
+    AtomicInteger calls = new AtomicInteger(0);
+    AsyncFiniteStateMachine<TestState, TestEvent> fsm =
+        new AsyncFiniteStateMachineImpl<>(
+            cycle(
+                    () -> {
+                      if (calls.incrementAndGet() == 1) {
+                        throw new AssertionError("broken");
+                      }
+                    })
+                .newInstance(TestState.STATE_A));
+
+    // When
+    CompletableFuture<TestState> failed = fsm.performEventAsync(TestEvent.NEXT);
+    CompletableFuture<TestState> next = fsm.performEventAsync(TestEvent.NEXT);
+
+    // Then
+    assertThatThrownBy(failed::join).hasCauseInstanceOf(AssertionError.class);
+    assertThat(next.join()).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldFailEventsTheExecutorRefusesToProcess() {
+    // Given
+    AtomicInteger executions = new AtomicInteger(0);
+    AsyncFiniteStateMachine<TestState, TestEvent> fsm =
+        new AsyncFiniteStateMachineImpl<>(
+            cycle(() -> {}).newInstance(TestState.STATE_A),
+            task -> {
+              if (executions.incrementAndGet() == 1) {
+                throw new RejectedExecutionException("shut down");
+              }
+              task.run();
+            });
+
+    // When
+    CompletableFuture<TestState> rejected = fsm.performEventAsync(TestEvent.NEXT);
+    CompletableFuture<TestState> accepted = fsm.performEventAsync(TestEvent.NEXT);
+
+    // Then
+    assertThatThrownBy(rejected::join).hasCauseInstanceOf(RejectedExecutionException.class);
+    assertThat(accepted.join()).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldLetManyMachinesBlockInActionsConcurrently() throws Exception {
+    // Given
+    Runnable blockingAction =
+        () -> {
+          try {
+            TimeUnit.MILLISECONDS.sleep(200);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        };
+    StateMachineDefinition<TestState, TestEvent> definition = cycle(blockingAction);
+    List<CompletableFuture<TestState>> futures = new ArrayList<>();
+
+    // When
+    for (int i = 0; i < 1_000; i++) {
+      futures.add(
+          new AsyncFiniteStateMachineImpl<>(definition.newInstance(TestState.STATE_A))
+              .performEventAsync(TestEvent.NEXT));
+    }
+
+    // Then - one thousand 200ms actions finish well within the timeout because they overlap
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+    for (CompletableFuture<TestState> future : futures) {
+      assertThat(future.join()).isEqualTo(TestState.STATE_B);
+    }
+  }
+}
@@ -0,0 +1,169 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.StateMachineDefinition;
+
+class BinaryStateSnapshotTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B,
+    STATE_C
+  }
+
+  private enum TestEvent {
+    EVENT_1,
+    EVENT_2
+  }
+
+  private static final StateMachineDefinition<TestState, TestEvent> DEFINITION =
+      StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+          .link(
+              LinkImpl.<TestState, TestEvent>builder()
+                  .sourceState(TestState.STATE_A)
+                  .event(TestEvent.EVENT_1)
+                  .targetState(TestState.STATE_B)
+                  .build())
+          .link(
+              LinkImpl.<TestState, TestEvent>builder()
+                  .sourceState(TestState.STATE_B)
+                  .event(TestEvent.EVENT_2)
+                  .targetState(TestState.STATE_C)
+                  .build())
+          .build();
+
+  private final BinaryStateSnapshot<TestState> snapshot =
+      new BinaryStateSnapshot<>(List.of(TestState.values()));
+  private Path file;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    file = Files.createTempFile("snapshot", ".bin");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  void shouldRestoreFleet() throws IOException {
+    // Given
+    var fleet = new StateMachineFleetImpl<>(DEFINITION, TestState.STATE_A, 200_000);
+    for (long id = 0; id < 200_000; id += 3) {
+      fleet.performEvent(id, TestEvent.EVENT_1);
+    }
+    fleet.performEvent(199_998, TestEvent.EVENT_2);
+
+    // When
+    long written = snapshot.write(fleet, file);
+    var restored = new StateMachineFleetImpl<>(DEFINITION, TestState.STATE_A, 200_000);
+    long read = snapshot.restore(file, restored);
+
+    // Then
+    assertThat(written).isEqualTo(66_667);
+    assertThat(read).isEqualTo(written);
+    assertThat(Files.size(file)).isLessThan(3 * written);
+    for (long id = 0; id < 200_000; id++) {
+      assertThat(restored.getState(id)).isEqualTo(fleet.getState(id));
+    }
+  }
+
+  @Test
+  void shouldRestoreRegistry() throws IOException {
+    // Given
+    var registry = new FsmRegistryImpl<Long, TestState, TestEvent>(DEFINITION, TestState.STATE_A);
+    registry.performEvent(-5L, TestEvent.EVENT_1);
+    registry.performEvent(3L, TestEvent.EVENT_1);
+    registry.performEvent(3L, TestEvent.EVENT_2);
+    registry.performEvent(Long.MAX_VALUE, TestEvent.EVENT_1);
+
+    // When
+    long written = snapshot.write(registry, file);
+    var restored = new FsmRegistryImpl<Long, TestState, TestEvent>(DEFINITION, TestState.STATE_A);
+    long read = snapshot.restore(file, restored);
+
+    // Then
+    assertThat(written).isEqualTo(3);
+    assertThat(read).isEqualTo(3);
+    assertThat(restored.size()).isEqualTo(3);
+    assertThat(restored.getState(-5L)).isEqualTo(TestState.STATE_B);
+    assertThat(restored.getState(3L)).isEqualTo(TestState.STATE_C);
+    assertThat(restored.getState(Long.MAX_VALUE)).isEqualTo(TestState.STATE_B);
+    assertThat(restored.performEvent(-5L, TestEvent.EVENT_2)).isEqualTo(TestState.STATE_C);
+  }
+
+  @Test
+  void shouldMatchStatesByNameWhenDictionaryIsReordered() throws IOException {
+    // Given
+    var registry = new FsmRegistryImpl<Long, TestState, TestEvent>(DEFINITION, TestState.STATE_A);
+    registry.performEvent(1L, TestEvent.EVENT_1);
+    snapshot.write(registry, file);
+    var reordered =
+        new BinaryStateSnapshot<>(List.of(TestState.STATE_C, TestState.STATE_B, TestState.STATE_A));
+
+    // When
+    var restored = new FsmRegistryImpl<Long, TestState, TestEvent>(DEFINITION, TestState.STATE_A);
+    reordered.restore(file, restored);
+
+    // Then
+    assertThat(restored.getState(1L)).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldRejectFleetSnapshotLargerThanFleet() throws IOException {
+    // Given
+    snapshot.write(new StateMachineFleetImpl<>(DEFINITION, TestState.STATE_A, 10), file);
+
+    // When / Then
+    assertThatThrownBy(
+            () ->
+                snapshot.restore(
+                    file, new StateMachineFleetImpl<>(DEFINITION, TestState.STATE_A, 5)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  @Test
+  void shouldRejectTruncatedAndCorruptSnapshots() throws IOException {
+    // Given
+    var registry = new FsmRegistryImpl<Long, TestState, TestEvent>(DEFINITION, TestState.STATE_A);
+    registry.performEvent(1L, TestEvent.EVENT_1);
+    registry.performEvent(300L, TestEvent.EVENT_1);
+    snapshot.write(registry, file);
+    byte[] bytes = Files.readAllBytes(file);
+
+    // When / Then
+    for (int length = 5; length < bytes.length; length++) {
+      Files.write(file, Arrays.copyOf(bytes, length));
+      assertThatThrownBy(
+              () ->
+                  snapshot.restore(
+                      file,
+                      new FsmRegistryImpl<Long, TestState, TestEvent>(
+                          DEFINITION, TestState.STATE_A)))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("is truncated or corrupt");
+    }
+    bytes[bytes.length - 1] = 0x7f;
+    Files.write(file, bytes);
+    assertThatThrownBy(
+            () ->
+                snapshot.restore(
+                    file,
+                    new FsmRegistryImpl<Long, TestState, TestEvent>(DEFINITION, TestState.STATE_A)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("is truncated or corrupt");
+  }
+}
@@ -0,0 +1,171 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.TransitionListener;
+
+class ConcurrentFiniteStateMachineTest {
+
+  private static final int THREADS = 8;
+  private static final int EVENTS_PER_THREAD = 50_000;
+
+  private enum TestState {
+    STATE_A,
+    STATE_B,
+    STATE_C
+  }
+
+  private enum TestEvent {
+    NEXT,
+    FINISH
+  }
+
+  private static LinkImpl<TestState, TestEvent> link(
+      TestState source, TestEvent event, TestState target, Runnable action) {
+    return LinkImpl.<TestState, TestEvent>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .action(action)
+        .build();
+  }
+
+  @Test
+  void shouldCommitEveryTransitionExactlyOnceUnderContention() throws Exception {
+    // Given
+    AtomicInteger transitions = new AtomicInteger(0);
+    Runnable count = transitions::incrementAndGet;
+    StateMachineDefinition<TestState, TestEvent> definition =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+            .link(link(TestState.STATE_A, TestEvent.NEXT, TestState.STATE_B, count))
+            .link(link(TestState.STATE_B, TestEvent.NEXT, TestState.STATE_C, count))
+            .link(link(TestState.STATE_C, TestEvent.NEXT, TestState.STATE_A, count))
+            .build();
+    FiniteStateMachine<TestState, TestEvent> fsm =
+        new ConcurrentFiniteStateMachine<>(definition, TestState.STATE_A);
+
+    // When
+    List<Integer> failures =
+        hammer(
+            () -> {
+              int failed = 0;
+              for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                try {
+                  fsm.performEvent(TestEvent.NEXT);
+                } catch (IllegalStateException e) {
+                  failed++;
+                }
+              }
+              return failed;
+            });
+
+    // Then
+    int total = THREADS * EVENTS_PER_THREAD;
+    assertThat(failures).allMatch(failed -> failed.equals(0));
+    assertThat(transitions.get()).isEqualTo(total);
+    assertThat(fsm.getState()).isEqualTo(TestState.values()[total % 3]);
+  }
+
+  @Test
+  void shouldLetExactlyOneThreadWinARaceOnTheSameSourceState() throws Exception {
+    // Given
+    AtomicInteger actionRuns = new AtomicInteger(0);
+    Runnable count = actionRuns::incrementAndGet;
+    StateMachineDefinition<TestState, TestEvent> definition =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+            .link(link(TestState.STATE_A, TestEvent.FINISH, TestState.STATE_C, count))
+            .build();
+
+    for (int round = 0; round < 100; round++) {
+      FiniteStateMachine<TestState, TestEvent> fsm =
+          new ConcurrentFiniteStateMachine<>(definition, TestState.STATE_A);
+
+      // When
+      List<Integer> wins =
+          hammer(
+              () -> {
+                try {
+                  fsm.performEvent(TestEvent.FINISH);
+                  return 1;
+                } catch (IllegalStateException e) {
+                  return 0;
+                }
+              });
+
+      // Then
+      assertThat(wins.stream().mapToInt(Integer::intValue).sum()).isEqualTo(1);
+      assertThat(fsm.getState()).isEqualTo(TestState.STATE_C);
+    }
+    assertThat(actionRuns.get()).isEqualTo(100);
+  }
+
+  @Test
+  void shouldNameTheStateThatRejectedTheEvent() {
+    // Given
+    AtomicReference<FiniteStateMachine<TestState, TestEvent>> machine = new AtomicReference<>();
+    StateMachineDefinition<TestState, TestEvent> definition =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+            .link(link(TestState.STATE_A, TestEvent.NEXT, TestState.STATE_B, () -> {}))
+            .link(link(TestState.STATE_B, TestEvent.FINISH, TestState.STATE_C, () -> {}))
+            .transitionListener(
+                new TransitionListener() {
+                  @Override
+                  public void onTransition(
+                      Object source, Object event, Object target, long actionNanos) {}
+
+                  @Override
+                  public void onIllegalEvent(Object state, Object event) {
+                    // Another thread moves the machine on before the exception is built
+                    machine.get().performEvent(TestEvent.NEXT);
+                  }
+                })
+            .build();
+    machine.set(new ConcurrentFiniteStateMachine<>(definition, TestState.STATE_A));
+
+    // When/Then
+    assertThatThrownBy(() -> machine.get().performEvent(TestEvent.FINISH))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("is not a legal event for state STATE_A");
+    assertThat(machine.get().getState()).isEqualTo(TestState.STATE_B);
+  }
+
+  private static List<Integer> hammer(Callable<Integer> task) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < THREADS; i++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  return task.call();
+                }));
+      }
+      start.countDown();
+      List<Integer> results = new ArrayList<>();
+      for (Future<Integer> future : futures) {
+        results.add(future.get(30, TimeUnit.SECONDS));
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
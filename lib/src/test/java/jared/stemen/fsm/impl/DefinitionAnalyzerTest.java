@@ -0,0 +1,233 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.DefinitionReport;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.Link;
+import jared.stemen.fsm.Minimization;
+import jared.stemen.fsm.StateMachineDefinition;
+
+class DefinitionAnalyzerTest {
+
+  private enum TestState {
+    START,
+    LEFT,
+    RIGHT,
+    LEFT_DONE,
+    RIGHT_DONE,
+    ORPHAN
+  }
+
+  private enum TestEvent {
+    GO_LEFT,
+    GO_RIGHT,
+    FINISH
+  }
+
+  private final AtomicInteger finishRuns = new AtomicInteger(0);
+  private final Runnable finish = finishRuns::incrementAndGet;
+
+  private static Link<TestState, TestEvent> link(
+      TestState source, TestEvent event, TestState target, Runnable... actions) {
+    return LinkImpl.<TestState, TestEvent>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .actions(List.of(actions))
+        .build();
+  }
+
+  private List<Link<TestState, TestEvent>> links(Runnable rightFinish) {
+    return List.of(
+        link(TestState.START, TestEvent.GO_LEFT, TestState.LEFT),
+        link(TestState.START, TestEvent.GO_RIGHT, TestState.RIGHT),
+        link(TestState.LEFT, TestEvent.FINISH, TestState.LEFT_DONE, finish),
+        link(TestState.RIGHT, TestEvent.FINISH, TestState.RIGHT_DONE, rightFinish),
+        link(TestState.ORPHAN, TestEvent.FINISH, TestState.LEFT_DONE));
+  }
+
+  private static StateMachineDefinition<TestState, TestEvent> definition(
+      List<Link<TestState, TestEvent>> links) {
+    return StateMachineDefinitionImpl.<TestState, TestEvent>builder().links(links).build();
+  }
+
+  @Test
+  void shouldReportUnreachableAndDeadEndStates() {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> definition = definition(links(finish));
+
+    // When
+    DefinitionReport<TestState, TestEvent> report =
+        DefinitionAnalyzer.analyze(definition, TestState.START);
+
+    // Then
+    assertThat(report.getUnreachableStates()).containsExactly(TestState.ORPHAN);
+    assertThat(report.getDeadEndStates())
+        .containsExactly(TestState.LEFT_DONE, TestState.RIGHT_DONE);
+    assertThat(report.getConflicts()).isEmpty();
+    assertThat(report.isClean()).isFalse();
+  }
+
+  @Test
+  void shouldReportStatesThatCannotReachAnAcceptingState() {
+    // When
+    DefinitionReport<TestState, TestEvent> report =
+        DefinitionAnalyzer.analyze(links(finish), TestState.START, Set.of(TestState.LEFT_DONE));
+
+    // Then
+    assertThat(report.getDeadEndStates()).containsExactly(TestState.RIGHT, TestState.RIGHT_DONE);
+  }
+
+  @Test
+  void shouldReportConflictingLinks() {
+    // Given
+    List<Link<TestState, TestEvent>> links =
+        List.of(
+            link(TestState.START, TestEvent.GO_LEFT, TestState.LEFT),
+            link(TestState.START, TestEvent.GO_LEFT, TestState.RIGHT),
+            link(TestState.LEFT, TestEvent.GO_RIGHT, TestState.START),
+            link(TestState.RIGHT, TestEvent.GO_RIGHT, TestState.START));
+
+    // When
+    DefinitionReport<TestState, TestEvent> report =
+        DefinitionAnalyzer.analyze(links, TestState.START, Set.of());
+
+    // Then
+    assertThat(report.getConflicts()).hasSize(1);
+    DefinitionReport.Conflict<TestState, TestEvent> conflict = report.getConflicts().get(0);
+    assertThat(conflict.getState()).isEqualTo(TestState.START);
+    assertThat(conflict.getEvent()).isEqualTo(TestEvent.GO_LEFT);
+    assertThat(conflict.getTargets()).containsExactly(TestState.LEFT, TestState.RIGHT);
+    assertThat(report.getUnreachableStates()).isEmpty();
+    assertThat(report.getDeadEndStates()).isEmpty();
+  }
+
+  @Test
+  void shouldNotReportGuardedLinksAsConflicts() {
+    // Given
+    List<Link<TestState, TestEvent>> links =
+        List.of(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.START)
+                .event(TestEvent.GO_LEFT)
+                .targetState(TestState.LEFT)
+                .guard(() -> true)
+                .build(),
+            link(TestState.START, TestEvent.GO_LEFT, TestState.RIGHT));
+
+    // When
+    DefinitionReport<TestState, TestEvent> report =
+        DefinitionAnalyzer.analyze(links, TestState.START, Set.of());
+
+    // Then
+    assertThat(report.getConflicts()).isEmpty();
+  }
+
+  @Test
+  void shouldMergeEquivalentStates() {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> definition = definition(links(finish));
+
+    // When
+    Minimization<TestState, TestEvent> minimization =
+        DefinitionAnalyzer.minimize(definition, TestState.START);
+
+    // Then
+    assertThat(minimization.getOriginalStateCount()).isEqualTo(5);
+    assertThat(minimization.getMinimizedStateCount()).isEqualTo(3);
+    assertThat(minimization.getStateMapping())
+        .containsEntry(TestState.START, TestState.START)
+        .containsEntry(TestState.RIGHT, TestState.LEFT)
+        .containsEntry(TestState.RIGHT_DONE, TestState.LEFT_DONE)
+        .doesNotContainKey(TestState.ORPHAN);
+    assertThat(minimization.getDefinition().getLinks()).hasSize(3);
+    assertThat(minimization.getDefinition().getLegalEvents(TestState.START))
+        .containsExactlyInAnyOrder(TestEvent.GO_LEFT, TestEvent.GO_RIGHT);
+  }
+
+  @Test
+  void shouldRunTheSameActionsAfterMinimization() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> fsm =
+        DefinitionAnalyzer.minimize(definition(links(finish)), TestState.START)
+            .getDefinition()
+            .newInstance(TestState.START);
+
+    // When
+    fsm.performEvent(TestEvent.GO_RIGHT);
+    TestState state = fsm.performEvent(TestEvent.FINISH);
+
+    // Then
+    assertThat(state).isEqualTo(TestState.LEFT_DONE);
+    assertThat(finishRuns.get()).isEqualTo(1);
+    assertThat(fsm.tryPerformEvent(TestEvent.FINISH)).isFalse();
+  }
+
+  @Test
+  void shouldFlattenNestedStates() {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> definition =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+            .link(link(TestState.START, TestEvent.GO_LEFT, TestState.LEFT))
+            .link(link(TestState.START, TestEvent.GO_RIGHT, TestState.RIGHT))
+            .link(link(TestState.ORPHAN, TestEvent.FINISH, TestState.LEFT_DONE, finish))
+            .substate(TestState.LEFT, TestState.ORPHAN)
+            .substate(TestState.RIGHT, TestState.ORPHAN)
+            .build();
+
+    // When
+    DefinitionReport<TestState, TestEvent> report =
+        DefinitionAnalyzer.analyze(definition, TestState.START);
+    Minimization<TestState, TestEvent> minimization =
+        DefinitionAnalyzer.minimize(definition, TestState.START);
+
+    // Then
+    assertThat(definition.getParents())
+        .containsEntry(TestState.LEFT, TestState.ORPHAN)
+        .containsEntry(TestState.RIGHT, TestState.ORPHAN);
+    assertThat(report.getUnreachableStates()).containsExactly(TestState.ORPHAN);
+    assertThat(report.getDeadEndStates()).containsExactly(TestState.LEFT_DONE);
+    assertThat(minimization.getStateMapping())
+        .containsEntry(TestState.RIGHT, TestState.LEFT)
+        .doesNotContainKey(TestState.ORPHAN);
+    assertThat(minimization.getDefinition().getParents()).isEmpty();
+    assertThat(minimization.getDefinition().getLegalEvents(TestState.LEFT))
+        .containsExactly(TestEvent.FINISH);
+  }
+
+  @Test
+  void shouldKeepStatesWithDifferentActionsApart() {
+    // Given
+    Runnable otherFinish = finishRuns::incrementAndGet;
+    StateMachineDefinition<TestState, TestEvent> definition = definition(links(otherFinish));
+
+    // When
+    Minimization<TestState, TestEvent> minimization =
+        DefinitionAnalyzer.minimize(definition, TestState.START);
+
+    // Then
+    assertThat(minimization.getMinimizedStateCount()).isEqualTo(4);
+    assertThat(minimization.getStateMapping())
+        .containsEntry(TestState.RIGHT, TestState.RIGHT)
+        .containsEntry(TestState.RIGHT_DONE, TestState.LEFT_DONE);
+  }
+
+  @Test
+  void shouldKeepAcceptingStatesApart() {
+    // When
+    Minimization<TestState, TestEvent> minimization =
+        DefinitionAnalyzer.minimize(
+            definition(links(finish)), TestState.START, Set.of(TestState.LEFT_DONE));
+
+    // Then
+    assertThat(minimization.getMinimizedStateCount()).isEqualTo(5);
+    assertThat(minimization.getStateMapping()).containsEntry(TestState.RIGHT, TestState.RIGHT);
+  }
+}
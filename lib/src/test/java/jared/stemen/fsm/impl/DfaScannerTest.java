@@ -0,0 +1,177 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.StateMachineDefinition;
+
+class DfaScannerTest {
+
+  private enum TokenState {
+    START,
+    IDENTIFIER,
+    NUMBER
+  }
+
+  /** Identifiers are a letter followed by letters or digits, numbers are digits only. */
+  private static DfaScanner<TokenState> scanner() {
+    StateMachineDefinitionImpl.StateMachineDefinitionImplBuilder<TokenState, Character> builder =
+        StateMachineDefinitionImpl.builder();
+    for (char c = 'a'; c <= 'z'; c++) {
+      builder.link(link(TokenState.START, c, TokenState.IDENTIFIER));
+      builder.link(link(TokenState.IDENTIFIER, c, TokenState.IDENTIFIER));
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      builder.link(link(TokenState.START, c, TokenState.NUMBER));
+      builder.link(link(TokenState.NUMBER, c, TokenState.NUMBER));
+      builder.link(link(TokenState.IDENTIFIER, c, TokenState.IDENTIFIER));
+    }
+    StateMachineDefinition<TokenState, Character> definition = builder.build();
+    return DfaScanner.<TokenState>builder()
+        .definition(definition)
+        .initialState(TokenState.START)
+        .acceptingState(TokenState.IDENTIFIER)
+        .acceptingState(TokenState.NUMBER)
+        .build();
+  }
+
+  private static LinkImpl<TokenState, Character> link(
+      TokenState source, char event, TokenState target) {
+    return LinkImpl.<TokenState, Character>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .build();
+  }
+
+  private static final class Recorder implements DfaScanner.TokenListener<TokenState> {
+    private final List<String> events = new ArrayList<>();
+
+    @Override
+    public void onToken(long start, long end, TokenState state) {
+      events.add(start + "-" + end + " " + state);
+    }
+
+    @Override
+    public void onReject(long position) {
+      events.add("reject " + position);
+    }
+  }
+
+  @Test
+  void shouldMergeCharactersIntoClasses() {
+    // When
+    DfaScanner<TokenState> scanner = scanner();
+
+    // Then
+    assertThat(scanner.getClassCount()).isEqualTo(3);
+  }
+
+  @Test
+  void shouldMatchWholeInputs() {
+    // Given
+    DfaScanner<TokenState> scanner = scanner();
+
+    // When/Then
+    assertThat(scanner.matches("abc12")).isTrue();
+    assertThat(scanner.matches("12abc")).isFalse();
+    assertThat(scanner.matches("")).isFalse();
+    assertThat(scanner.rejectPosition("12a")).isEqualTo(2L);
+    assertThat(scanner.rejectPosition("x12")).isEqualTo(-1L);
+  }
+
+  @Test
+  void shouldTokenizeCharSequences() {
+    // Given
+    Recorder recorder = new Recorder();
+
+    // When
+    scanner().tokenize("abc 123x9", recorder);
+
+    // Then
+    assertThat(recorder.events)
+        .containsExactly("0-3 IDENTIFIER", "reject 3", "4-7 NUMBER", "7-9 IDENTIFIER");
+  }
+
+  @Test
+  void shouldTokenizeByteBuffersWithoutMovingThem() {
+    // Given
+    ByteBuffer buffer = ByteBuffer.wrap("--ab 42".getBytes(StandardCharsets.ISO_8859_1));
+    buffer.position(2);
+    Recorder recorder = new Recorder();
+
+    // When
+    scanner().tokenize(buffer, recorder);
+
+    // Then
+    assertThat(recorder.events).containsExactly("2-4 IDENTIFIER", "reject 4", "5-7 NUMBER");
+    assertThat(buffer.position()).isEqualTo(2);
+    assertThat(scanner().matches(buffer.slice(2, 2))).isTrue();
+    assertThat(scanner().rejectPosition(buffer)).isEqualTo(4L);
+  }
+
+  @Test
+  void shouldTokenizeFiles() throws IOException {
+    // Given
+    Path file = Files.createTempFile("scanner", ".txt");
+    Recorder recorder = new Recorder();
+    try {
+      Files.writeString(file, "id7 99\n", StandardCharsets.ISO_8859_1);
+
+      // When
+      scanner().tokenize(file, recorder);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+
+    // Then
+    assertThat(recorder.events)
+        .containsExactly("0-3 IDENTIFIER", "reject 3", "4-6 NUMBER", "reject 6");
+  }
+
+  @Test
+  void shouldFollowTheLinksOfParentStates() {
+    // Given
+    StateMachineDefinitionImpl.StateMachineDefinitionImplBuilder<TokenState, Character> builder =
+        StateMachineDefinitionImpl.builder();
+    for (char c = 'a'; c <= 'z'; c++) {
+      builder.link(link(TokenState.START, c, TokenState.IDENTIFIER));
+      builder.link(link(TokenState.NUMBER, c, TokenState.IDENTIFIER));
+    }
+    for (char c = '0'; c <= '9'; c++) {
+      builder.link(link(TokenState.START, c, TokenState.NUMBER));
+    }
+    DfaScanner<TokenState> scanner =
+        DfaScanner.<TokenState>builder()
+            .definition(builder.substate(TokenState.IDENTIFIER, TokenState.NUMBER).build())
+            .initialState(TokenState.START)
+            .acceptingState(TokenState.IDENTIFIER)
+            .build();
+
+    // When / Then
+    assertThat(scanner.matches("abc")).isTrue();
+    assertThat(scanner.matches("1abc")).isTrue();
+    assertThat(scanner.matches("a1")).isFalse();
+  }
+
+  @Test
+  void shouldRequireAnAcceptingState() {
+    assertThatThrownBy(
+            () ->
+                DfaScanner.<TokenState>builder()
+                    .definition(StateMachineDefinitionImpl.<TokenState, Character>builder().build())
+                    .initialState(TokenState.START)
+                    .build())
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,225 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.StateMachineDefinition;
+
+class DispatcherCompilerTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B,
+    STATE_C,
+    UNUSED
+  }
+
+  private enum TestEvent {
+    EVENT_1,
+    EVENT_2,
+    EVENT_3
+  }
+
+  private final List<String> log = new ArrayList<>();
+
+  private StateMachineDefinition<TestState, TestEvent> definition(ActionFailureHandler handler) {
+    return StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+        .actionFailureHandler(handler)
+        .link(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.STATE_A)
+                .event(TestEvent.EVENT_1)
+                .targetState(TestState.STATE_B)
+                .action(() -> log.add("first"))
+                .action(() -> log.add("second"))
+                .build())
+        .link(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.STATE_B)
+                .event(TestEvent.EVENT_3)
+                .targetState(TestState.STATE_C)
+                .action(
+                    () -> {
+                      throw new IllegalArgumentException("failure");
+                    })
+                .action(() -> log.add("after failure"))
+                .build())
+        .link(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.STATE_C)
+                .event(TestEvent.EVENT_2)
+                .targetState(TestState.STATE_A)
+                .build())
+        .build();
+  }
+
+  @Test
+  void shouldFollowLinksAndRunActionsInOrder() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> fsm =
+        DispatcherCompiler.compile(definition(ActionFailureHandlers.logging()))
+            .newInstance(TestState.STATE_A);
+
+    // When
+    fsm.performEvent(TestEvent.EVENT_1);
+    fsm.performEvent(TestEvent.EVENT_3);
+    TestState state = fsm.performEvent(TestEvent.EVENT_2);
+
+    // Then
+    assertThat(state).isEqualTo(TestState.STATE_A);
+    assertThat(log).containsExactly("first", "second", "after failure");
+  }
+
+  @Test
+  void shouldReportFailingActionsToHandler() {
+    // Given
+    LongAdder failures = new LongAdder();
+    LongAdder completions = new LongAdder();
+    ActionFailureHandler handler =
+        new ActionFailureHandler() {
+          @Override
+          public void onActionFailure(Object state, Object event, Exception exception) {
+            failures.increment();
+          }
+
+          @Override
+          public void afterFailedActions(Object state, Object event) {
+            completions.increment();
+          }
+        };
+    FiniteStateMachine<TestState, TestEvent> fsm =
+        DispatcherCompiler.compile(definition(handler)).newInstance(TestState.STATE_B);
+
+    // When
+    fsm.performEvent(TestEvent.EVENT_3);
+
+    // Then
+    assertThat(fsm.getState()).isEqualTo(TestState.STATE_C);
+    assertThat(failures.sum()).isEqualTo(1);
+    assertThat(completions.sum()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldKeepStateWhenHandlerAbortsTransition() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> fsm =
+        DispatcherCompiler.compile(definition(ActionFailureHandlers.failFast()))
+            .newInstance(TestState.STATE_B);
+
+    // When / Then
+    assertThatThrownBy(() -> fsm.performEvent(TestEvent.EVENT_3))
+        .isInstanceOf(RuntimeException.class);
+    assertThat(fsm.getState()).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldRejectIllegalEvents() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> fsm =
+        DispatcherCompiler.compile(definition(ActionFailureHandlers.logging()))
+            .newInstance(TestState.UNUSED);
+
+    // When / Then
+    assertThat(fsm.tryPerformEvent(TestEvent.EVENT_1)).isFalse();
+    assertThat(fsm.tryPerformEvent(null)).isFalse();
+    assertThatThrownBy(() -> fsm.performEvent(TestEvent.EVENT_1))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("is not a legal event for state UNUSED");
+    assertThat(fsm.getLegalEvents()).isEmpty();
+  }
+
+  private StateMachineDefinition<TestState, TestEvent> definitionWithActions(
+      int firstActions, int secondActions) {
+    LinkImpl.LinkImplBuilder<TestState, TestEvent> first =
+        LinkImpl.<TestState, TestEvent>builder()
+            .sourceState(TestState.STATE_A)
+            .event(TestEvent.EVENT_1)
+            .targetState(TestState.STATE_B);
+    for (int i = 0; i < firstActions; i++) {
+      String entry = "first " + i;
+      first.action(() -> log.add(entry));
+    }
+    LinkImpl.LinkImplBuilder<TestState, TestEvent> second =
+        LinkImpl.<TestState, TestEvent>builder()
+            .sourceState(TestState.STATE_B)
+            .event(TestEvent.EVENT_2)
+            .targetState(TestState.STATE_A);
+    for (int i = 0; i < secondActions; i++) {
+      String entry = "second " + i;
+      second.action(() -> log.add(entry));
+    }
+    return StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+        .link(first.build())
+        .link(second.build())
+        .build();
+  }
+
+  @Test
+  void shouldBehaveLikeTheInterpretedDefinitionWithManyActions() {
+    // Given
+    // Enough actions for wide constants and pool indexes, and for frames far apart
+    StateMachineDefinition<TestState, TestEvent> definition = definitionWithActions(300, 150);
+    FiniteStateMachine<TestState, TestEvent> interpreted =
+        definition.newInstance(TestState.STATE_A);
+    FiniteStateMachine<TestState, TestEvent> compiled =
+        DispatcherCompiler.compile(definition).newInstance(TestState.STATE_A);
+    List<TestEvent> events =
+        List.of(TestEvent.EVENT_1, TestEvent.EVENT_3, TestEvent.EVENT_2, TestEvent.EVENT_1);
+
+    // When
+    List<Object> interpretedSteps = new ArrayList<>();
+    for (TestEvent event : events) {
+      interpretedSteps.add(interpreted.tryPerformEvent(event));
+      interpretedSteps.add(interpreted.getState());
+    }
+    List<String> interpretedLog = new ArrayList<>(log);
+    log.clear();
+    List<Object> compiledSteps = new ArrayList<>();
+    for (TestEvent event : events) {
+      compiledSteps.add(compiled.tryPerformEvent(event));
+      compiledSteps.add(compiled.getState());
+    }
+
+    // Then
+    assertThat(compiledSteps).isEqualTo(interpretedSteps);
+    assertThat(log).isEqualTo(interpretedLog);
+    assertThat(log).hasSize(750);
+  }
+
+  @Test
+  void shouldRejectDefinitionsTooLargeForOneMethod() {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> definition = definitionWithActions(10_000, 0);
+
+    // When / Then
+    assertThatThrownBy(() -> DispatcherCompiler.compile(definition))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("too many links and actions");
+  }
+
+  @Test
+  void shouldRejectDefinitionsWithoutEnums() {
+    // Given
+    StateMachineDefinition<String, String> definition =
+        StateMachineDefinitionImpl.<String, String>builder()
+            .link(
+                LinkImpl.<String, String>builder()
+                    .sourceState("a")
+                    .event("go")
+                    .targetState("b")
+                    .build())
+            .build();
+
+    // When / Then
+    assertThatThrownBy(() -> DispatcherCompiler.compile((StateMachineDefinition) definition))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,138 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class EnumTransitionTableTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B,
+    STATE_C
+  }
+
+  private enum TestEvent {
+    EVENT_1,
+    EVENT_2
+  }
+
+  private enum OtherEvent {
+    EVENT_1
+  }
+
+  private static LinkImpl<TestState, TestEvent> link(
+      TestState source, TestEvent event, TestState target) {
+    return LinkImpl.<TestState, TestEvent>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .build();
+  }
+
+  @Test
+  void shouldCompileEnumLinksIntoDenseTable() {
+    // Given
+    HashTransitionTable<TestState, TestEvent> links = new HashTransitionTable<>();
+    links.add(link(TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_B));
+    links.add(link(TestState.STATE_B, TestEvent.EVENT_2, TestState.STATE_C));
+
+    // When
+    TransitionTable<TestState, TestEvent> compiled = links.compile(TestState.STATE_A);
+
+    // Then
+    assertThat(compiled).isInstanceOf(EnumTransitionTable.class);
+    assertThat(compiled.find(TestState.STATE_A, TestEvent.EVENT_1).getState())
+        .isEqualTo(TestState.STATE_B);
+    assertThat(compiled.find(TestState.STATE_B, TestEvent.EVENT_2).getState())
+        .isEqualTo(TestState.STATE_C);
+    assertThat(compiled.find(TestState.STATE_A, TestEvent.EVENT_2)).isNull();
+    assertThat(compiled.find(TestState.STATE_C, TestEvent.EVENT_1)).isNull();
+    assertThat(compiled.find(TestState.STATE_A, null)).isNull();
+    assertThat(compiled.legalEvents(TestState.STATE_B)).containsExactly(TestEvent.EVENT_2);
+    assertThat(compiled.legalEvents(TestState.STATE_C)).isEmpty();
+  }
+
+  @Test
+  void shouldFallBackToHashTableForNonEnumTypes() {
+    // Given
+    HashTransitionTable<String, String> links = new HashTransitionTable<>();
+    links.add(
+        LinkImpl.<String, String>builder()
+            .sourceState("open")
+            .event("close")
+            .targetState("closed")
+            .build());
+
+    // When/Then
+    assertThat(links.compile("open")).isSameAs(links);
+  }
+
+  @Test
+  void shouldFallBackToHashTableWhenEventsMixEnumTypes() {
+    // Given
+    HashTransitionTable<TestState, Enum<?>> links = new HashTransitionTable<>();
+    links.add(
+        LinkImpl.<TestState, Enum<?>>builder()
+            .sourceState(TestState.STATE_A)
+            .event(TestEvent.EVENT_1)
+            .targetState(TestState.STATE_B)
+            .build());
+    links.add(
+        LinkImpl.<TestState, Enum<?>>builder()
+            .sourceState(TestState.STATE_B)
+            .event(OtherEvent.EVENT_1)
+            .targetState(TestState.STATE_C)
+            .build());
+
+    // When/Then
+    assertThat(links.compile(TestState.STATE_A)).isSameAs(links);
+  }
+
+  @Test
+  void shouldDispatchThroughCompiledTableOnceFrozen() {
+    // Given
+    AtomicInteger counter = new AtomicInteger(0);
+    FiniteStateMachineImpl<TestState, TestEvent> fsm =
+        new FiniteStateMachineImpl<>(TestState.STATE_A);
+    fsm.link(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.STATE_A)
+                .event(TestEvent.EVENT_1)
+                .targetState(TestState.STATE_B)
+                .actions(List.of(counter::incrementAndGet, counter::incrementAndGet))
+                .build())
+        .link(link(TestState.STATE_B, TestEvent.EVENT_2, TestState.STATE_A))
+        .freeze();
+
+    // When
+    TestState newState = fsm.performEvent(TestEvent.EVENT_1);
+
+    // Then
+    assertThat(newState).isEqualTo(TestState.STATE_B);
+    assertThat(counter.get()).isEqualTo(2);
+    assertThat(fsm.performEvent(TestEvent.EVENT_2)).isEqualTo(TestState.STATE_A);
+    assertThatThrownBy(() -> fsm.performEvent(TestEvent.EVENT_2))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining(TestState.STATE_A.toString())
+        .hasMessageContaining("[" + TestEvent.EVENT_1 + "]");
+  }
+
+  @Test
+  void shouldRejectLinksOnceFrozen() {
+    // Given
+    FiniteStateMachineImpl<TestState, TestEvent> fsm =
+        new FiniteStateMachineImpl<>(TestState.STATE_A);
+    fsm.link(link(TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_B)).freeze();
+
+    // When/Then
+    assertThatThrownBy(
+            () -> fsm.link(link(TestState.STATE_B, TestEvent.EVENT_2, TestState.STATE_A)))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("frozen");
+  }
+}
@@ -0,0 +1,244 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.Transition;
+
+class FiniteStateMachineProcessorTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B
+  }
+
+  private enum TestEvent {
+    TOGGLE,
+    FINISH
+  }
+
+  private static final StateMachineDefinition<TestState, TestEvent> DEFINITION =
+      StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+          .link(link(TestState.STATE_A, TestState.STATE_B))
+          .link(link(TestState.STATE_B, TestState.STATE_A))
+          .build();
+
+  private static LinkImpl<TestState, TestEvent> link(TestState source, TestState target) {
+    return LinkImpl.<TestState, TestEvent>builder()
+        .sourceState(source)
+        .event(TestEvent.TOGGLE)
+        .targetState(target)
+        .build();
+  }
+
+  private static FiniteStateMachine<TestState, TestEvent> machine() {
+    return DEFINITION.newInstance(TestState.STATE_A);
+  }
+
+  @Test
+  void shouldPublishTransitionsOnlyAsRequested() {
+    // Given
+    FiniteStateMachineProcessor<TestState, TestEvent> processor =
+        FiniteStateMachineProcessor.<TestState, TestEvent>builder()
+            .machine(machine())
+            .batchSize(8)
+            .build();
+    Upstream upstream = new Upstream();
+    Downstream downstream = new Downstream();
+    processor.onSubscribe(upstream);
+    processor.subscribe(downstream);
+
+    // When
+    for (int i = 0; i < 8; i++) {
+      processor.onNext(TestEvent.TOGGLE);
+    }
+    downstream.subscription.request(2);
+
+    // Then
+    assertThat(upstream.requested).isEqualTo(8);
+    assertThat(downstream.transitions).hasSize(2);
+    assertThat(downstream.transitions.get(0).getSource()).isEqualTo(TestState.STATE_A);
+    assertThat(downstream.transitions.get(0).getTarget()).isEqualTo(TestState.STATE_B);
+    assertThat(downstream.transitions.get(1).getTarget()).isEqualTo(TestState.STATE_A);
+  }
+
+  @Test
+  void shouldRequestMoreEventsInBatchesAsTheyArePerformed() {
+    // Given
+    FiniteStateMachineProcessor<TestState, TestEvent> processor =
+        FiniteStateMachineProcessor.<TestState, TestEvent>builder()
+            .machine(machine())
+            .batchSize(8)
+            .build();
+    Upstream upstream = new Upstream();
+    Downstream downstream = new Downstream();
+    processor.onSubscribe(upstream);
+    processor.subscribe(downstream);
+    downstream.subscription.request(Long.MAX_VALUE);
+
+    // When
+    for (int i = 0; i < 14; i++) {
+      processor.onNext(TestEvent.TOGGLE);
+    }
+    processor.onComplete();
+
+    // Then
+    assertThat(upstream.requested).isEqualTo(8 + 6 + 6);
+    assertThat(downstream.transitions).hasSize(14);
+    assertThat(downstream.completed).isTrue();
+  }
+
+  @Test
+  void shouldRejectEventsBeyondTheRequestedOnes() {
+    // Given
+    FiniteStateMachineProcessor<TestState, TestEvent> processor =
+        FiniteStateMachineProcessor.<TestState, TestEvent>builder()
+            .machine(machine())
+            .batchSize(2)
+            .build();
+    Upstream upstream = new Upstream();
+    Downstream downstream = new Downstream();
+    processor.onSubscribe(upstream);
+    processor.subscribe(downstream);
+
+    // When
+    for (int i = 0; i < 3; i++) {
+      processor.onNext(TestEvent.TOGGLE);
+    }
+    downstream.subscription.request(1);
+
+    // Then
+    assertThat(upstream.cancelled).isTrue();
+    assertThat(downstream.error).isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldSignalIllegalEventsAsErrorsByDefault() {
+    // Given
+    FiniteStateMachineProcessor<TestState, TestEvent> processor =
+        FiniteStateMachineProcessor.<TestState, TestEvent>builder().machine(machine()).build();
+    Upstream upstream = new Upstream();
+    Downstream downstream = new Downstream();
+    processor.onSubscribe(upstream);
+    processor.subscribe(downstream);
+    downstream.subscription.request(10);
+
+    // When
+    processor.onNext(TestEvent.TOGGLE);
+    processor.onNext(TestEvent.FINISH);
+    processor.onNext(TestEvent.TOGGLE);
+
+    // Then
+    assertThat(downstream.transitions).hasSize(1);
+    assertThat(downstream.error)
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("FINISH is not a legal event for state STATE_B");
+    assertThat(upstream.cancelled).isTrue();
+  }
+
+  @Test
+  void shouldDropOrSideOutputIllegalEvents() {
+    // Given
+    List<Object> rejected = new ArrayList<>();
+    FiniteStateMachineProcessor<TestState, TestEvent> processor =
+        FiniteStateMachineProcessor.<TestState, TestEvent>builder()
+            .machine(machine())
+            .illegalEventPolicy(FiniteStateMachineProcessor.IllegalEventPolicy.SIDE_OUTPUT)
+            .sideOutput((state, event) -> rejected.add(state + ":" + event))
+            .build();
+    Upstream upstream = new Upstream();
+    Downstream downstream = new Downstream();
+    processor.onSubscribe(upstream);
+    processor.subscribe(downstream);
+    downstream.subscription.request(10);
+
+    // When
+    processor.onNext(TestEvent.FINISH);
+    processor.onNext(TestEvent.TOGGLE);
+    processor.onComplete();
+
+    // Then
+    assertThat(rejected).containsExactly("STATE_A:FINISH");
+    assertThat(downstream.transitions).hasSize(1);
+    assertThat(downstream.completed).isTrue();
+  }
+
+  @Test
+  void shouldRequireSideOutputForSideOutputPolicy() {
+    // When/Then
+    assertThatThrownBy(
+            () ->
+                FiniteStateMachineProcessor.<TestState, TestEvent>builder()
+                    .machine(machine())
+                    .illegalEventPolicy(FiniteStateMachineProcessor.IllegalEventPolicy.SIDE_OUTPUT)
+                    .build())
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("The side output policy needs a side output");
+  }
+
+  @Test
+  void shouldRejectSecondSubscriber() {
+    // Given
+    FiniteStateMachineProcessor<TestState, TestEvent> processor =
+        FiniteStateMachineProcessor.<TestState, TestEvent>builder().machine(machine()).build();
+    processor.subscribe(new Downstream());
+    Downstream second = new Downstream();
+
+    // When
+    processor.subscribe(second);
+
+    // Then
+    assertThat(second.error).isInstanceOf(IllegalStateException.class);
+  }
+
+  private static final class Upstream implements Flow.Subscription {
+    private long requested;
+    private boolean cancelled;
+
+    @Override
+    public void request(long n) {
+      requested += n;
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+    }
+  }
+
+  private static final class Downstream
+      implements Flow.Subscriber<Transition<TestState, TestEvent>> {
+    private final List<Transition<TestState, TestEvent>> transitions = new ArrayList<>();
+    private Flow.Subscription subscription;
+    private Throwable error;
+    private boolean completed;
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(Transition<TestState, TestEvent> transition) {
+      transitions.add(transition);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+}
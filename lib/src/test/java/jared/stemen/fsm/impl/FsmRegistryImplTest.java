@@ -0,0 +1,285 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.FsmRegistry;
+import jared.stemen.fsm.StateMachineDefinition;
+
+class FsmRegistryImplTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B,
+    STATE_C
+  }
+
+  private enum TestEvent {
+    NEXT,
+    FINISH
+  }
+
+  private final StateMachineDefinition<TestState, TestEvent> definition =
+      StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+          .link(link(TestState.STATE_A, TestEvent.NEXT, TestState.STATE_B))
+          .link(link(TestState.STATE_B, TestEvent.NEXT, TestState.STATE_C))
+          .link(link(TestState.STATE_C, TestEvent.NEXT, TestState.STATE_A))
+          .build();
+
+  private static LinkImpl<TestState, TestEvent> link(
+      TestState source, TestEvent event, TestState target) {
+    return LinkImpl.<TestState, TestEvent>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .build();
+  }
+
+  @Test
+  void shouldCreateMachinesLazilyPerKey() {
+    // Given
+    FsmRegistry<String, TestState, TestEvent> registry =
+        new FsmRegistryImpl<>(definition, TestState.STATE_A);
+
+    // When
+    TestState newState = registry.performEvent("order-1", TestEvent.NEXT);
+
+    // Then
+    assertThat(newState).isEqualTo(TestState.STATE_B);
+    assertThat(registry.getState("order-1")).isEqualTo(TestState.STATE_B);
+    assertThat(registry.getState("order-2")).isEqualTo(TestState.STATE_A);
+    assertThat(registry.size()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldRemoveMachines() {
+    // Given
+    FsmRegistry<String, TestState, TestEvent> registry =
+        new FsmRegistryImpl<>(definition, TestState.STATE_A);
+    registry.performEvent("order-1", TestEvent.NEXT);
+
+    // When
+    boolean removed = registry.remove("order-1");
+
+    // Then
+    assertThat(removed).isTrue();
+    assertThat(registry.remove("order-1")).isFalse();
+    assertThat(registry.getState("order-1")).isEqualTo(TestState.STATE_A);
+    assertThat(registry.size()).isEqualTo(0);
+  }
+
+  @Test
+  void shouldPropagateIllegalEvents() {
+    // Given
+    FsmRegistry<String, TestState, TestEvent> registry =
+        new FsmRegistryImpl<>(definition, TestState.STATE_A);
+
+    // When/Then
+    assertThatThrownBy(() -> registry.performEvent("order-1", TestEvent.FINISH))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldSerializeEventsPerKeyAcrossThreads() throws Exception {
+    // Given
+    int threads = 8;
+    int keys = 16;
+    int eventsPerThread = 20_000;
+    FsmRegistry<Integer, TestState, TestEvent> registry =
+        new FsmRegistryImpl<>(definition, TestState.STATE_A, 4);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+
+    // When
+    try {
+      for (int t = 0; t < threads; t++) {
+        futures.add(
+            executor.submit(
+                () -> {
+                  start.await();
+                  for (int i = 0; i < eventsPerThread; i++) {
+                    registry.performEvent(i % keys, TestEvent.NEXT);
+                  }
+                  return null;
+                }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Then
+    int eventsPerKey = threads * eventsPerThread / keys;
+    for (int key = 0; key < keys; key++) {
+      assertThat(registry.getState(key)).isEqualTo(TestState.values()[eventsPerKey % 3]);
+    }
+  }
+
+  @Test
+  void shouldFollowTimeoutLinksUntilAnotherEventArrives() throws Exception {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> timed =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+            .link(link(TestState.STATE_A, TestEvent.NEXT, TestState.STATE_B))
+            .link(link(TestState.STATE_B, TestEvent.NEXT, TestState.STATE_A))
+            .link(
+                LinkImpl.<TestState, TestEvent>builder()
+                    .sourceState(TestState.STATE_B)
+                    .event(TestEvent.FINISH)
+                    .targetState(TestState.STATE_C)
+                    .timeout(Duration.ofMillis(20))
+                    .build())
+            .build();
+
+    try (TimingWheel wheel = TimingWheel.builder().tick(Duration.ofMillis(2)).build()) {
+      FsmRegistry<String, TestState, TestEvent> registry =
+          new FsmRegistryImpl<>(timed, TestState.STATE_A, 4, wheel);
+
+      // When
+      registry.performEvent("expiring", TestEvent.NEXT);
+      registry.performEvent("answered", TestEvent.NEXT);
+      registry.performEvent("answered", TestEvent.NEXT);
+
+      // Then
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (registry.getState("expiring") != TestState.STATE_C && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertThat(registry.getState("expiring")).isEqualTo(TestState.STATE_C);
+      Thread.sleep(50);
+      assertThat(registry.getState("answered")).isEqualTo(TestState.STATE_A);
+    }
+  }
+
+  @Test
+  void shouldTimeOutTheInitialStateOfNewMachines() throws Exception {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> timed =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+            .link(
+                LinkImpl.<TestState, TestEvent>builder()
+                    .sourceState(TestState.STATE_A)
+                    .event(TestEvent.FINISH)
+                    .targetState(TestState.STATE_C)
+                    .timeout(Duration.ofMillis(20))
+                    .build())
+            .build();
+
+    try (TimingWheel wheel = TimingWheel.builder().tick(Duration.ofMillis(2)).build()) {
+      FsmRegistry<String, TestState, TestEvent> registry =
+          new FsmRegistryImpl<>(timed, TestState.STATE_A, 4, wheel);
+
+      // When
+      assertThatThrownBy(() -> registry.performEvent("idle", TestEvent.NEXT))
+          .isInstanceOf(IllegalStateException.class);
+
+      // Then
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (registry.getState("idle") != TestState.STATE_C && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertThat(registry.getState("idle")).isEqualTo(TestState.STATE_C);
+    }
+  }
+
+  @Test
+  void shouldInheritTheTimeoutOfParentStates() throws Exception {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> timed =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+            .link(link(TestState.STATE_A, TestEvent.NEXT, TestState.STATE_B))
+            .link(
+                LinkImpl.<TestState, TestEvent>builder()
+                    .sourceState(TestState.STATE_A)
+                    .event(TestEvent.FINISH)
+                    .targetState(TestState.STATE_C)
+                    .timeout(Duration.ofMillis(20))
+                    .build())
+            .substate(TestState.STATE_B, TestState.STATE_A)
+            .build();
+
+    try (TimingWheel wheel = TimingWheel.builder().tick(Duration.ofMillis(2)).build()) {
+      FsmRegistry<String, TestState, TestEvent> registry =
+          new FsmRegistryImpl<>(timed, TestState.STATE_A, 4, wheel);
+
+      // When
+      registry.performEvent("nested", TestEvent.NEXT);
+
+      // Then
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (registry.getState("nested") != TestState.STATE_C && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertThat(registry.getState("nested")).isEqualTo(TestState.STATE_C);
+    }
+  }
+
+  @Test
+  void shouldRetryRejectedTimeoutEvents() throws Exception {
+    // Given
+    AtomicInteger attempts = new AtomicInteger(0);
+    StateMachineDefinition<TestState, TestEvent> timed =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+            .link(
+                LinkImpl.<TestState, TestEvent>builder()
+                    .sourceState(TestState.STATE_A)
+                    .event(TestEvent.FINISH)
+                    .targetState(TestState.STATE_C)
+                    .guard(() -> attempts.incrementAndGet() >= 3)
+                    .timeout(Duration.ofMillis(20))
+                    .build())
+            .build();
+
+    try (TimingWheel wheel = TimingWheel.builder().tick(Duration.ofMillis(2)).build()) {
+      FsmRegistry<String, TestState, TestEvent> registry =
+          new FsmRegistryImpl<>(timed, TestState.STATE_A, 4, wheel);
+
+      // When
+      registry.setState("guarded", TestState.STATE_A);
+
+      // Then
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+      while (registry.getState("guarded") != TestState.STATE_C && System.nanoTime() < deadline) {
+        Thread.sleep(5);
+      }
+      assertThat(registry.getState("guarded")).isEqualTo(TestState.STATE_C);
+      assertThat(attempts.get()).isEqualTo(3);
+    }
+  }
+
+  @Test
+  void shouldRequireTimingWheelForTimeoutLinks() {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> timed =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+            .link(
+                LinkImpl.<TestState, TestEvent>builder()
+                    .sourceState(TestState.STATE_A)
+                    .event(TestEvent.FINISH)
+                    .targetState(TestState.STATE_C)
+                    .timeout(Duration.ofMinutes(30))
+                    .build())
+            .build();
+
+    // When/Then
+    assertThatThrownBy(() -> new FsmRegistryImpl<>(timed, TestState.STATE_A))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessage("Definitions with timeout links need a timing wheel");
+  }
+}
@@ -0,0 +1,172 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.StateMachineDefinition;
+
+class GuardedTransitionsTest {
+
+  private enum OrderState {
+    NEW,
+    REVIEW,
+    APPROVED,
+    REJECTED
+  }
+
+  private enum OrderEvent {
+    SUBMIT,
+    CANCEL
+  }
+
+  private final AtomicInteger amount = new AtomicInteger();
+
+  private LinkImpl<OrderState, OrderEvent> submit(OrderState target, BooleanSupplier guard) {
+    return LinkImpl.<OrderState, OrderEvent>builder()
+        .sourceState(OrderState.NEW)
+        .event(OrderEvent.SUBMIT)
+        .targetState(target)
+        .guard(guard)
+        .build();
+  }
+
+  private FiniteStateMachine<OrderState, OrderEvent> machine() {
+    return new FiniteStateMachineImpl<OrderState, OrderEvent>(OrderState.NEW)
+        .link(submit(OrderState.REVIEW, () -> amount.get() > 100))
+        .link(submit(OrderState.APPROVED, () -> amount.get() > 0))
+        .link(submit(OrderState.REJECTED, null));
+  }
+
+  @Test
+  void shouldFollowTheFirstLinkWhoseGuardPasses() {
+    // Given
+    amount.set(500);
+
+    // When/Then
+    assertThat(machine().performEvent(OrderEvent.SUBMIT)).isEqualTo(OrderState.REVIEW);
+    amount.set(50);
+    assertThat(machine().performEvent(OrderEvent.SUBMIT)).isEqualTo(OrderState.APPROVED);
+    amount.set(0);
+    assertThat(machine().performEvent(OrderEvent.SUBMIT)).isEqualTo(OrderState.REJECTED);
+    assertThat(machine().freeze().performEvent(OrderEvent.SUBMIT)).isEqualTo(OrderState.REJECTED);
+  }
+
+  @Test
+  void shouldRejectEventsWhenNoGuardPasses() {
+    // Given
+    StateMachineDefinition<OrderState, OrderEvent> definition =
+        StateMachineDefinitionImpl.<OrderState, OrderEvent>builder()
+            .link(submit(OrderState.REVIEW, () -> amount.get() > 100))
+            .link(submit(OrderState.APPROVED, () -> amount.get() > 0))
+            .build();
+    FiniteStateMachine<OrderState, OrderEvent> fsm = definition.newInstance(OrderState.NEW);
+
+    // When/Then
+    assertThat(fsm.tryPerformEvent(OrderEvent.SUBMIT)).isFalse();
+    assertThat(fsm.getLegalEvents()).containsExactly(OrderEvent.SUBMIT);
+    assertThatThrownBy(() -> fsm.performEvent(OrderEvent.SUBMIT))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("No guard of event SUBMIT passed in state NEW");
+    amount.set(5);
+    assertThat(fsm.performEvent(OrderEvent.SUBMIT)).isEqualTo(OrderState.APPROVED);
+  }
+
+  @Test
+  void shouldRejectLinksAfterAnUnguardedLink() {
+    // Given
+    FiniteStateMachine<OrderState, OrderEvent> fsm =
+        new FiniteStateMachineImpl<OrderState, OrderEvent>(OrderState.NEW)
+            .link(submit(OrderState.REJECTED, null));
+
+    // When/Then
+    assertThatThrownBy(() -> fsm.link(submit(OrderState.REVIEW, () -> true)))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("already linked to state REJECTED");
+  }
+
+  @Test
+  void shouldEvaluateFrequentlyPassingGuardsFirst() {
+    // Given guards that never pass together
+    AtomicInteger firstEvaluations = new AtomicInteger();
+    GuardedTransitions<OrderState> transitions =
+        new GuardedTransitions<>(
+            List.of(
+                new StateAndActions<>(
+                    OrderState.REVIEW,
+                    List.of(),
+                    () -> firstEvaluations.incrementAndGet() > 0 && amount.get() > 100),
+                new StateAndActions<>(
+                    OrderState.APPROVED, List.of(), () -> amount.get() > 0 && amount.get() <= 100),
+                new StateAndActions<>(OrderState.REJECTED, List.of())),
+            true);
+    amount.set(50);
+    for (int i = 0; i < 2048; i++) {
+      transitions.select();
+    }
+    firstEvaluations.set(0);
+
+    // When
+    StateAndActions<OrderState> selected = transitions.select();
+
+    // Then
+    assertThat(selected.getState()).isEqualTo(OrderState.APPROVED);
+    assertThat(firstEvaluations.get()).isZero();
+    amount.set(500);
+    assertThat(transitions.select().getState()).isEqualTo(OrderState.REVIEW);
+    amount.set(0);
+    assertThat(transitions.select().getState()).isEqualTo(OrderState.REJECTED);
+  }
+
+  @Test
+  void shouldOrderGuardsByFrequencyInStandaloneMachines() {
+    // Given guards that never pass together
+    AtomicInteger firstEvaluations = new AtomicInteger();
+    FiniteStateMachine<OrderState, OrderEvent> fsm =
+        new FiniteStateMachineImpl<OrderState, OrderEvent>(OrderState.NEW, true)
+            .link(
+                submit(
+                    OrderState.REVIEW,
+                    () -> firstEvaluations.incrementAndGet() > 0 && amount.get() > 100))
+            .link(submit(OrderState.APPROVED, () -> amount.get() > 0 && amount.get() <= 100))
+            .link(
+                LinkImpl.<OrderState, OrderEvent>builder()
+                    .sourceState(OrderState.APPROVED)
+                    .event(OrderEvent.CANCEL)
+                    .targetState(OrderState.NEW)
+                    .build())
+            .freeze();
+    amount.set(50);
+    for (int i = 0; i < 2048; i++) {
+      fsm.performEvent(OrderEvent.SUBMIT);
+      fsm.performEvent(OrderEvent.CANCEL);
+    }
+    firstEvaluations.set(0);
+
+    // When
+    OrderState state = fsm.performEvent(OrderEvent.SUBMIT);
+
+    // Then
+    assertThat(state).isEqualTo(OrderState.APPROVED);
+    assertThat(firstEvaluations.get()).isZero();
+  }
+
+  @Test
+  void shouldNotCompileGuardedDefinitions() {
+    // Given
+    StateMachineDefinition<OrderState, OrderEvent> definition =
+        StateMachineDefinitionImpl.<OrderState, OrderEvent>builder()
+            .link(submit(OrderState.REVIEW, () -> true))
+            .build();
+
+    // When/Then
+    assertThatThrownBy(() -> DispatcherCompiler.compile(definition))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
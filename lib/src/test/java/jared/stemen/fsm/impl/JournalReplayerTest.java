@@ -0,0 +1,159 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.StateMachineDefinition;
+
+class JournalReplayerTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B
+  }
+
+  private enum TestEvent {
+    EVENT_1,
+    EVENT_2
+  }
+
+  private static final int MACHINES = 100;
+
+  private final AtomicInteger actionRuns = new AtomicInteger();
+  private Path file;
+  private MappedTransitionJournal<TestState, TestEvent> journal;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    file = Files.createTempFile("journal", ".bin");
+    journal =
+        MappedTransitionJournal.<TestState, TestEvent>builder()
+            .path(file)
+            .states(List.of(TestState.values()))
+            .events(List.of(TestEvent.values()))
+            .capacity(1024)
+            .build();
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    journal.close();
+    Files.deleteIfExists(file);
+  }
+
+  private StateMachineDefinition<TestState, TestEvent> definition() {
+    return StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+        .link(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.STATE_A)
+                .event(TestEvent.EVENT_1)
+                .targetState(TestState.STATE_B)
+                .action(actionRuns::incrementAndGet)
+                .build())
+        .link(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.STATE_B)
+                .event(TestEvent.EVENT_2)
+                .targetState(TestState.STATE_A)
+                .build())
+        .build();
+  }
+
+  /** Machine {@code id} performs {@code id % 4} alternating transitions starting from STATE_A. */
+  private void journalMachines() {
+    for (int step = 0; step < 3; step++) {
+      for (long id = 0; id < MACHINES; id++) {
+        if (step < id % 4) {
+          if (step % 2 == 0) {
+            journal.append(id, TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_B);
+          } else {
+            journal.append(id, TestState.STATE_B, TestEvent.EVENT_2, TestState.STATE_A);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  void shouldRebuildStatesWithoutRunningActions() {
+    // Given
+    journalMachines();
+    AtomicLong lastProgress = new AtomicLong();
+
+    // When
+    var result =
+        JournalReplayer.<TestState, TestEvent>builder()
+            .journal(journal)
+            .skipActions(true)
+            .chunkSize(7)
+            .partitions(3)
+            .progressListener(
+                (replayed, total) -> lastProgress.accumulateAndGet(replayed, Math::max))
+            .build()
+            .replay();
+
+    // Then
+    assertThat(result.getRecords()).isEqualTo(journal.getRecordCount());
+    assertThat(lastProgress.get()).isEqualTo(journal.getRecordCount());
+    assertThat(result.getStates()).hasSize(MACHINES * 3 / 4);
+    assertThat(result.getStates().get(1L)).isEqualTo(TestState.STATE_B);
+    assertThat(result.getStates().get(2L)).isEqualTo(TestState.STATE_A);
+    assertThat(result.getStates().get(3L)).isEqualTo(TestState.STATE_B);
+    assertThat(actionRuns.get()).isZero();
+  }
+
+  @Test
+  void shouldRebuildStatesByPerformingEvents() {
+    // Given
+    journalMachines();
+
+    // When
+    var result =
+        JournalReplayer.<TestState, TestEvent>builder()
+            .journal(journal)
+            .definition(definition())
+            .chunkSize(5)
+            .build()
+            .replay();
+
+    // Then
+    assertThat(result.getStates().get(2L)).isEqualTo(TestState.STATE_A);
+    assertThat(result.getStates().get(7L)).isEqualTo(TestState.STATE_B);
+    assertThat(actionRuns.get()).isEqualTo(MACHINES * 3 / 4 + MACHINES / 4);
+  }
+
+  @Test
+  void shouldFailWhenJournalDisagreesWithDefinition() {
+    // Given
+    journal.append(1, TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_A);
+
+    // When / Then
+    assertThatThrownBy(
+            () ->
+                JournalReplayer.<TestState, TestEvent>builder()
+                    .journal(journal)
+                    .definition(definition())
+                    .build()
+                    .replay())
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldRequireDefinitionToReplayActions() {
+    // When / Then
+    assertThatThrownBy(
+            () -> JournalReplayer.<TestState, TestEvent>builder().journal(journal).build())
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
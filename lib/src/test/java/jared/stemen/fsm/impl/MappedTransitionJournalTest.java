@@ -0,0 +1,239 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.FsmRegistry;
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.StateMachineFleet;
+import jared.stemen.fsm.TransitionRecord;
+
+class MappedTransitionJournalTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B
+  }
+
+  private enum TestEvent {
+    EVENT_1,
+    EVENT_2
+  }
+
+  private Path file;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    file = Files.createTempFile("journal", ".bin");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  private MappedTransitionJournal<TestState, TestEvent> open(long capacity) {
+    return MappedTransitionJournal.<TestState, TestEvent>builder()
+        .path(file)
+        .states(List.of(TestState.values()))
+        .events(List.of(TestEvent.values()))
+        .capacity(capacity)
+        .forceEvery(2)
+        .build();
+  }
+
+  @Test
+  void shouldReadBackAppendedRecordsAfterReopening() throws IOException {
+    // Given
+    try (var journal = open(16)) {
+      journal.append(7, TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_B);
+      journal.append(9, TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_B);
+      journal.append(7, TestState.STATE_B, TestEvent.EVENT_2, TestState.STATE_A);
+    }
+
+    // When
+    List<TransitionRecord<TestState, TestEvent>> records = new ArrayList<>();
+    try (var journal = open(16)) {
+      journal.forEach(records::add);
+
+      // Then
+      assertThat(journal.getRecordCount()).isEqualTo(3);
+      assertThat(journal.latestStates())
+          .containsEntry(7L, TestState.STATE_A)
+          .containsEntry(9L, TestState.STATE_B);
+    }
+    assertThat(records).hasSize(3);
+    assertThat(records.get(2).getMachineId()).isEqualTo(7);
+    assertThat(records.get(2).getSource()).isEqualTo(TestState.STATE_B);
+    assertThat(records.get(2).getEvent()).isEqualTo(TestEvent.EVENT_2);
+    assertThat(records.get(2).getTarget()).isEqualTo(TestState.STATE_A);
+    assertThat(records.get(2).getTimestamp()).isPositive();
+  }
+
+  @Test
+  void shouldJournalTransitionsOfAttachedMachine() throws IOException {
+    // Given
+    FiniteStateMachineImpl<TestState, TestEvent> fsm =
+        new FiniteStateMachineImpl<>(TestState.STATE_A);
+    fsm.link(
+        LinkImpl.<TestState, TestEvent>builder()
+            .sourceState(TestState.STATE_A)
+            .event(TestEvent.EVENT_1)
+            .targetState(TestState.STATE_B)
+            .build());
+
+    try (var journal = open(16)) {
+      fsm.setTransitionListener(journal.forMachine(42));
+
+      // When
+      fsm.performEvent(TestEvent.EVENT_1);
+
+      // Then
+      assertThat(journal.latestStates()).containsEntry(42L, TestState.STATE_B);
+    }
+  }
+
+  @Test
+  void shouldReadBackRecordsSpanningSeveralSegments() throws IOException {
+    // Given
+    try (var journal =
+        new MappedTransitionJournal<>(
+            file, List.of(TestState.values()), List.of(TestEvent.values()), 8, 3, null, 64)) {
+      for (long machineId = 0; machineId < 8; machineId++) {
+        journal.append(machineId, TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_B);
+      }
+    }
+
+    // When
+    List<TransitionRecord<TestState, TestEvent>> records = new ArrayList<>();
+    try (var journal =
+        new MappedTransitionJournal<>(
+            file, List.of(TestState.values()), List.of(TestEvent.values()), 8, 3, null, 64)) {
+      journal.forEach(records::add);
+
+      // Then
+      assertThat(journal.getRecordCount()).isEqualTo(8);
+    }
+    assertThat(records.stream().map(TransitionRecord::getMachineId).toList())
+        .containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L);
+    assertThat(records.stream().map(TransitionRecord::getTarget).toList())
+        .containsOnly(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldJournalEveryEntityOfAFleetThroughOneListener() throws IOException {
+    // Given
+    try (var journal = open(16)) {
+      StateMachineDefinition<TestState, TestEvent> definition =
+          StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+              .link(
+                  LinkImpl.<TestState, TestEvent>builder()
+                      .sourceState(TestState.STATE_A)
+                      .event(TestEvent.EVENT_1)
+                      .targetState(TestState.STATE_B)
+                      .build())
+              .transitionListener(journal.forKeyedMachines())
+              .build();
+      StateMachineFleet<TestState, TestEvent> fleet =
+          new StateMachineFleetImpl<>(definition, TestState.STATE_A, 100);
+      FsmRegistry<Long, TestState, TestEvent> registry =
+          new FsmRegistryImpl<>(definition, TestState.STATE_A, 4);
+
+      // When
+      fleet.performEvent(3, TestEvent.EVENT_1);
+      registry.performEvent(64L, TestEvent.EVENT_1);
+
+      // Then
+      assertThat(journal.latestStates())
+          .containsEntry(3L, TestState.STATE_B)
+          .containsEntry(64L, TestState.STATE_B);
+      assertThatThrownBy(
+              () -> definition.newInstance(TestState.STATE_A).performEvent(TestEvent.EVENT_1))
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessageContaining("without a key");
+    }
+  }
+
+  @Test
+  void shouldRejectAppendWhenFull() throws IOException {
+    // Given
+    try (var journal = open(1)) {
+      journal.append(1, TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_B);
+
+      // When / Then
+      assertThatThrownBy(
+              () -> journal.append(1, TestState.STATE_B, TestEvent.EVENT_2, TestState.STATE_A))
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessageContaining("is full");
+    }
+  }
+
+  @Test
+  void shouldRejectStateOutsideDictionary() throws IOException {
+    // Given
+    try (var journal =
+        MappedTransitionJournal.<TestState, TestEvent>builder()
+            .path(file)
+            .state(TestState.STATE_A)
+            .events(List.of(TestEvent.values()))
+            .capacity(4)
+            .build()) {
+
+      // When / Then
+      assertThatThrownBy(
+              () -> journal.append(1, TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_B))
+          .isInstanceOf(IllegalArgumentException.class)
+          .hasMessageContaining("STATE_B");
+    }
+  }
+
+  @Test
+  void shouldRejectAppendAfterClose() throws IOException {
+    // Given
+    var journal = open(4);
+    journal.close();
+
+    // When / Then
+    assertThatThrownBy(
+            () -> journal.append(1, TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_B))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("is closed");
+  }
+
+  @Test
+  void shouldRejectFilesThatAreNotJournals() throws IOException {
+    // Given
+    Files.writeString(file, "state,event,target\nSTATE_A,EVENT_1,STATE_B\n");
+
+    // When / Then
+    assertThatThrownBy(() -> open(4))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("is not a transition journal");
+  }
+
+  @Test
+  void shouldRejectJournalsOfAnotherVersion() throws IOException {
+    // Given
+    try (var journal = open(4)) {
+      journal.append(1, TestState.STATE_A, TestEvent.EVENT_1, TestState.STATE_B);
+    }
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[4] = 2;
+    Files.write(file, bytes);
+
+    // When / Then
+    assertThatThrownBy(() -> open(4))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("has version 2, expected 1");
+  }
+}
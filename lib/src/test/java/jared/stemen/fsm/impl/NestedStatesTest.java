@@ -0,0 +1,143 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.StateMachineDefinition;
+
+class NestedStatesTest {
+
+  private enum WashState {
+    IDLE,
+    RUNNING,
+    WASHING,
+    RINSING,
+    SPINNING,
+    CANCELLED,
+    PAUSED
+  }
+
+  private enum WashEvent {
+    START,
+    WASH_COMPLETE,
+    RINSE_COMPLETE,
+    CANCEL,
+    PAUSE
+  }
+
+  private final AtomicBoolean spinLocked = new AtomicBoolean();
+
+  private static LinkImpl<WashState, WashEvent> link(
+      WashState source, WashEvent event, WashState target) {
+    return LinkImpl.<WashState, WashEvent>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .build();
+  }
+
+  private FiniteStateMachineImpl<WashState, WashEvent> machine() {
+    FiniteStateMachineImpl<WashState, WashEvent> fsm = new FiniteStateMachineImpl<>(WashState.IDLE);
+    fsm.link(link(WashState.IDLE, WashEvent.START, WashState.WASHING))
+        .link(link(WashState.WASHING, WashEvent.WASH_COMPLETE, WashState.RINSING))
+        .link(link(WashState.RINSING, WashEvent.RINSE_COMPLETE, WashState.SPINNING))
+        .link(link(WashState.RUNNING, WashEvent.CANCEL, WashState.CANCELLED))
+        .link(link(WashState.RUNNING, WashEvent.PAUSE, WashState.PAUSED))
+        .link(
+            LinkImpl.<WashState, WashEvent>builder()
+                .sourceState(WashState.SPINNING)
+                .event(WashEvent.CANCEL)
+                .targetState(WashState.SPINNING)
+                .guard(spinLocked::get)
+                .build());
+    return fsm.substate(WashState.WASHING, WashState.RUNNING)
+        .substate(WashState.RINSING, WashState.RUNNING)
+        .substate(WashState.SPINNING, WashState.RUNNING);
+  }
+
+  @Test
+  void shouldInheritTransitionsOfTheParent() {
+    // Given
+    FiniteStateMachine<WashState, WashEvent> fsm = machine();
+    fsm.performEvent(WashEvent.START);
+    fsm.performEvent(WashEvent.WASH_COMPLETE);
+
+    // When
+    WashState state = fsm.performEvent(WashEvent.CANCEL);
+
+    // Then
+    assertThat(state).isEqualTo(WashState.CANCELLED);
+  }
+
+  @Test
+  void shouldInheritTransitionsOnceFrozen() {
+    // Given
+    FiniteStateMachine<WashState, WashEvent> fsm = machine().freeze();
+    fsm.performEvent(WashEvent.START);
+
+    // When/Then
+    assertThat(fsm.getLegalEvents())
+        .containsExactlyInAnyOrder(WashEvent.WASH_COMPLETE, WashEvent.CANCEL, WashEvent.PAUSE);
+    assertThat(fsm.performEvent(WashEvent.PAUSE)).isEqualTo(WashState.PAUSED);
+    assertThat(fsm.tryPerformEvent(WashEvent.CANCEL)).isFalse();
+  }
+
+  @Test
+  void shouldFallBackToTheParentWhenNoGuardOfTheChildPasses() {
+    for (FiniteStateMachine<WashState, WashEvent> fsm : List.of(machine(), machine().freeze())) {
+      // Given
+      fsm.performEvent(WashEvent.START);
+      fsm.performEvent(WashEvent.WASH_COMPLETE);
+      fsm.performEvent(WashEvent.RINSE_COMPLETE);
+
+      // When/Then
+      spinLocked.set(true);
+      assertThat(fsm.performEvent(WashEvent.CANCEL)).isEqualTo(WashState.SPINNING);
+      spinLocked.set(false);
+      assertThat(fsm.performEvent(WashEvent.CANCEL)).isEqualTo(WashState.CANCELLED);
+    }
+  }
+
+  @Test
+  void shouldFlattenNestedStatesOfDefinitions() {
+    // Given
+    StateMachineDefinition<WashState, WashEvent> definition =
+        StateMachineDefinitionImpl.<WashState, WashEvent>builder()
+            .link(link(WashState.WASHING, WashEvent.WASH_COMPLETE, WashState.RINSING))
+            .link(link(WashState.RUNNING, WashEvent.CANCEL, WashState.CANCELLED))
+            .substate(WashState.WASHING, WashState.RUNNING)
+            .substate(WashState.RINSING, WashState.RUNNING)
+            .build();
+
+    // When
+    FiniteStateMachine<WashState, WashEvent> fsm = definition.newInstance(WashState.WASHING);
+    fsm.performEvent(WashEvent.WASH_COMPLETE);
+
+    // Then
+    assertThat(definition.getLegalEvents(WashState.RINSING)).containsExactly(WashEvent.CANCEL);
+    assertThat(fsm.performEvent(WashEvent.CANCEL)).isEqualTo(WashState.CANCELLED);
+  }
+
+  @Test
+  void shouldRejectCyclicNesting() {
+    // Given
+    FiniteStateMachineImpl<WashState, WashEvent> fsm = machine();
+
+    // When/Then
+    assertThatThrownBy(() -> fsm.substate(WashState.RUNNING, WashState.WASHING))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("would contain itself");
+    assertThatThrownBy(() -> fsm.substate(WashState.WASHING, WashState.IDLE))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("already nested in RUNNING");
+    fsm.freeze();
+    assertThatThrownBy(() -> fsm.substate(WashState.PAUSED, WashState.RUNNING))
+        .isInstanceOf(IllegalStateException.class);
+  }
+}
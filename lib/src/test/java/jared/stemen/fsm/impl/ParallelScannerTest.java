@@ -0,0 +1,116 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ParallelScannerTest {
+
+  private enum Parity {
+    EVEN,
+    ODD
+  }
+
+  /** Counts the parity of {@code a}s, ignores {@code b}s and rejects everything else. */
+  private static DfaScanner<Parity> scanner() {
+    return DfaScanner.<Parity>builder()
+        .definition(
+            StateMachineDefinitionImpl.<Parity, Character>builder()
+                .link(link(Parity.EVEN, 'a', Parity.ODD))
+                .link(link(Parity.ODD, 'a', Parity.EVEN))
+                .link(link(Parity.EVEN, 'b', Parity.EVEN))
+                .link(link(Parity.ODD, 'b', Parity.ODD))
+                .build())
+        .initialState(Parity.EVEN)
+        .acceptingState(Parity.EVEN)
+        .build();
+  }
+
+  private static LinkImpl<Parity, Character> link(Parity source, char event, Parity target) {
+    return LinkImpl.<Parity, Character>builder()
+        .sourceState(source)
+        .event(event)
+        .targetState(target)
+        .build();
+  }
+
+  private static ParallelScanner<Parity> parallel(int chunkSize) {
+    return ParallelScanner.<Parity>builder().scanner(scanner()).chunkSize(chunkSize).build();
+  }
+
+  private static String randomInput(int length, long seed) {
+    Random random = new Random(seed);
+    StringBuilder input = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      input.append(random.nextBoolean() ? 'a' : 'b');
+    }
+    return input.toString();
+  }
+
+  private static ByteBuffer bytes(String input) {
+    return ByteBuffer.wrap(input.getBytes(StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  void shouldEndInTheSameStateAsASequentialRun() {
+    for (long seed = 0; seed < 20; seed++) {
+      // Given
+      String input = randomInput(5_000, seed);
+      Parity expected =
+          input.chars().filter(c -> c == 'a').count() % 2 == 0 ? Parity.EVEN : Parity.ODD;
+
+      // When
+      Parity state = parallel(700).finalState(bytes(input));
+
+      // Then
+      assertThat(state).isEqualTo(expected);
+      assertThat(parallel(700).matches(bytes(input))).isEqualTo(scanner().matches(input));
+    }
+  }
+
+  @Test
+  void shouldReportRejectedInput() {
+    // Given
+    String input = randomInput(3_000, 7) + "x" + randomInput(3_000, 8);
+
+    // When/Then
+    assertThat(parallel(500).finalState(bytes(input))).isNull();
+    assertThat(parallel(500).matches(bytes(input))).isFalse();
+  }
+
+  @Test
+  void shouldRunFromTheBufferPosition() {
+    // Given
+    ByteBuffer buffer = bytes("xxaab");
+    buffer.position(2);
+
+    // When/Then
+    assertThat(parallel(2).finalState(buffer)).isEqualTo(Parity.EVEN);
+    assertThat(parallel(2).finalState(buffer.slice(0, 0))).isEqualTo(Parity.EVEN);
+  }
+
+  @Test
+  void shouldRunFiles() throws IOException {
+    // Given
+    Path file = Files.createTempFile("parallel-scanner", ".txt");
+    try {
+      Files.writeString(file, "ab" + randomInput(10_000, 3) + "a", StandardCharsets.ISO_8859_1);
+      String input = Files.readString(file, StandardCharsets.ISO_8859_1);
+
+      // When
+      boolean matches = parallel(1_024).matches(file);
+
+      // Then
+      assertThat(matches).isEqualTo(scanner().matches(input));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
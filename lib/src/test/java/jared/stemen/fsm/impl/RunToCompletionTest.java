@@ -0,0 +1,310 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.ActionFailedException;
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.BatchResult;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.TransitionListener;
+
+class RunToCompletionTest {
+
+  private enum OrderState {
+    NEW,
+    VALIDATED,
+    SHIPPED,
+    LOOPING
+  }
+
+  private enum OrderEvent {
+    VALIDATE,
+    SHIP,
+    LOOP,
+    CANCEL
+  }
+
+  @Test
+  void shouldPerformRaisedEventsAfterTheTransitionCommits() {
+    // Given
+    FiniteStateMachineImpl<OrderState, OrderEvent> fsm =
+        new FiniteStateMachineImpl<>(OrderState.NEW);
+    List<OrderState> observed = new ArrayList<>();
+    List<OrderState> nestedResults = new ArrayList<>();
+    fsm.link(
+            LinkImpl.<OrderState, OrderEvent>builder()
+                .sourceState(OrderState.NEW)
+                .event(OrderEvent.VALIDATE)
+                .targetState(OrderState.VALIDATED)
+                .action(() -> nestedResults.add(fsm.performEvent(OrderEvent.SHIP)))
+                .action(() -> observed.add(fsm.getState()))
+                .build())
+        .link(
+            LinkImpl.<OrderState, OrderEvent>builder()
+                .sourceState(OrderState.VALIDATED)
+                .event(OrderEvent.SHIP)
+                .targetState(OrderState.SHIPPED)
+                .action(() -> observed.add(fsm.getState()))
+                .build());
+
+    // When
+    OrderState result = fsm.performEvent(OrderEvent.VALIDATE);
+
+    // Then
+    assertThat(result).isEqualTo(OrderState.SHIPPED);
+    assertThat(nestedResults).containsExactly(OrderState.NEW);
+    assertThat(observed).containsExactly(OrderState.NEW, OrderState.VALIDATED);
+  }
+
+  @Test
+  void shouldRunLongCascadesWithoutRecursion() {
+    // Given
+    int steps = 200_000;
+    AtomicInteger remaining = new AtomicInteger(steps);
+    AtomicReference<FiniteStateMachine<OrderState, OrderEvent>> machine = new AtomicReference<>();
+    StateMachineDefinition<OrderState, OrderEvent> definition =
+        StateMachineDefinitionImpl.<OrderState, OrderEvent>builder()
+            .link(
+                LinkImpl.<OrderState, OrderEvent>builder()
+                    .sourceState(OrderState.LOOPING)
+                    .event(OrderEvent.LOOP)
+                    .targetState(OrderState.LOOPING)
+                    .action(
+                        () -> {
+                          if (remaining.decrementAndGet() > 0) {
+                            machine.get().performEvent(OrderEvent.LOOP);
+                          }
+                        })
+                    .build())
+            .build();
+    machine.set(definition.newInstance(OrderState.LOOPING));
+
+    // When
+    machine.get().performEvent(OrderEvent.LOOP);
+
+    // Then
+    assertThat(remaining.get()).isZero();
+  }
+
+  @Test
+  void shouldReportRejectedRaisedEventsToTheFailureHandler() {
+    // Given
+    FiniteStateMachineImpl<OrderState, OrderEvent> fsm =
+        new FiniteStateMachineImpl<>(OrderState.NEW);
+    List<String> rejections = new ArrayList<>();
+    List<String> illegalEvents = new ArrayList<>();
+    fsm.setActionFailureHandler(
+        new ActionFailureHandler() {
+          @Override
+          public void onActionFailure(Object state, Object event, Exception exception) {
+            throw new AssertionError("No action failed", exception);
+          }
+
+          @Override
+          public void onRejectedRaisedEvent(
+              Object state, Object event, IllegalStateException exception) {
+            rejections.add(state + " " + event + " " + exception.getMessage());
+          }
+        });
+    fsm.setTransitionListener(
+        new TransitionListener() {
+          @Override
+          public void onTransition(Object source, Object event, Object target, long actionNanos) {}
+
+          @Override
+          public void onIllegalEvent(Object state, Object event) {
+            illegalEvents.add(state + " " + event);
+          }
+        });
+    fsm.link(
+            LinkImpl.<OrderState, OrderEvent>builder()
+                .sourceState(OrderState.NEW)
+                .event(OrderEvent.VALIDATE)
+                .targetState(OrderState.VALIDATED)
+                .action(() -> fsm.performEvent(OrderEvent.CANCEL))
+                .action(() -> fsm.performEvent(OrderEvent.SHIP))
+                .build())
+        .link(
+            LinkImpl.<OrderState, OrderEvent>builder()
+                .sourceState(OrderState.VALIDATED)
+                .event(OrderEvent.SHIP)
+                .targetState(OrderState.SHIPPED)
+                .build());
+
+    // When
+    OrderState result = fsm.performEvent(OrderEvent.VALIDATE);
+
+    // Then
+    assertThat(result).isEqualTo(OrderState.SHIPPED);
+    assertThat(rejections).hasSize(1);
+    assertThat(rejections.get(0))
+        .contains("VALIDATED CANCEL CANCEL is not a legal event for state VALIDATED");
+    assertThat(illegalEvents).containsExactly("VALIDATED CANCEL");
+  }
+
+  @Test
+  void shouldNotCollectRejectedRaisedEventsAsActionFailures() {
+    // Given
+    FiniteStateMachineImpl<OrderState, OrderEvent> fsm =
+        new FiniteStateMachineImpl<>(OrderState.NEW);
+    fsm.setActionFailureHandler(ActionFailureHandlers.collectAndRethrow());
+    IllegalArgumentException failure = new IllegalArgumentException("Cannot ship");
+    fsm.link(
+            LinkImpl.<OrderState, OrderEvent>builder()
+                .sourceState(OrderState.NEW)
+                .event(OrderEvent.VALIDATE)
+                .targetState(OrderState.VALIDATED)
+                .action(() -> fsm.performEvent(OrderEvent.CANCEL))
+                .build())
+        .link(
+            LinkImpl.<OrderState, OrderEvent>builder()
+                .sourceState(OrderState.VALIDATED)
+                .event(OrderEvent.SHIP)
+                .targetState(OrderState.SHIPPED)
+                .action(
+                    () -> {
+                      throw failure;
+                    })
+                .build());
+    fsm.performEvent(OrderEvent.VALIDATE);
+
+    // When
+    ActionFailedException exception = null;
+    try {
+      fsm.performEvent(OrderEvent.SHIP);
+    } catch (ActionFailedException e) {
+      exception = e;
+    }
+
+    // Then
+    assertThat(exception).isNotNull();
+    assertThat(exception.getSuppressed()).containsExactly(failure);
+    assertThat(fsm.getState()).isEqualTo(OrderState.VALIDATED);
+  }
+
+  @Test
+  void shouldLeaveTheMachineUnchangedWhenTheOuterEventIsRejected() {
+    // Given
+    FiniteStateMachineImpl<OrderState, OrderEvent> fsm =
+        new FiniteStateMachineImpl<>(OrderState.NEW);
+    fsm.link(
+        LinkImpl.<OrderState, OrderEvent>builder()
+            .sourceState(OrderState.NEW)
+            .event(OrderEvent.VALIDATE)
+            .targetState(OrderState.VALIDATED)
+            .action(() -> fsm.performEvent(OrderEvent.CANCEL))
+            .build());
+
+    // When
+    boolean performed = fsm.tryPerformEvent(OrderEvent.SHIP);
+    BatchResult<OrderState> batch =
+        fsm.performEvents(new OrderEvent[] {OrderEvent.VALIDATE, OrderEvent.SHIP});
+
+    // Then
+    assertThat(performed).isFalse();
+    assertThat(batch.getRejectedIndex()).isEqualTo(1);
+    assertThat(batch.getState()).isEqualTo(OrderState.VALIDATED);
+  }
+
+  private static StateMachineDefinition<OrderState, OrderEvent> raisingDefinition(
+      Runnable raise, List<OrderState> observed, Supplier<OrderState> state) {
+    return StateMachineDefinitionImpl.<OrderState, OrderEvent>builder()
+        .link(
+            LinkImpl.<OrderState, OrderEvent>builder()
+                .sourceState(OrderState.NEW)
+                .event(OrderEvent.VALIDATE)
+                .targetState(OrderState.VALIDATED)
+                .action(raise)
+                .action(() -> observed.add(state.get()))
+                .build())
+        .link(
+            LinkImpl.<OrderState, OrderEvent>builder()
+                .sourceState(OrderState.VALIDATED)
+                .event(OrderEvent.SHIP)
+                .targetState(OrderState.SHIPPED)
+                .action(() -> observed.add(state.get()))
+                .build())
+        .build();
+  }
+
+  @Test
+  void shouldQueueRaisedEventsInSpecializedMachines() {
+    // Given
+    AtomicReference<FiniteStateMachine<OrderState, OrderEvent>> machine = new AtomicReference<>();
+    List<OrderState> observed = new ArrayList<>();
+    List<OrderState> nestedResults = new ArrayList<>();
+    machine.set(
+        DispatcherCompiler.compile(
+                raisingDefinition(
+                    () -> nestedResults.add(machine.get().performEvent(OrderEvent.SHIP)),
+                    observed,
+                    () -> machine.get().getState()))
+            .newInstance(OrderState.NEW));
+
+    // When
+    OrderState result = machine.get().performEvent(OrderEvent.VALIDATE);
+
+    // Then
+    assertThat(result).isEqualTo(OrderState.SHIPPED);
+    assertThat(nestedResults).containsExactly(OrderState.NEW);
+    assertThat(observed).containsExactly(OrderState.NEW, OrderState.VALIDATED);
+  }
+
+  @Test
+  void shouldQueueRaisedEventsInFleets() {
+    // Given
+    AtomicReference<StateMachineFleetImpl<OrderState, OrderEvent>> fleet = new AtomicReference<>();
+    List<OrderState> observed = new ArrayList<>();
+    List<OrderState> nestedResults = new ArrayList<>();
+    fleet.set(
+        new StateMachineFleetImpl<>(
+            raisingDefinition(
+                () -> nestedResults.add(fleet.get().performEvent(0, OrderEvent.SHIP)),
+                observed,
+                () -> fleet.get().getState(0)),
+            OrderState.NEW,
+            1));
+
+    // When
+    OrderState result = fleet.get().performEvent(0, OrderEvent.VALIDATE);
+
+    // Then
+    assertThat(result).isEqualTo(OrderState.SHIPPED);
+    assertThat(nestedResults).containsExactly(OrderState.NEW);
+    assertThat(observed).containsExactly(OrderState.NEW, OrderState.VALIDATED);
+  }
+
+  @Test
+  void shouldPerformRaisedEventsAtOnceInConcurrentMachines() {
+    // Given
+    AtomicReference<ConcurrentFiniteStateMachine<OrderState, OrderEvent>> machine =
+        new AtomicReference<>();
+    List<OrderState> observed = new ArrayList<>();
+    List<OrderState> nestedResults = new ArrayList<>();
+    machine.set(
+        new ConcurrentFiniteStateMachine<>(
+            raisingDefinition(
+                () -> nestedResults.add(machine.get().performEvent(OrderEvent.SHIP)),
+                observed,
+                () -> machine.get().getState()),
+            OrderState.NEW));
+
+    // When
+    OrderState result = machine.get().performEvent(OrderEvent.VALIDATE);
+
+    // Then
+    assertThat(result).isEqualTo(OrderState.VALIDATED);
+    assertThat(machine.get().getState()).isEqualTo(OrderState.SHIPPED);
+    assertThat(nestedResults).containsExactly(OrderState.SHIPPED);
+    assertThat(observed).containsExactly(OrderState.SHIPPED, OrderState.SHIPPED);
+  }
+}
@@ -0,0 +1,146 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.StateMachineDefinition;
+
+class StateMachineDefinitionImplTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B
+  }
+
+  private enum TestEvent {
+    EVENT_1,
+    EVENT_2
+  }
+
+  private final AtomicInteger counter = new AtomicInteger(0);
+
+  private StateMachineDefinition<TestState, TestEvent> definition() {
+    return StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+        .link(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.STATE_A)
+                .event(TestEvent.EVENT_1)
+                .targetState(TestState.STATE_B)
+                .action(counter::incrementAndGet)
+                .build())
+        .link(
+            LinkImpl.<TestState, TestEvent>builder()
+                .sourceState(TestState.STATE_B)
+                .event(TestEvent.EVENT_2)
+                .targetState(TestState.STATE_A)
+                .build())
+        .build();
+  }
+
+  @Test
+  void shouldShareDefinitionAcrossIndependentInstances() {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> definition = definition();
+    FiniteStateMachine<TestState, TestEvent> first = definition.newInstance(TestState.STATE_A);
+    FiniteStateMachine<TestState, TestEvent> second = definition.newInstance(TestState.STATE_B);
+
+    // When
+    TestState newState = first.performEvent(TestEvent.EVENT_1);
+
+    // Then
+    assertThat(newState).isEqualTo(TestState.STATE_B);
+    assertThat(first.getState()).isEqualTo(TestState.STATE_B);
+    assertThat(second.getState()).isEqualTo(TestState.STATE_B);
+    assertThat(counter.get()).isEqualTo(1);
+    assertThat(second.performEvent(TestEvent.EVENT_2)).isEqualTo(TestState.STATE_A);
+    assertThat(first.getState()).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldRejectIllegalEvents() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> fsm = definition().newInstance(TestState.STATE_A);
+
+    // When/Then
+    assertThatThrownBy(() -> fsm.performEvent(TestEvent.EVENT_2))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining(TestEvent.EVENT_2.toString())
+        .hasMessageContaining(TestState.STATE_A.toString());
+    assertThat(fsm.getState()).isEqualTo(TestState.STATE_A);
+  }
+
+  @Test
+  void shouldRejectDuplicateLinks() {
+    // When/Then
+    assertThatThrownBy(
+            () ->
+                StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+                    .link(
+                        LinkImpl.<TestState, TestEvent>builder()
+                            .sourceState(TestState.STATE_A)
+                            .event(TestEvent.EVENT_1)
+                            .targetState(TestState.STATE_B)
+                            .build())
+                    .link(
+                        LinkImpl.<TestState, TestEvent>builder()
+                            .sourceState(TestState.STATE_A)
+                            .event(TestEvent.EVENT_1)
+                            .targetState(TestState.STATE_A)
+                            .build())
+                    .build())
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining("already linked");
+  }
+
+  @Test
+  void shouldNotAllowLinkingInstances() {
+    // Given
+    FiniteStateMachine<TestState, TestEvent> fsm = definition().newInstance(TestState.STATE_A);
+
+    // When/Then
+    assertThatThrownBy(
+            () ->
+                fsm.link(
+                    LinkImpl.<TestState, TestEvent>builder()
+                        .sourceState(TestState.STATE_B)
+                        .event(TestEvent.EVENT_1)
+                        .targetState(TestState.STATE_A)
+                        .build()))
+        .isInstanceOf(IllegalStateException.class);
+  }
+
+  @Test
+  void shouldExposeLinksAndLegalEvents() {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> definition = definition();
+
+    // When/Then
+    assertThat(definition.getLinks()).hasSize(2);
+    assertThat(definition.getLegalEvents(TestState.STATE_A)).containsExactly(TestEvent.EVENT_1);
+  }
+
+  @Test
+  void shouldSupportNonEnumTypes() {
+    // Given
+    StateMachineDefinition<String, String> definition =
+        StateMachineDefinitionImpl.<String, String>builder()
+            .link(
+                LinkImpl.<String, String>builder()
+                    .sourceState("open")
+                    .event("close")
+                    .targetState("closed")
+                    .build())
+            .build();
+
+    // When
+    FiniteStateMachine<String, String> fsm = definition.newInstance("open");
+
+    // Then
+    assertThat(fsm.performEvent("close")).isEqualTo("closed");
+  }
+}
@@ -0,0 +1,122 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.StateMachineDefinition;
+import jared.stemen.fsm.StateMachineFleet;
+
+class StateMachineFleetImplTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B,
+    STATE_C
+  }
+
+  private enum TestEvent {
+    EVENT_1,
+    EVENT_2
+  }
+
+  private final AtomicInteger counter = new AtomicInteger(0);
+
+  private final StateMachineDefinition<TestState, TestEvent> definition =
+      StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+          .link(
+              LinkImpl.<TestState, TestEvent>builder()
+                  .sourceState(TestState.STATE_B)
+                  .event(TestEvent.EVENT_1)
+                  .targetState(TestState.STATE_C)
+                  .action(counter::incrementAndGet)
+                  .build())
+          .link(
+              LinkImpl.<TestState, TestEvent>builder()
+                  .sourceState(TestState.STATE_C)
+                  .event(TestEvent.EVENT_2)
+                  .targetState(TestState.STATE_A)
+                  .build())
+          .link(
+              LinkImpl.<TestState, TestEvent>builder()
+                  .sourceState(TestState.STATE_A)
+                  .event(TestEvent.EVENT_2)
+                  .targetState(TestState.STATE_B)
+                  .build())
+          .build();
+
+  @Test
+  void shouldStartEveryMachineInInitialState() {
+    // Given
+    StateMachineFleet<TestState, TestEvent> fleet =
+        new StateMachineFleetImpl<>(definition, TestState.STATE_B, 1L << 40);
+
+    // When/Then
+    assertThat(fleet.getCapacity()).isEqualTo(1L << 40);
+    assertThat(fleet.getState(0)).isEqualTo(TestState.STATE_B);
+    assertThat(fleet.getState((1L << 40) - 1)).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldTrackEachMachineIndependently() {
+    // Given
+    StateMachineFleet<TestState, TestEvent> fleet =
+        new StateMachineFleetImpl<>(definition, TestState.STATE_B, 200_000);
+
+    // When
+    TestState first = fleet.performEvent(7, TestEvent.EVENT_1);
+    fleet.performEvent(150_000, TestEvent.EVENT_1);
+    TestState second = fleet.performEvent(150_000, TestEvent.EVENT_2);
+
+    // Then
+    assertThat(first).isEqualTo(TestState.STATE_C);
+    assertThat(second).isEqualTo(TestState.STATE_A);
+    assertThat(fleet.getState(7)).isEqualTo(TestState.STATE_C);
+    assertThat(fleet.getState(8)).isEqualTo(TestState.STATE_B);
+    assertThat(fleet.getState(150_000)).isEqualTo(TestState.STATE_A);
+    assertThat(counter.get()).isEqualTo(2);
+
+    // Returning to the initial state round-trips through the swapped encoding
+    assertThat(fleet.performEvent(150_000, TestEvent.EVENT_2)).isEqualTo(TestState.STATE_B);
+    assertThat(fleet.getState(150_000)).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldRejectIllegalEventsWithoutChangingState() {
+    // Given
+    StateMachineFleet<TestState, TestEvent> fleet =
+        new StateMachineFleetImpl<>(definition, TestState.STATE_B, 10);
+
+    // When/Then
+    assertThatThrownBy(() -> fleet.performEvent(3, TestEvent.EVENT_2))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessageContaining(TestState.STATE_B.toString());
+    assertThat(fleet.getState(3)).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldRejectIdsOutsideOfCapacity() {
+    // Given
+    StateMachineFleet<TestState, TestEvent> fleet =
+        new StateMachineFleetImpl<>(definition, TestState.STATE_B, 10);
+
+    // When/Then
+    assertThatThrownBy(() -> fleet.getState(10)).isInstanceOf(IndexOutOfBoundsException.class);
+    assertThatThrownBy(() -> fleet.performEvent(-1, TestEvent.EVENT_1))
+        .isInstanceOf(IndexOutOfBoundsException.class);
+  }
+
+  @Test
+  void shouldRequireDefinitionCompiledToEnumTable() {
+    // Given
+    StateMachineDefinition<TestState, TestEvent> empty =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder().build();
+
+    // When/Then
+    assertThatThrownBy(() -> new StateMachineFleetImpl<>(empty, TestState.STATE_A, 10))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,94 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+
+  @Test
+  void shouldRunTasksInDeadlineOrderAcrossRounds() throws Exception {
+    // Given
+    List<Integer> fired = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(3);
+
+    // When
+    try (TimingWheel wheel =
+        TimingWheel.builder().tick(Duration.ofMillis(2)).wheelSize(8).build()) {
+      wheel.schedule(() -> record(fired, done, 3), Duration.ofMillis(90));
+      wheel.schedule(() -> record(fired, done, 1), Duration.ofMillis(5));
+      wheel.schedule(() -> record(fired, done, 2), Duration.ofMillis(40));
+
+      // Then
+      assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+    assertThat(fired).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  void shouldNotRunCancelledTasks() throws Exception {
+    // Given
+    List<Integer> fired = new CopyOnWriteArrayList<>();
+    CountDownLatch done = new CountDownLatch(1);
+
+    try (TimingWheel wheel = TimingWheel.builder().tick(Duration.ofMillis(2)).build()) {
+      TimingWheel.Timeout cancelled =
+          wheel.schedule(() -> fired.add(1), Duration.ofMillis(10));
+      wheel.schedule(() -> record(fired, done, 2), Duration.ofMillis(30));
+
+      // When
+      boolean result = cancelled.cancel();
+
+      // Then
+      assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(result).isTrue();
+      assertThat(cancelled.isCancelled()).isTrue();
+      assertThat(cancelled.cancel()).isFalse();
+    }
+    assertThat(fired).containsExactly(2);
+  }
+
+  @Test
+  void shouldNotCancelExpiredTimeouts() throws Exception {
+    // Given
+    CountDownLatch done = new CountDownLatch(1);
+
+    try (TimingWheel wheel = TimingWheel.builder().tick(Duration.ofMillis(2)).build()) {
+      TimingWheel.Timeout timeout = wheel.schedule(done::countDown, Duration.ZERO);
+      assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+
+      // When
+      boolean result = timeout.cancel();
+
+      // Then
+      assertThat(result).isFalse();
+      assertThat(timeout.isExpired()).isTrue();
+    }
+  }
+
+  @Test
+  void shouldRejectSchedulingOnClosedWheel() {
+    // Given
+    TimingWheel wheel = TimingWheel.builder().build();
+
+    // When
+    wheel.close();
+
+    // Then
+    assertThatThrownBy(() -> wheel.schedule(() -> {}, Duration.ofSeconds(1)))
+        .isInstanceOf(IllegalStateException.class)
+        .hasMessage("Timing wheel is closed");
+  }
+
+  private static void record(List<Integer> fired, CountDownLatch done, int value) {
+    fired.add(value);
+    done.countDown();
+  }
+}
@@ -0,0 +1,228 @@
+package jared.stemen.fsm.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.TransitionListener;
+import jared.stemen.fsm.TransitionMetricsSnapshot.TransitionStats;
+
+class TransitionMetricsTest {
+
+  private enum TestState {
+    STATE_A,
+    STATE_B
+  }
+
+  private enum TestEvent {
+    EVENT_1,
+    EVENT_2
+  }
+
+  private static final List<LinkImpl<TestState, TestEvent>> LINKS =
+      List.of(
+          LinkImpl.<TestState, TestEvent>builder()
+              .sourceState(TestState.STATE_A)
+              .event(TestEvent.EVENT_1)
+              .targetState(TestState.STATE_B)
+              .build(),
+          LinkImpl.<TestState, TestEvent>builder()
+              .sourceState(TestState.STATE_B)
+              .event(TestEvent.EVENT_2)
+              .targetState(TestState.STATE_A)
+              .build());
+
+  private static FiniteStateMachine<TestState, TestEvent> machine(TransitionListener listener) {
+    return StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+        .links(LINKS)
+        .transitionListener(listener)
+        .build()
+        .newInstance(TestState.STATE_A);
+  }
+
+  private static long countFrom(List<TransitionStats> transitions, TestState source) {
+    return transitions.stream()
+        .filter(stats -> stats.getSource() == source)
+        .mapToLong(TransitionStats::getCount)
+        .sum();
+  }
+
+  @Test
+  void shouldCountTransitionsAndIllegalEvents() {
+    // Given
+    TransitionMetrics metrics = new TransitionMetrics();
+    FiniteStateMachine<TestState, TestEvent> fsm = machine(metrics);
+
+    // When
+    fsm.performEvent(TestEvent.EVENT_1);
+    fsm.performEvent(TestEvent.EVENT_2);
+    fsm.performEvent(TestEvent.EVENT_1);
+    fsm.tryPerformEvent(TestEvent.EVENT_1);
+    assertThatThrownBy(() -> fsm.performEvent(TestEvent.EVENT_1))
+        .isInstanceOf(IllegalStateException.class);
+
+    // Then
+    var snapshot = metrics.snapshot();
+    assertThat(snapshot.getTransitionCount()).isEqualTo(3);
+    assertThat(snapshot.getTransitions()).hasSize(2);
+    assertThat(countFrom(snapshot.getTransitions(), TestState.STATE_A)).isEqualTo(2);
+    assertThat(countFrom(snapshot.getTransitions(), TestState.STATE_B)).isEqualTo(1);
+    assertThat(snapshot.getIllegalEventCount()).isEqualTo(2);
+    assertThat(snapshot.getIllegalEvents()).hasSize(1);
+    assertThat(snapshot.getIllegalEvents().get(0).getState()).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldNotifyListenerOfStandaloneMachine() {
+    // Given
+    List<Object> targets = new ArrayList<>();
+    FiniteStateMachineImpl<TestState, TestEvent> fsm =
+        new FiniteStateMachineImpl<>(TestState.STATE_A);
+    LINKS.forEach(fsm::link);
+    fsm.setTransitionListener((source, event, target, actionNanos) -> targets.add(target));
+
+    // When
+    fsm.performEvents(List.of(TestEvent.EVENT_1, TestEvent.EVENT_2));
+
+    // Then
+    assertThat(targets).containsExactly(TestState.STATE_B, TestState.STATE_A);
+  }
+
+  @Test
+  void shouldNotifyCombinedListenersInOrder() {
+    // Given
+    TransitionMetrics metrics = new TransitionMetrics();
+    List<Object> notified = new ArrayList<>();
+    TransitionListener logging =
+        new TransitionListener() {
+          @Override
+          public void onTransition(Object source, Object event, Object target, long actionNanos) {
+            notified.add(target);
+          }
+
+          @Override
+          public void onIllegalEvent(Object state, Object event) {
+            notified.add(event);
+          }
+        };
+    FiniteStateMachine<TestState, TestEvent> fsm = machine(logging.andThen(metrics));
+
+    // When
+    fsm.performEvent(TestEvent.EVENT_1);
+    fsm.tryPerformEvent(TestEvent.EVENT_1);
+
+    // Then
+    assertThat(notified).containsExactly(TestState.STATE_B, TestEvent.EVENT_1);
+    assertThat(metrics.snapshot().getTransitionCount()).isEqualTo(1);
+    assertThat(metrics.snapshot().getIllegalEventCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldKeepTransitionsWhenTheListenerThrows() {
+    // Given
+    List<Object> statesSeen = new ArrayList<>();
+    FiniteStateMachineImpl<TestState, TestEvent> fsm =
+        new FiniteStateMachineImpl<>(TestState.STATE_A);
+    LINKS.forEach(fsm::link);
+    fsm.setTransitionListener(
+        (source, event, target, actionNanos) -> {
+          statesSeen.add(fsm.getState());
+          throw new IllegalStateException("Journal is full");
+        });
+    StateMachineFleetImpl<TestState, TestEvent> fleet =
+        new StateMachineFleetImpl<>(
+            StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+                .links(LINKS)
+                .transitionListener(
+                    (source, event, target, actionNanos) -> {
+                      throw new IllegalStateException("Journal is full");
+                    })
+                .build(),
+            TestState.STATE_A,
+            1);
+
+    // When
+    assertThatThrownBy(() -> fsm.performEvent(TestEvent.EVENT_1)).hasMessage("Journal is full");
+    assertThatThrownBy(() -> fleet.performEvent(0, TestEvent.EVENT_1))
+        .hasMessage("Journal is full");
+
+    // Then
+    assertThat(statesSeen).containsExactly(TestState.STATE_B);
+    assertThat(fsm.getState()).isEqualTo(TestState.STATE_B);
+    assertThat(fleet.getState(0)).isEqualTo(TestState.STATE_B);
+  }
+
+  @Test
+  void shouldRecordConcurrentTransitions() {
+    // Given
+    TransitionMetrics metrics = new TransitionMetrics();
+    var definition =
+        StateMachineDefinitionImpl.<TestState, TestEvent>builder()
+            .links(LINKS)
+            .transitionListener(metrics)
+            .build();
+    var fsm = new ConcurrentFiniteStateMachine<>(definition, TestState.STATE_A);
+
+    // When
+    fsm.performEvent(TestEvent.EVENT_1);
+    fsm.tryPerformEvent(TestEvent.EVENT_1);
+
+    // Then
+    var snapshot = metrics.snapshot();
+    assertThat(snapshot.getTransitionCount()).isEqualTo(1);
+    assertThat(snapshot.getIllegalEventCount()).isEqualTo(1);
+  }
+
+  @Test
+  void shouldSummarizeLatencies() {
+    // Given
+    LatencyHistogram histogram = new LatencyHistogram();
+
+    // When
+    for (long nanos = 1; nanos <= 1000; nanos++) {
+      histogram.record(nanos * 1000);
+    }
+
+    // Then
+    var stats = histogram.snapshot();
+    assertThat(stats.getCount()).isEqualTo(1000);
+    assertThat(stats.getMinNanos()).isEqualTo(1000);
+    assertThat(stats.getMaxNanos()).isEqualTo(1_000_000);
+    assertThat(stats.getMeanNanos()).isEqualTo(500_500.0);
+    assertThat(stats.getP50Nanos()).isBetween(500_000L, 515_000L);
+    assertThat(stats.getP99Nanos()).isBetween(990_000L, 1_000_000L);
+  }
+
+  @Test
+  void shouldMapEveryValueToBucketContainingIt() {
+    // Given
+    long[] values = {0, 1, 63, 64, 65, 127, 128, 1_000_003, Long.MAX_VALUE};
+
+    // When / Then
+    for (long value : values) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertThat(LatencyHistogram.highestValueIn(index)).isGreaterThanOrEqualTo(value);
+      if (index > 0) {
+        assertThat(LatencyHistogram.highestValueIn(index - 1)).isLessThan(value);
+      }
+    }
+  }
+
+  @Test
+  void shouldForgetMetricsOnReset() {
+    // Given
+    TransitionMetrics metrics = new TransitionMetrics();
+    machine(metrics).performEvent(TestEvent.EVENT_1);
+
+    // When
+    metrics.reset();
+
+    // Then
+    assertThat(metrics.snapshot().getTransitions()).isEmpty();
+  }
+}
@@ -0,0 +1,55 @@
+plugins {
+    // The annotation processor generating FSMs from @StateMachine enums.
+    `java-library`
+    id("com.diffplug.spotless") version "6.25.0"
+    jacoco
+}
+
+java {
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(21)
+    }
+}
+
+repositories {
+    // Use Maven Central for resolving dependencies.
+    mavenCentral()
+}
+
+val assertjVersion = "3.25.+"
+
+dependencies {
+    // The processor reads the annotations by name, so the library is only needed to compile the
+    // generated sources in tests.
+    testImplementation(project(":lib"))
+    testImplementation(libs.junit.jupiter)
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    testImplementation("org.assertj:assertj-core:$assertjVersion")
+}
+
+dependencyLocking {
+    lockAllConfigurations()
+}
+
+tasks.test {
+    useJUnitPlatform()
+    finalizedBy(tasks.jacocoTestReport)
+}
+
+// Configure JaCoCo Test Report
+tasks.jacocoTestReport {
+    dependsOn(tasks.test)
+    reports {
+        xml.required.set(true)
+        html.required.set(true)
+    }
+}
+
+// Spotless configuration with Google Java Format
+spotless {
+    java {
+        googleJavaFormat()
+        importOrder("java", "javax", "org", "com", "")
+        removeUnusedImports()
+    }
+}
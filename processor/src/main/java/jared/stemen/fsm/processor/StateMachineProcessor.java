@@ -0,0 +1,459 @@
+package jared.stemen.fsm.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates a switch-based {@code FiniteStateMachine} for every enum annotated with {@code
+ * jared.stemen.fsm.annotation.StateMachine}.
+ *
+ * <p>Annotations are read by name, so the processor does not depend on the library at runtime. The
+ * generated class only uses the library's public API, so its constructors take the {@code
+ * ActionFailureHandler} instead of defaulting to one of the library's implementations, and
+ * optionally a {@code TransitionListener} notified like the listener of a definition.
+ *
+ * <p>Generated machines process events with the same run-to-completion semantics as the library's
+ * {@code FiniteStateMachineImpl}: an event performed by an action is queued and performed once the
+ * running transition has committed.
+ */
+@SupportedAnnotationTypes(StateMachineProcessor.STATE_MACHINE)
+public class StateMachineProcessor extends AbstractProcessor {
+  static final String STATE_MACHINE = "jared.stemen.fsm.annotation.StateMachine";
+  private static final String TRANSITION = "jared.stemen.fsm.annotation.Transition";
+  private static final String TRANSITIONS = "jared.stemen.fsm.annotation.Transitions";
+
+  /** A transition declared on a state constant. */
+  private record TransitionModel(
+      AnnotationMirror mirror, String event, String target, List<String> actions) {}
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for (TypeElement annotation : annotations) {
+      for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+        AnnotationMirror mirror = mirror(element, STATE_MACHINE);
+        if (element.getKind() != ElementKind.ENUM) {
+          error("@StateMachine can only annotate an enum", element, mirror);
+        } else {
+          process((TypeElement) element, mirror);
+        }
+      }
+    }
+    return true;
+  }
+
+  private void process(TypeElement states, AnnotationMirror stateMachine) {
+    Element eventsElement =
+        ((DeclaredType) (TypeMirror) value(stateMachine, "events").getValue()).asElement();
+    if (eventsElement.getKind() != ElementKind.ENUM) {
+      error("The events of a @StateMachine must be an enum", states, stateMachine);
+      return;
+    }
+    TypeElement events = (TypeElement) eventsElement;
+    if (!accessible(states) || !accessible(events)) {
+      error(
+          "The state and event enums of a @StateMachine must not be private", states, stateMachine);
+      return;
+    }
+    List<String> stateNames = constants(states);
+    Set<String> eventNames = new HashSet<>(constants(events));
+
+    boolean valid = true;
+    Map<String, List<TransitionModel>> transitions = new LinkedHashMap<>();
+    for (Element constant : states.getEnclosedElements()) {
+      if (constant.getKind() != ElementKind.ENUM_CONSTANT) {
+        continue;
+      }
+      List<TransitionModel> outgoing = new ArrayList<>();
+      Set<String> linkedEvents = new HashSet<>();
+      for (TransitionModel transition : transitions(constant)) {
+        if (!eventNames.contains(transition.event())) {
+          error(
+              "Unknown event %s, %s has no such constant"
+                  .formatted(transition.event(), events.getSimpleName()),
+              constant,
+              transition.mirror());
+          valid = false;
+        } else if (!linkedEvents.add(transition.event())) {
+          error(
+              "Event %s already linked to state %s".formatted(transition.event(), constant),
+              constant,
+              transition.mirror());
+          valid = false;
+        }
+        if (!stateNames.contains(transition.target())) {
+          error(
+              "Unknown target state %s, %s has no such constant"
+                  .formatted(transition.target(), states.getSimpleName()),
+              constant,
+              transition.mirror());
+          valid = false;
+        }
+        for (String action : transition.actions()) {
+          if (!SourceVersion.isIdentifier(action) || SourceVersion.isKeyword(action)) {
+            error(
+                "Action %s is not a valid method name".formatted(action),
+                constant,
+                transition.mirror());
+            valid = false;
+          }
+        }
+        outgoing.add(transition);
+      }
+      transitions.put(constant.getSimpleName().toString(), outgoing);
+    }
+
+    Set<String> terminal = new HashSet<>();
+    for (AnnotationValue value : values(value(stateMachine, "terminal"))) {
+      String name = (String) value.getValue();
+      if (!stateNames.contains(name)) {
+        error("Unknown terminal state %s".formatted(name), states, stateMachine);
+        valid = false;
+      }
+      terminal.add(name);
+    }
+    for (Map.Entry<String, List<TransitionModel>> entry : transitions.entrySet()) {
+      if (entry.getValue().isEmpty() && !terminal.contains(entry.getKey())) {
+        error(
+            "State %s has no transition, link it or list it as terminal".formatted(entry.getKey()),
+            states,
+            stateMachine);
+        valid = false;
+      }
+    }
+
+    if (valid) {
+      String name = (String) value(stateMachine, "name").getValue();
+      if (name.isEmpty()) {
+        name = states.getSimpleName() + "Machine";
+      }
+      write(states, events, name, transitions);
+    }
+  }
+
+  private List<TransitionModel> transitions(Element constant) {
+    List<TransitionModel> transitions = new ArrayList<>();
+    for (AnnotationMirror mirror : constant.getAnnotationMirrors()) {
+      if (is(mirror, TRANSITION)) {
+        transitions.add(transition(mirror));
+      } else if (is(mirror, TRANSITIONS)) {
+        for (AnnotationValue value : values(value(mirror, "value"))) {
+          transitions.add(transition((AnnotationMirror) value.getValue()));
+        }
+      }
+    }
+    return transitions;
+  }
+
+  private TransitionModel transition(AnnotationMirror mirror) {
+    List<String> actions = new ArrayList<>();
+    for (AnnotationValue action : values(value(mirror, "actions"))) {
+      actions.add((String) action.getValue());
+    }
+    return new TransitionModel(
+        mirror,
+        (String) value(mirror, "event").getValue(),
+        (String) value(mirror, "target").getValue(),
+        actions);
+  }
+
+  private void write(
+      TypeElement states,
+      TypeElement events,
+      String name,
+      Map<String, List<TransitionModel>> transitions) {
+    String packageName =
+        processingEnv.getElementUtils().getPackageOf(states).getQualifiedName().toString();
+    String state = states.getQualifiedName().toString();
+    String event = events.getQualifiedName().toString();
+    Set<String> actionNames = new LinkedHashSet<>();
+    transitions.values().forEach(list -> list.forEach(t -> actionNames.addAll(t.actions())));
+
+    StringBuilder out = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      out.append("package ").append(packageName).append(";\n\n");
+    }
+    out.append("@javax.annotation.processing.Generated(\"")
+        .append(StateMachineProcessor.class.getName())
+        .append("\")\n");
+    out.append("public final class ")
+        .append(name)
+        .append(" implements jared.stemen.fsm.FiniteStateMachine<")
+        .append(state)
+        .append(", ")
+        .append(event)
+        .append("> {\n");
+
+    out.append("  /** The actions run by the transitions of this machine. */\n");
+    out.append("  public interface Actions {\n");
+    for (String action : actionNames) {
+      out.append("    default void ").append(action).append("() {}\n");
+    }
+    out.append("  }\n\n");
+
+    for (Map.Entry<String, List<TransitionModel>> entry : transitions.entrySet()) {
+      out.append("  private static final java.util.Set<")
+          .append(event)
+          .append("> ")
+          .append(entry.getKey())
+          .append("_EVENTS =\n      java.util.Collections.unmodifiableSet(");
+      if (entry.getValue().isEmpty()) {
+        out.append("java.util.EnumSet.noneOf(").append(event).append(".class));\n");
+      } else {
+        out.append("java.util.EnumSet.of(");
+        for (int i = 0; i < entry.getValue().size(); i++) {
+          out.append(i == 0 ? "" : ", ")
+              .append(event)
+              .append('.')
+              .append(entry.getValue().get(i).event());
+        }
+        out.append("));\n");
+      }
+    }
+    out.append("\n  private final Actions actions;\n");
+    out.append("  private final jared.stemen.fsm.ActionFailureHandler failureHandler;\n");
+    out.append("  private final jared.stemen.fsm.TransitionListener listener;\n");
+    out.append("  private ").append(state).append(" state;\n");
+    out.append("  private boolean dispatching;\n");
+    out.append("  private java.util.ArrayDeque<").append(event).append("> raised;\n\n");
+
+    out.append("  public ")
+        .append(name)
+        .append("(\n      ")
+        .append(state)
+        .append(" initialState, jared.stemen.fsm.ActionFailureHandler failureHandler) {\n");
+    out.append("    this(initialState, new Actions() {}, failureHandler);\n  }\n\n");
+    out.append("  public ")
+        .append(name)
+        .append("(\n      ")
+        .append(state)
+        .append(" initialState,\n      Actions actions,\n")
+        .append("      jared.stemen.fsm.ActionFailureHandler failureHandler) {\n");
+    out.append("    this(initialState, actions, failureHandler, null);\n  }\n\n");
+    out.append("  public ")
+        .append(name)
+        .append("(\n      ")
+        .append(state)
+        .append(" initialState,\n      Actions actions,\n")
+        .append("      jared.stemen.fsm.ActionFailureHandler failureHandler,\n")
+        .append("      jared.stemen.fsm.TransitionListener listener) {\n");
+    out.append("    this.state = java.util.Objects.requireNonNull(initialState, \"state\");\n");
+    out.append("    this.actions = java.util.Objects.requireNonNull(actions, \"actions\");\n");
+    out.append(
+        "    this.failureHandler =\n"
+            + "        java.util.Objects.requireNonNull(failureHandler, \"failureHandler\");\n");
+    out.append("    this.listener = listener;\n  }\n\n");
+
+    String machine = "jared.stemen.fsm.FiniteStateMachine<" + state + ", " + event + ">";
+    out.append("  @Override\n  public ")
+        .append(machine)
+        .append(" link(\n      jared.stemen.fsm.Link<")
+        .append(state)
+        .append(", ")
+        .append(event)
+        .append("> link) {\n")
+        .append("    throw new IllegalStateException(\n")
+        .append("        String.format(\n")
+        .append("            \"Cannot link event %s to state %s, the FSM was generated at compile")
+        .append(" time\",\n")
+        .append("            link.getEvent(), link.getSourceState()));\n  }\n\n");
+    out.append("  @Override\n  public ").append(machine).append(" freeze() {\n");
+    out.append("    return this;\n  }\n\n");
+    out.append("  @Override\n  public ").append(state).append(" getState() {\n");
+    out.append("    return state;\n  }\n\n");
+
+    out.append("  @Override\n  public java.util.Set<")
+        .append(event)
+        .append("> getLegalEvents() {\n");
+    out.append("    switch (state) {\n");
+    for (String source : transitions.keySet()) {
+      out.append("      case ").append(source).append(":\n");
+      out.append("        return ").append(source).append("_EVENTS;\n");
+    }
+    out.append("      default:\n        throw new AssertionError(state);\n    }\n  }\n\n");
+
+    out.append("  @Override\n  public ")
+        .append(state)
+        .append(" performEvent(")
+        .append(event)
+        .append(" event) {\n");
+    out.append("    if (!tryPerformEvent(event)) {\n");
+    out.append("      throw illegalEvent(event);\n    }\n");
+    out.append("    return state;\n  }\n\n");
+
+    out.append("  @Override\n  public boolean tryPerformEvent(")
+        .append(event)
+        .append(" event) {\n");
+    out.append("    if (event == null) {\n      return false;\n    }\n");
+    out.append("    if (dispatching) {\n");
+    out.append("      if (raised == null) {\n");
+    out.append("        raised = new java.util.ArrayDeque<>();\n      }\n");
+    out.append("      raised.add(event);\n      return true;\n    }\n");
+    out.append("    dispatching = true;\n    try {\n");
+    out.append("      if (!dispatch(event)) {\n");
+    out.append("        if (listener != null) {\n");
+    out.append("          listener.onIllegalEvent(state, event);\n        }\n");
+    out.append("        return false;\n      }\n");
+    out.append("      for (")
+        .append(event)
+        .append(" next; raised != null && (next = raised.poll()) != null; ) {\n");
+    out.append("        if (!dispatch(next)) {\n");
+    out.append("          if (listener != null) {\n");
+    out.append("            listener.onIllegalEvent(state, next);\n          }\n");
+    out.append(
+        "          failureHandler.onRejectedRaisedEvent(state, next, illegalEvent(next));\n");
+    out.append("        }\n      }\n      return true;\n");
+    out.append("    } finally {\n      dispatching = false;\n");
+    out.append("      if (raised != null) {\n        raised.clear();\n      }\n    }\n  }\n\n");
+
+    out.append("  private IllegalStateException illegalEvent(")
+        .append(event)
+        .append(" event) {\n");
+    out.append("    return new IllegalStateException(\n");
+    out.append("        String.format(\n");
+    out.append(
+        "            \"%s is not a legal event for state %s legal events for this state are:"
+            + " %s\",\n");
+    out.append("            event, state, getLegalEvents()));\n  }\n\n");
+
+    out.append("  private boolean dispatch(").append(event).append(" event) {\n");
+    out.append("    switch (state) {\n");
+    for (Map.Entry<String, List<TransitionModel>> entry : transitions.entrySet()) {
+      if (entry.getValue().isEmpty()) {
+        continue;
+      }
+      out.append("      case ").append(entry.getKey()).append(":\n");
+      out.append("        switch (event) {\n");
+      for (TransitionModel transition : entry.getValue()) {
+        out.append("          case ").append(transition.event()).append(":\n");
+        out.append("            {\n");
+        out.append("              long start = listener == null ? 0 : System.nanoTime();\n");
+        if (!transition.actions().isEmpty()) {
+          out.append("              boolean failed = false;\n");
+          for (String action : transition.actions()) {
+            out.append("              try {\n");
+            out.append("                actions.").append(action).append("();\n");
+            out.append("              } catch (Exception e) {\n");
+            out.append("                failed = true;\n");
+            out.append("                failureHandler.onActionFailure(state, event, e);\n");
+            out.append("              }\n");
+          }
+          out.append("              if (failed) {\n");
+          out.append("                failureHandler.afterFailedActions(state, event);\n");
+          out.append("              }\n");
+        }
+        out.append("              state = ")
+            .append(state)
+            .append('.')
+            .append(transition.target())
+            .append(";\n");
+        out.append("              return transitioned(")
+            .append(state)
+            .append('.')
+            .append(entry.getKey())
+            .append(", event, start);\n");
+        out.append("            }\n");
+      }
+      out.append("          default:\n            return false;\n        }\n");
+    }
+    out.append("      default:\n        return false;\n    }\n  }\n\n");
+
+    out.append("  private boolean transitioned(")
+        .append(state)
+        .append(" source, ")
+        .append(event)
+        .append(" event, long start) {\n");
+    out.append("    if (listener != null) {\n");
+    out.append(
+        "      listener.onTransition(source, event, state, System.nanoTime() - start);\n");
+    out.append("    }\n    return true;\n  }\n}\n");
+
+    String qualifiedName = packageName.isEmpty() ? name : packageName + "." + name;
+    try (Writer writer =
+        processingEnv.getFiler().createSourceFile(qualifiedName, states).openWriter()) {
+      writer.write(out.toString());
+    } catch (IOException e) {
+      error("Cannot write %s: %s".formatted(qualifiedName, e.getMessage()), states, null);
+    }
+  }
+
+  private static boolean accessible(Element type) {
+    for (Element element = type;
+        element.getKind().isClass() || element.getKind().isInterface();
+        element = element.getEnclosingElement()) {
+      if (element.getModifiers().contains(Modifier.PRIVATE)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static List<String> constants(TypeElement type) {
+    List<String> constants = new ArrayList<>();
+    for (Element element : type.getEnclosedElements()) {
+      if (element.getKind() == ElementKind.ENUM_CONSTANT) {
+        constants.add(element.getSimpleName().toString());
+      }
+    }
+    return constants;
+  }
+
+  private static AnnotationMirror mirror(Element element, String type) {
+    for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+      if (is(mirror, type)) {
+        return mirror;
+      }
+    }
+    return null;
+  }
+
+  private static boolean is(AnnotationMirror mirror, String type) {
+    return ((TypeElement) mirror.getAnnotationType().asElement())
+        .getQualifiedName()
+        .contentEquals(type);
+  }
+
+  private AnnotationValue value(AnnotationMirror mirror, String name) {
+    for (Map.Entry<? extends Element, ? extends AnnotationValue> entry :
+        processingEnv.getElementUtils().getElementValuesWithDefaults(mirror).entrySet()) {
+      if (entry.getKey().getSimpleName().contentEquals(name)) {
+        return entry.getValue();
+      }
+    }
+    throw new IllegalArgumentException("No attribute " + name);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<? extends AnnotationValue> values(AnnotationValue value) {
+    return (List<? extends AnnotationValue>) value.getValue();
+  }
+
+  private void error(String message, Element element, AnnotationMirror mirror) {
+    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element, mirror);
+  }
+}
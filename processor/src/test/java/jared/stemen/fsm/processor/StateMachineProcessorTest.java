@@ -0,0 +1,351 @@
+package jared.stemen.fsm.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jared.stemen.fsm.ActionFailureHandler;
+import jared.stemen.fsm.FiniteStateMachine;
+import jared.stemen.fsm.TransitionListener;
+import jared.stemen.fsm.impl.ActionFailureHandlers;
+
+class StateMachineProcessorTest {
+
+  private static final String EVENTS =
+      """
+      package door;
+
+      public enum DoorEvent {
+        OPEN_DOOR,
+        CLOSE_DOOR,
+        LOCK_DOOR,
+        UNLOCK_DOOR
+      }
+      """;
+
+  private static final String STATES =
+      """
+      package door;
+
+      import jared.stemen.fsm.annotation.StateMachine;
+      import jared.stemen.fsm.annotation.Transition;
+
+      @StateMachine(events = DoorEvent.class)
+      public enum DoorState {
+        @Transition(event = "CLOSE_DOOR", target = "CLOSED", actions = "closing")
+        OPEN,
+        @Transition(event = "OPEN_DOOR", target = "OPEN")
+        @Transition(event = "LOCK_DOOR", target = "LOCKED", actions = {"closing", "locking"})
+        CLOSED,
+        @Transition(event = "UNLOCK_DOOR", target = "CLOSED")
+        LOCKED
+      }
+      """;
+
+  private Path directory;
+  private final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+
+  @BeforeEach
+  void setUp() throws IOException {
+    directory = Files.createTempDirectory("processor");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private boolean compile(String... sources) throws IOException {
+    List<Path> files = new ArrayList<>();
+    for (String source : sources) {
+      String name = source.replaceAll("(?s).*public enum (\\w+).*", "$1");
+      Path file = directory.resolve(name + ".java");
+      Files.writeString(file, source);
+      files.add(file);
+    }
+    var compiler = ToolProvider.getSystemJavaCompiler();
+    try (var fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+      var task =
+          compiler.getTask(
+              null,
+              fileManager,
+              diagnostics,
+              List.of(
+                  "-d",
+                  directory.toString(),
+                  "-s",
+                  directory.toString(),
+                  "-classpath",
+                  System.getProperty("java.class.path")),
+              null,
+              fileManager.getJavaFileObjectsFromPaths(files));
+      task.setProcessors(List.of(new StateMachineProcessor()));
+      return task.call();
+    }
+  }
+
+  private List<String> errors() {
+    return diagnostics.getDiagnostics().stream()
+        .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+        .map(diagnostic -> diagnostic.getMessage(null))
+        .toList();
+  }
+
+  @Test
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  void shouldGenerateWorkingMachine() throws Exception {
+    // Given
+    assertThat(compile(EVENTS, STATES)).isTrue();
+
+    try (var loader =
+        new URLClassLoader(
+            new URL[] {directory.toUri().toURL()}, getClass().getClassLoader())) {
+      Class<? extends Enum> states = (Class<? extends Enum>) loader.loadClass("door.DoorState");
+      Class<? extends Enum> events = (Class<? extends Enum>) loader.loadClass("door.DoorEvent");
+      FiniteStateMachine fsm =
+          (FiniteStateMachine)
+              loader
+                  .loadClass("door.DoorStateMachine")
+                  .getConstructor(states, ActionFailureHandler.class)
+                  .newInstance(Enum.valueOf(states, "OPEN"), ActionFailureHandlers.logging());
+
+      // When
+      fsm.performEvent(Enum.valueOf(events, "CLOSE_DOOR"));
+      Object state = fsm.performEvent(Enum.valueOf(events, "LOCK_DOOR"));
+
+      // Then
+      assertThat(state).isEqualTo(Enum.valueOf(states, "LOCKED"));
+      assertThat(fsm.getLegalEvents()).isEqualTo(Set.of(Enum.valueOf(events, "UNLOCK_DOOR")));
+      assertThat(fsm.tryPerformEvent(Enum.valueOf(events, "OPEN_DOOR"))).isFalse();
+      assertThatThrownBy(() -> fsm.performEvent(Enum.valueOf(events, "OPEN_DOOR")))
+          .isInstanceOf(IllegalStateException.class)
+          .hasMessageContaining("is not a legal event for state LOCKED");
+    }
+  }
+
+  @Test
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  void shouldQueueEventsPerformedByActions() throws Exception {
+    // Given
+    assertThat(compile(EVENTS, STATES)).isTrue();
+
+    try (var loader =
+        new URLClassLoader(
+            new URL[] {directory.toUri().toURL()}, getClass().getClassLoader())) {
+      Class<? extends Enum> states = (Class<? extends Enum>) loader.loadClass("door.DoorState");
+      Class<? extends Enum> events = (Class<? extends Enum>) loader.loadClass("door.DoorEvent");
+      Class<?> actionsType = loader.loadClass("door.DoorStateMachine$Actions");
+      AtomicReference<FiniteStateMachine> machine = new AtomicReference<>();
+      List<Object> nestedResults = new ArrayList<>();
+      Object actions =
+          Proxy.newProxyInstance(
+              loader,
+              new Class<?>[] {actionsType},
+              (proxy, method, args) -> {
+                if (method.getName().equals("closing") && nestedResults.isEmpty()) {
+                  nestedResults.add(
+                      machine.get().performEvent(Enum.valueOf(events, "LOCK_DOOR")));
+                }
+                return null;
+              });
+      machine.set(
+          (FiniteStateMachine)
+              loader
+                  .loadClass("door.DoorStateMachine")
+                  .getConstructor(states, actionsType, ActionFailureHandler.class)
+                  .newInstance(
+                      Enum.valueOf(states, "OPEN"), actions, ActionFailureHandlers.logging()));
+
+      // When
+      Object state = machine.get().performEvent(Enum.valueOf(events, "CLOSE_DOOR"));
+
+      // Then
+      assertThat(state).isEqualTo(Enum.valueOf(states, "LOCKED"));
+      assertThat(nestedResults).containsExactly(Enum.valueOf(states, "OPEN"));
+    }
+  }
+
+  @Test
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  void shouldReportRejectedRaisedEventsToTheFailureHandler() throws Exception {
+    // Given
+    assertThat(compile(EVENTS, STATES)).isTrue();
+
+    try (var loader =
+        new URLClassLoader(
+            new URL[] {directory.toUri().toURL()}, getClass().getClassLoader())) {
+      Class<? extends Enum> states = (Class<? extends Enum>) loader.loadClass("door.DoorState");
+      Class<? extends Enum> events = (Class<? extends Enum>) loader.loadClass("door.DoorEvent");
+      Class<?> actionsType = loader.loadClass("door.DoorStateMachine$Actions");
+      AtomicReference<FiniteStateMachine> machine = new AtomicReference<>();
+      List<String> rejections = new ArrayList<>();
+      Object actions =
+          Proxy.newProxyInstance(
+              loader,
+              new Class<?>[] {actionsType},
+              (proxy, method, args) -> {
+                machine.get().performEvent(Enum.valueOf(events, "UNLOCK_DOOR"));
+                return null;
+              });
+      ActionFailureHandler failureHandler =
+          new ActionFailureHandler() {
+            @Override
+            public void onActionFailure(Object state, Object event, Exception exception) {
+              throw new AssertionError("No action failed", exception);
+            }
+
+            @Override
+            public void onRejectedRaisedEvent(
+                Object state, Object event, IllegalStateException exception) {
+              rejections.add(state + " " + event);
+            }
+          };
+      machine.set(
+          (FiniteStateMachine)
+              loader
+                  .loadClass("door.DoorStateMachine")
+                  .getConstructor(states, actionsType, ActionFailureHandler.class)
+                  .newInstance(Enum.valueOf(states, "OPEN"), actions, failureHandler));
+
+      // When
+      Object state = machine.get().performEvent(Enum.valueOf(events, "CLOSE_DOOR"));
+
+      // Then
+      assertThat(state).isEqualTo(Enum.valueOf(states, "CLOSED"));
+      assertThat(rejections).containsExactly("CLOSED UNLOCK_DOOR");
+    }
+  }
+
+  @Test
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  void shouldNotifyTheTransitionListener() throws Exception {
+    // Given
+    assertThat(compile(EVENTS, STATES)).isTrue();
+
+    try (var loader =
+        new URLClassLoader(
+            new URL[] {directory.toUri().toURL()}, getClass().getClassLoader())) {
+      Class<? extends Enum> states = (Class<? extends Enum>) loader.loadClass("door.DoorState");
+      Class<? extends Enum> events = (Class<? extends Enum>) loader.loadClass("door.DoorEvent");
+      Class<?> actionsType = loader.loadClass("door.DoorStateMachine$Actions");
+      Object actions =
+          Proxy.newProxyInstance(
+              loader, new Class<?>[] {actionsType}, (proxy, method, args) -> null);
+      List<String> notifications = new ArrayList<>();
+      TransitionListener listener =
+          new TransitionListener() {
+            @Override
+            public void onTransition(
+                Object source, Object event, Object target, long actionNanos) {
+              notifications.add(source + " " + event + " " + target);
+            }
+
+            @Override
+            public void onIllegalEvent(Object state, Object event) {
+              notifications.add("illegal " + state + " " + event);
+            }
+          };
+      FiniteStateMachine fsm =
+          (FiniteStateMachine)
+              loader
+                  .loadClass("door.DoorStateMachine")
+                  .getConstructor(
+                      states,
+                      actionsType,
+                      ActionFailureHandler.class,
+                      TransitionListener.class)
+                  .newInstance(
+                      Enum.valueOf(states, "OPEN"),
+                      actions,
+                      ActionFailureHandlers.logging(),
+                      listener);
+
+      // When
+      fsm.performEvent(Enum.valueOf(events, "CLOSE_DOOR"));
+      fsm.tryPerformEvent(Enum.valueOf(events, "UNLOCK_DOOR"));
+      fsm.performEvent(Enum.valueOf(events, "LOCK_DOOR"));
+
+      // Then
+      assertThat(notifications)
+          .containsExactly(
+              "OPEN CLOSE_DOOR CLOSED", "illegal CLOSED UNLOCK_DOOR", "CLOSED LOCK_DOOR LOCKED");
+    }
+  }
+
+  @Test
+  void shouldReportDuplicateTransitions() throws IOException {
+    // Given
+    String states =
+        STATES.replace(
+            "@Transition(event = \"UNLOCK_DOOR\", target = \"CLOSED\")",
+            "@Transition(event = \"UNLOCK_DOOR\", target = \"CLOSED\")\n"
+                + "  @Transition(event = \"UNLOCK_DOOR\", target = \"OPEN\")");
+
+    // When
+    boolean compiled = compile(EVENTS, states);
+
+    // Then
+    assertThat(compiled).isFalse();
+    assertThat(errors()).containsExactly("Event UNLOCK_DOOR already linked to state LOCKED");
+  }
+
+  @Test
+  void shouldReportUnknownNamesAndMissingTransitions() throws IOException {
+    // Given
+    String states =
+        STATES
+            .replace("target = \"CLOSED\", actions = \"closing\"", "target = \"SHUT\"")
+            .replace("event = \"UNLOCK_DOOR\"", "event = \"KICK_DOOR\"")
+            .replace("  LOCKED\n", "  LOCKED,\n  BROKEN\n");
+
+    // When
+    boolean compiled = compile(EVENTS, states);
+
+    // Then
+    assertThat(compiled).isFalse();
+    assertThat(errors())
+        .containsExactlyInAnyOrder(
+            "Unknown target state SHUT, DoorState has no such constant",
+            "Unknown event KICK_DOOR, DoorEvent has no such constant",
+            "State BROKEN has no transition, link it or list it as terminal");
+  }
+
+  @Test
+  void shouldAcceptTerminalStates() throws IOException {
+    // Given
+    String states =
+        STATES
+            .replace(
+                "@StateMachine(events = DoorEvent.class)",
+                "@StateMachine(events = DoorEvent.class, terminal = \"BROKEN\")")
+            .replace("  LOCKED\n", "  LOCKED,\n  BROKEN\n");
+
+    // When / Then
+    assertThat(compile(EVENTS, states)).isTrue();
+  }
+}
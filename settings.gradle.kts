@@ -12,3 +12,4 @@ plugins {
 
 rootProject.name = "trackviafsm"
 include("lib")
+include("processor")